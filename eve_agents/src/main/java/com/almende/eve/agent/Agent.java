@@ -9,6 +9,7 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,11 +22,13 @@ import com.almende.eve.scheduling.SchedulerBuilder;
 import com.almende.eve.state.State;
 import com.almende.eve.state.StateBuilder;
 import com.almende.eve.state.StateConfig;
+import com.almende.eve.transform.rpc.RpcHeader;
 import com.almende.eve.transform.rpc.RpcTransform;
 import com.almende.eve.transform.rpc.RpcTransformBuilder;
 import com.almende.eve.transform.rpc.annotation.Access;
 import com.almende.eve.transform.rpc.annotation.AccessType;
 import com.almende.eve.transform.rpc.annotation.Namespace;
+import com.almende.eve.transform.rpc.formats.JSONRPCException;
 import com.almende.eve.transform.rpc.formats.JSONResponse;
 import com.almende.eve.transport.LocalTransportBuilder;
 import com.almende.eve.transport.LocalTransportConfig;
@@ -34,9 +37,11 @@ import com.almende.eve.transport.Router;
 import com.almende.eve.transport.Transport;
 import com.almende.eve.transport.TransportBuilder;
 import com.almende.eve.transport.TransportConfig;
+import com.almende.util.TypeUtil;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.callback.SyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.threads.Mailbox;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -60,6 +65,8 @@ public class Agent implements Receiver {
 																	this))
 													.build();
 	private Handler<Receiver>	receiver	= new SimpleHandler<Receiver>(this);
+	private Mailbox<Envelope>	mailbox		= null;
+	private final AgentMetrics	metrics		= new AgentMetrics(this);
 	
 	/**
 	 * Instantiates a new agent.
@@ -237,7 +244,9 @@ public class Agent implements Receiver {
 		agentId = config.getId();
 		loadScheduler(config.getScheduler());
 		loadState(config.getState());
+		loadMailbox(config.getMailbox());
 		loadTransports(config.getTransport(), onBoot);
+		loadBatching(config.getBatching());
 		// All agents have a local transport
 		transport.register(new LocalTransportBuilder()
 				.withConfig(new LocalTransportConfig(agentId))
@@ -293,6 +302,17 @@ public class Agent implements Receiver {
 		return scheduler;
 	}
 	
+	/**
+	 * Gets the metrics.
+	 * 
+	 * @return the metrics
+	 */
+	@Namespace("metrics")
+	@JsonIgnore
+	public AgentMetrics getMetrics() {
+		return metrics;
+	}
+	
 	/**
 	 * Sets the state.
 	 * 
@@ -322,6 +342,53 @@ public class Agent implements Receiver {
 		}
 	}
 	
+	/**
+	 * Load mailbox. Without a mailbox config, incoming messages are handled
+	 * concurrently on the calling thread.
+	 * 
+	 * @param mc
+	 *            the mailbox config
+	 */
+	public void loadMailbox(final ObjectNode mc) {
+		if (mc != null) {
+			final int capacity = mc.has("capacity") ? mc.get("capacity")
+					.asInt() : 1000;
+			final int batchSize = mc.has("batchSize") ? mc.get("batchSize")
+					.asInt() : 32;
+			final Mailbox.Policy policy = Mailbox.Policy.fromString(mc
+					.has("policy") ? mc.get("policy").asText() : null);
+			final long blockTimeout = mc.has("blockTimeout") ? mc.get(
+					"blockTimeout").asLong() : 1000;
+			mailbox = new Mailbox<Envelope>(capacity, batchSize, policy,
+					blockTimeout) {
+				@Override
+				protected void handle(final Envelope envelope) {
+					doReceive(envelope.msg, envelope.senderUrl, envelope.tag);
+				}
+				
+				@Override
+				protected boolean isDroppable(final Envelope envelope) {
+					// Only notifications, nobody is waiting for their result.
+					return envelope.notification;
+				}
+			};
+			config.put("mailbox", mc);
+		} else {
+			mailbox = null;
+		}
+	}
+	
+	/**
+	 * Gets the mailbox, for its queue depth and rejection counters.
+	 * 
+	 * @return the mailbox, or null if incoming messages aren't queued.
+	 */
+	@Access(AccessType.UNAVAILABLE)
+	@JsonIgnore
+	public Mailbox<?> getMailbox() {
+		return mailbox;
+	}
+	
 	/**
 	 * Gets the state.
 	 * 
@@ -399,6 +466,20 @@ public class Agent implements Receiver {
 		}
 	}
 	
+	/**
+	 * Load outbound batching config.
+	 * 
+	 * @param bc
+	 *            the batching config
+	 */
+	public void loadBatching(final ObjectNode bc) {
+		if (bc != null) {
+			transport.setBatching(bc.has("window") ? bc.get("window").asInt()
+					: 10, bc.has("maxSize") ? bc.get("maxSize").asInt() : 50);
+			config.put("batching", bc);
+		}
+	}
+	
 	/**
 	 * Connect all transports.
 	 * 
@@ -492,8 +573,7 @@ public class Agent implements Receiver {
 	protected <T> void call(final URI url, final String method,
 			final ObjectNode params, final AsyncCallback<T> callback)
 			throws IOException {
-		transport.send(url, rpc.buildMsg(method, params, callback).toString(),
-				null);
+		transport.send(url, rpc.buildMsg(method, params, callback), null);
 	}
 	
 	/**
@@ -516,8 +596,7 @@ public class Agent implements Receiver {
 	protected <T> void call(final URI url, final Method method,
 			final Object[] params, final AsyncCallback<T> callback)
 			throws IOException {
-		transport.send(url, rpc.buildMsg(method, params, callback).toString(),
-				null);
+		transport.send(url, rpc.buildMsg(method, params, callback), null);
 	}
 	
 	/**
@@ -537,8 +616,7 @@ public class Agent implements Receiver {
 	@Access(AccessType.UNAVAILABLE)
 	protected <T> void call(final URI url, final String method,
 			final ObjectNode params) throws IOException {
-		transport
-				.send(url, rpc.buildMsg(method, params, null).toString(), null);
+		transport.send(url, rpc.buildMsg(method, params, null), null);
 	}
 	
 	/**
@@ -561,8 +639,7 @@ public class Agent implements Receiver {
 			final ObjectNode params) throws IOException {
 		final SyncCallback<T> callback = new SyncCallback<T>() {
 		};
-		transport.send(url, rpc.buildMsg(method, params, callback).toString(),
-				null);
+		transport.send(url, rpc.buildMsg(method, params, callback), null);
 		try {
 			return callback.get();
 		} catch (final Exception e) {
@@ -570,6 +647,108 @@ public class Agent implements Receiver {
 		}
 	}
 	
+	/**
+	 * Send async, returning a future which completes with the result. No
+	 * thread is blocked while waiting for the response.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param url
+	 *            the url
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @param type
+	 *            the expected result type
+	 * @return the completable future
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Access(AccessType.UNAVAILABLE)
+	protected <T> CompletableFuture<T> callAsync(final URI url,
+			final String method, final ObjectNode params, final Class<T> type)
+			throws IOException {
+		return callAsync(url, method, params, TypeUtil.get(type));
+	}
+	
+	/**
+	 * Send async, returning a future which completes with the result. No
+	 * thread is blocked while waiting for the response.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param url
+	 *            the url
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @param type
+	 *            the expected result type
+	 * @return the completable future
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Access(AccessType.UNAVAILABLE)
+	protected <T> CompletableFuture<T> callAsync(final URI url,
+			final String method, final ObjectNode params, final TypeUtil<T> type)
+			throws IOException {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		transport.send(url,
+				rpc.buildMsg(method, params, futureCallback(future, type)),
+				null);
+		return future;
+	}
+	
+	/**
+	 * Send async for usage in proxies, returning a future which completes with
+	 * the result.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param url
+	 *            the url
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @param type
+	 *            the expected result type
+	 * @return the completable future
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Access(AccessType.UNAVAILABLE)
+	protected <T> CompletableFuture<T> callAsync(final URI url,
+			final Method method, final Object[] params, final TypeUtil<T> type)
+			throws IOException {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		transport.send(url,
+				rpc.buildMsg(method, params, futureCallback(future, type)),
+				null);
+		return future;
+	}
+	
+	private static <T> AsyncCallback<JsonNode> futureCallback(
+			final CompletableFuture<T> future, final TypeUtil<T> type) {
+		return new AsyncCallback<JsonNode>() {
+			@Override
+			public void onSuccess(final JsonNode result) {
+				try {
+					future.complete(type.inject(result));
+				} catch (final ClassCastException e) {
+					future.completeExceptionally(e);
+				}
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				future.completeExceptionally(exception);
+			}
+		};
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -579,13 +758,175 @@ public class Agent implements Receiver {
 	@Access(AccessType.UNAVAILABLE)
 	@Override
 	public void receive(final Object msg, final URI senderUrl, final String tag) {
-		final JSONResponse response = rpc.invoke(msg, senderUrl);
-		if (response != null) {
-			try {
-				transport.send(senderUrl, response.toString(), tag);
-			} catch (final IOException e) {
-				LOG.log(Level.WARNING, "Couldn't send message", e);
+		final Mailbox<Envelope> box = mailbox;
+		if (box == null) {
+			doReceive(msg, senderUrl, tag);
+			return;
+		}
+		// Only the header is read here, the raw message is queued so it can
+		// still be bound without building a tree once it is invoked.
+		final RpcHeader header = RpcHeader.peek(msg);
+		switch (header.getKind()) {
+			case BATCH:
+				final ArrayNode batch = RpcTransform.batchConvert(msg);
+				if (batch == null) {
+					doReceive(msg, senderUrl, tag);
+				} else {
+					receiveBatch(box, batch, senderUrl, tag);
+				}
+				return;
+			case RESPONSE:
+				// Responses only complete callbacks, they bypass the mailbox
+				// to prevent callSync() from deadlocking the agent.
+				doReceive(msg, senderUrl, tag);
+				return;
+			case NOTIFICATION:
+				// Nothing will be replied, don't keep the transport waiting.
+				release(senderUrl, tag);
+				if (!box.offer(new Envelope(msg, senderUrl, null, true))) {
+					LOG.warning("Mailbox of agent '" + agentId
+							+ "' is full, rejecting notification.");
+				}
+				return;
+			case REQUEST:
+				if (!box.offer(new Envelope(msg, senderUrl, tag, false))) {
+					LOG.warning("Mailbox of agent '" + agentId
+							+ "' is full, rejecting message.");
+					sendResponse(senderUrl, serverBusy(header.getId()), tag);
+				}
+				return;
+			default:
+				// Not JSON-RPC, let the RpcTransform report it.
+				doReceive(msg, senderUrl, tag);
+		}
+	}
+	
+	private void receiveBatch(final Mailbox<Envelope> box,
+			final ArrayNode batch, final URI senderUrl, final String tag) {
+		final ArrayNode requests = JOM.createArrayNode();
+		for (final JsonNode entry : batch) {
+			if (entry.has("result") || entry.has("error")) {
+				doReceive(entry, senderUrl, null);
+			} else {
+				requests.add(entry);
 			}
 		}
+		if (requests.size() == 0) {
+			release(senderUrl, tag);
+			return;
+		}
+		if (!box.offer(new Envelope(requests, senderUrl, tag, false))) {
+			LOG.warning("Mailbox of agent '" + agentId
+					+ "' is full, rejecting batch.");
+			final ArrayNode errors = JOM.createArrayNode();
+			for (final JsonNode entry : requests) {
+				final JsonNode id = entry.get("id");
+				if (id != null && !id.isNull()) {
+					errors.add(serverBusy(id).getObjectNode());
+				}
+			}
+			if (errors.size() > 0) {
+				sendResponse(senderUrl, errors, tag);
+			} else {
+				release(senderUrl, tag);
+			}
+		}
+	}
+	
+	private JSONResponse serverBusy(final JsonNode id) {
+		return new JSONResponse(id, new JSONRPCException(
+				JSONRPCException.CODE.SERVER_BUSY, "Server busy"));
+	}
+	
+	private void doReceive(final Object msg, final URI senderUrl,
+			final String tag) {
+		final long start = System.nanoTime();
+		try {
+			final ArrayNode batch = RpcTransform.batchConvert(msg);
+			if (batch != null) {
+				// With a mailbox, keep single threaded semantics.
+				rpc.invokeBatch(batch, senderUrl, mailbox != null,
+						new Reply<ArrayNode>(senderUrl, tag));
+				return;
+			}
+			// Async methods reply when they complete, from their own thread.
+			rpc.invoke(msg, senderUrl, new Reply<JSONResponse>(senderUrl, tag));
+		} finally {
+			metrics.recordReceive(start);
+		}
+	}
+	
+	private void sendResponse(final URI senderUrl, final Object response,
+			final String tag) {
+		try {
+			transport.send(senderUrl, response, tag);
+		} catch (final IOException e) {
+			LOG.log(Level.WARNING, "Couldn't send message", e);
+		}
+	}
+	
+	/**
+	 * Tell a transport that waits for the reply to a tagged message (like an
+	 * HTTP request) that there is none, e.g. for notifications.
+	 */
+	private void release(final URI senderUrl, final String tag) {
+		if (tag == null) {
+			return;
+		}
+		try {
+			transport.send(senderUrl, "", tag);
+		} catch (final IOException e) {
+			LOG.log(Level.WARNING, "Couldn't release transport", e);
+		}
+	}
+	
+	/**
+	 * Sends the response of an invocation, or releases the transport if there
+	 * is none.
+	 * 
+	 * @param <T>
+	 *            the response type
+	 */
+	private class Reply<T> implements AsyncCallback<T> {
+		private final URI		senderUrl;
+		private final String	tag;
+		
+		private Reply(final URI senderUrl, final String tag) {
+			this.senderUrl = senderUrl;
+			this.tag = tag;
+		}
+		
+		@Override
+		public void onSuccess(final T response) {
+			if (response != null) {
+				sendResponse(senderUrl, response, tag);
+			} else {
+				release(senderUrl, tag);
+			}
+		}
+		
+		@Override
+		public void onFailure(final Exception exception) {
+			LOG.log(Level.WARNING, "Couldn't invoke message", exception);
+			release(senderUrl, tag);
+		}
+	}
+	
+	/**
+	 * Holder of a queued incoming message.
+	 */
+	private static class Envelope {
+		private final Object	msg;
+		private final URI		senderUrl;
+		private final String	tag;
+		private final boolean	notification;
+		
+		Envelope(final Object msg, final URI senderUrl, final String tag,
+				final boolean notification) {
+			this.msg = msg;
+			this.senderUrl = senderUrl;
+			this.tag = tag;
+			this.notification = notification;
+		}
 	}
 }
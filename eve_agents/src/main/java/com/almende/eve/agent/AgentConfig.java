@@ -149,4 +149,54 @@ public class AgentConfig extends Config {
 		}
 		return null;
 	}
+	
+	/**
+	 * Sets the mailbox config. If set, incoming requests are queued in a
+	 * bounded mailbox and handled one at a time. The policy ("reject",
+	 * "dropOldest" or "block") determines what happens when it is full.
+	 * (e.g. { "capacity":1000, "batchSize":32, "policy":"reject",
+	 * "blockTimeout":1000 })
+	 * 
+	 * @param mailbox
+	 *            the new mailbox config
+	 */
+	public void setMailbox(final ObjectNode mailbox) {
+		this.put("mailbox", mailbox);
+	}
+	
+	/**
+	 * Gets the mailbox config.
+	 * 
+	 * @return the mailbox config
+	 */
+	public ObjectNode getMailbox() {
+		if (this.has("mailbox") && this.get("mailbox").isObject()) {
+			return (ObjectNode) this.get("mailbox");
+		}
+		return null;
+	}
+	
+	/**
+	 * Sets the outbound batching config. If set, messages to the same remote
+	 * destination are send together as a JSON-RPC batch.
+	 * (e.g. { "window":10, "maxSize":50 }, window in milliseconds)
+	 * 
+	 * @param batching
+	 *            the new batching config
+	 */
+	public void setBatching(final ObjectNode batching) {
+		this.put("batching", batching);
+	}
+	
+	/**
+	 * Gets the outbound batching config.
+	 * 
+	 * @return the batching config
+	 */
+	public ObjectNode getBatching() {
+		if (this.has("batching") && this.get("batching").isObject()) {
+			return (ObjectNode) this.get("batching");
+		}
+		return null;
+	}
 }
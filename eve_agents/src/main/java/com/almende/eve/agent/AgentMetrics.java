@@ -0,0 +1,79 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.agent;
+
+import com.almende.eve.transform.rpc.annotation.Access;
+import com.almende.eve.transform.rpc.annotation.AccessType;
+import com.almende.util.jackson.JOM;
+import com.almende.util.metrics.Histogram;
+import com.almende.util.metrics.Metrics;
+import com.almende.util.threads.Mailbox;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The metrics of an agent, available through the "metrics" RPC namespace
+ * (e.g. "metrics.get"). Receive latencies are recorded per agent and, in the
+ * JVM-wide {@link Metrics} (and JMX), per agent class.
+ */
+@Access(AccessType.PUBLIC)
+public class AgentMetrics {
+	private final Agent			agent;
+	private final Histogram		classReceive;
+	private volatile Histogram	receive	= null;
+	
+	/**
+	 * Instantiates a new agent metrics.
+	 * 
+	 * @param agent
+	 *            the agent
+	 */
+	AgentMetrics(final Agent agent) {
+		this.agent = agent;
+		classReceive = Metrics.histogram("agent.receive", agent.getClass()
+				.getName());
+	}
+	
+	/**
+	 * Record the handling time of an incoming message.
+	 * 
+	 * @param startNanos
+	 *            the start time in nanoseconds
+	 */
+	void recordReceive(final long startNanos) {
+		final long duration = System.nanoTime() - startNanos;
+		// Created on first use: most (idle) agents never need one.
+		Histogram histogram = receive;
+		if (histogram == null) {
+			histogram = new Histogram();
+			receive = histogram;
+		}
+		histogram.record(duration);
+		classReceive.record(duration);
+	}
+	
+	/**
+	 * Gets the metrics of this agent, and those of the JVM it runs in. All
+	 * durations are in nanoseconds.
+	 * 
+	 * @return the metrics
+	 */
+	public ObjectNode get() {
+		final ObjectNode result = JOM.createObjectNode();
+		final ObjectNode own = result.putObject("agent");
+		final Histogram histogram = receive;
+		own.set("receive", histogram != null ? histogram.toJson()
+				: new Histogram().toJson());
+		final Mailbox<?> mailbox = agent.getMailbox();
+		if (mailbox != null) {
+			final ObjectNode box = own.putObject("mailbox");
+			box.put("size", mailbox.size());
+			box.put("capacity", mailbox.getCapacity());
+			box.put("rejected", mailbox.getRejected());
+			box.put("dropped", mailbox.getDropped());
+		}
+		result.set("jvm", Metrics.toJson());
+		return result;
+	}
+}
@@ -7,8 +7,12 @@ package com.almende.eve.agent;
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import com.almende.eve.transform.rpc.formats.JSONRPCException;
 import com.almende.eve.transform.rpc.formats.JSONRPCException.CODE;
@@ -24,7 +28,9 @@ public final class AgentProxyFactory {
 	}
 	
 	/**
-	 * Gen proxy.
+	 * Gen proxy. Methods of the proxy interface which return a
+	 * CompletableFuture (or CompletionStage) are called asynchronously, all
+	 * other methods block until the result has been received.
 	 * 
 	 * @param <T>
 	 *            the generic type
@@ -48,6 +54,22 @@ public final class AgentProxyFactory {
 					public Object invoke(final Object proxy,
 							final Method method, final Object[] args) {
 						
+						if (method.getReturnType().isAssignableFrom(
+								CompletableFuture.class)
+								&& CompletionStage.class.isAssignableFrom(method
+										.getReturnType())) {
+							try {
+								return sender.callAsync(receiverUrl, method,
+										args, getFutureType(method));
+							} catch (final IOException e) {
+								final CompletableFuture<Object> result = new CompletableFuture<Object>();
+								result.completeExceptionally(new JSONRPCException(
+										CODE.REMOTE_EXCEPTION, e
+												.getLocalizedMessage(), e));
+								return result;
+							}
+						}
+						
 						final SyncCallback<Object> callback = new SyncCallback<Object>() {
 						};
 						try {
@@ -68,4 +90,20 @@ public final class AgentProxyFactory {
 				});
 		return proxy;
 	}
+	
+	/**
+	 * Gets the result type of a method returning a future.
+	 * 
+	 * @param method
+	 *            the method
+	 * @return the future type
+	 */
+	private static TypeUtil<Object> getFutureType(final Method method) {
+		final Type type = method.getGenericReturnType();
+		if (type instanceof ParameterizedType) {
+			return TypeUtil.get(TypeUtil.constructType(((ParameterizedType) type)
+					.getActualTypeArguments()[0]));
+		}
+		return TypeUtil.get(Object.class);
+	}
 }
@@ -8,6 +8,8 @@ import com.almende.eve.capabilities.wake.WakeHandler;
 import com.almende.eve.capabilities.wake.WakeService;
 import com.almende.eve.capabilities.wake.Wakeable;
 import com.almende.eve.transform.rpc.RpcTransformBuilder;
+import com.almende.eve.transform.rpc.annotation.Access;
+import com.almende.eve.transform.rpc.annotation.AccessType;
 import com.almende.eve.transport.Receiver;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -40,6 +42,7 @@ public class WakeableAgent extends Agent implements Wakeable {
 		
 		setConfig(conf, true);
 		registerAt(ws);
+		ws.admit(getId(), this);
 	}
 	
 	/**
@@ -59,6 +62,7 @@ public class WakeableAgent extends Agent implements Wakeable {
 		
 		setConfig(conf, true);
 		registerAt(ws);
+		ws.admit(getId(), this);
 	}
 	
 	/**
@@ -86,4 +90,15 @@ public class WakeableAgent extends Agent implements Wakeable {
 		setConfig(params, onBoot);
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.almende.eve.capabilities.wake.Wakeable#passivate()
+	 */
+	@Access(AccessType.UNAVAILABLE)
+	@Override
+	public void passivate() {
+		// Overridden only to keep it out of the RPC interface.
+	}
+	
 }
@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 
 import com.almende.util.TypeUtil;
 import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -16,7 +17,10 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  * The Class Config.
  */
 public class Config extends ObjectNode {
-	private static final Logger	LOG	= Logger.getLogger(Config.class.getName());
+	private static final Logger		LOG		= Logger.getLogger(Config.class
+													.getName());
+	/** The type values are injected as; T is erased at runtime anyway. */
+	private static final JavaType	OBJECT	= TypeUtil.constructType(Object.class);
 	
 	/**
 	 * Instantiates a new config.
@@ -99,11 +103,9 @@ public class Config extends ObjectNode {
 	 *            the keys
 	 * @return the json node
 	 */
+	@SuppressWarnings("unchecked")
 	public <T> T get(final String... keys) {
-		JsonNode node = lget(keys);
-		final TypeUtil<T> tu = new TypeUtil<T>() {
-		};
-		return tu.inject(node);
+		return (T) TypeUtil.inject(lget(keys), OBJECT);
 	}
 	
 	/**
@@ -429,6 +429,10 @@ public final class AnnotationUtil {
 		
 		private MethodHandle				methodHandle;
 		
+		private volatile MethodInvoker		invoker				= null;
+		
+		private volatile Object				bindingPlan			= null;
+		
 		/**
 		 * Instantiates a new annotated method.
 		 * 
@@ -501,6 +505,40 @@ public final class AnnotationUtil {
 			return methodHandle;
 		}
 		
+		/**
+		 * Gets the invoker, generated on first use.
+		 * 
+		 * @return the invoker
+		 */
+		public MethodInvoker getInvoker() {
+			MethodInvoker result = invoker;
+			if (result == null) {
+				result = MethodInvoker.create(method);
+				invoker = result;
+			}
+			return result;
+		}
+		
+		/**
+		 * Gets the binding plan the RPC layer compiled for this method, if
+		 * any. It is kept here to share the lifetime of the method.
+		 * 
+		 * @return the binding plan
+		 */
+		public Object getBindingPlan() {
+			return bindingPlan;
+		}
+		
+		/**
+		 * Sets the binding plan.
+		 * 
+		 * @param bindingPlan
+		 *            the new binding plan
+		 */
+		public void setBindingPlan(final Object bindingPlan) {
+			this.bindingPlan = bindingPlan;
+		}
+		
 		/**
 		 * Get the actual Java method described by this AnnotatedMethod.
 		 * 
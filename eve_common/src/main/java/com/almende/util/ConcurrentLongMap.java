@@ -0,0 +1,226 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util;
+
+/**
+ * A concurrent map with primitive long keys, which avoids boxing the keys and
+ * the equals/hashCode calls of object keys. The map is split in segments, each
+ * an open addressing hash table guarded by its own lock, so threads working on
+ * different keys rarely wait for each other. Null values are not allowed.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class ConcurrentLongMap<V> {
+	private static final int	SEGMENTS	= 16;
+	private final Segment[]		segments	= new Segment[SEGMENTS];
+
+	/**
+	 * Instantiates a new concurrent long map.
+	 */
+	public ConcurrentLongMap() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	private static int hash(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) h ^ (int) (h >>> 16);
+	}
+
+	private Segment segmentFor(final int hash) {
+		return segments[(hash >>> 28) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Gets the value of the key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final long key) {
+		final int hash = hash(key);
+		return (V) segmentFor(hash).get(key, hash);
+	}
+
+	/**
+	 * Put the value, unless the key is already in the map.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return the current value of the key, or null if the value was put.
+	 */
+	@SuppressWarnings("unchecked")
+	public V putIfAbsent(final long key, final V value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		final int hash = hash(key);
+		return (V) segmentFor(hash).putIfAbsent(key, hash, value);
+	}
+
+	/**
+	 * Removes the key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed value, or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final long key) {
+		final int hash = hash(key);
+		return (V) segmentFor(hash).remove(key, hash, null);
+	}
+
+	/**
+	 * Removes the key, only if it is mapped to the given value.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return true, if removed
+	 */
+	public boolean remove(final long key, final V value) {
+		final int hash = hash(key);
+		return value != null && segmentFor(hash).remove(key, hash, value) != null;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		int size = 0;
+		for (final Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Gets a snapshot of the keys.
+	 *
+	 * @return the keys
+	 */
+	public long[] keys() {
+		long[] result = new long[0];
+		for (final Segment segment : segments) {
+			final long[] keys = segment.keys();
+			final long[] merged = new long[result.length + keys.length];
+			System.arraycopy(result, 0, merged, 0, result.length);
+			System.arraycopy(keys, 0, merged, result.length, keys.length);
+			result = merged;
+		}
+		return result;
+	}
+
+	/**
+	 * A linear probing hash table; empty slots have a null value.
+	 */
+	private static final class Segment {
+		private long[]		keys	= new long[16];
+		private Object[]	values	= new Object[16];
+		private int			size	= 0;
+
+		synchronized Object get(final long key, final int hash) {
+			final int mask = keys.length - 1;
+			for (int i = hash & mask;; i = (i + 1) & mask) {
+				if (values[i] == null) {
+					return null;
+				}
+				if (keys[i] == key) {
+					return values[i];
+				}
+			}
+		}
+
+		synchronized Object putIfAbsent(final long key, final int hash,
+				final Object value) {
+			final int mask = keys.length - 1;
+			int i = hash & mask;
+			for (; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (++size * 2 > keys.length) {
+				resize(keys.length * 2);
+			}
+			return null;
+		}
+
+		synchronized Object remove(final long key, final int hash,
+				final Object expected) {
+			final int mask = keys.length - 1;
+			int i = hash & mask;
+			for (; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					break;
+				}
+			}
+			final Object old = values[i];
+			if (old == null || (expected != null && expected != old)) {
+				return null;
+			}
+			values[i] = null;
+			size--;
+			// Shift later entries of the probe sequence back into the gap.
+			int gap = i;
+			for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+				final int home = hash(keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - gap) & mask)) {
+					keys[gap] = keys[j];
+					values[gap] = values[j];
+					values[j] = null;
+					gap = j;
+				}
+			}
+			return old;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		synchronized long[] keys() {
+			final long[] result = new long[size];
+			int n = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] != null) {
+					result[n++] = keys[i];
+				}
+			}
+			return result;
+		}
+
+		private void resize(final int capacity) {
+			final long[] oldKeys = keys;
+			final Object[] oldValues = values;
+			keys = new long[capacity];
+			values = new Object[capacity];
+			final int mask = capacity - 1;
+			for (int j = 0; j < oldKeys.length; j++) {
+				if (oldValues[j] != null) {
+					int i = hash(oldKeys[j]) & mask;
+					while (values[i] != null) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[j];
+					values[i] = oldValues[j];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Invoker of a single method, with the same contract as
+ * {@link Method#invoke(Object, Object...)}: exceptions thrown by the method
+ * itself are wrapped in an {@link InvocationTargetException}.
+ *
+ * For public instance methods of accessible classes, with up to
+ * {@link #MAXARITY} parameters, the invoker is generated through the
+ * {@link LambdaMetafactory}: a plain interface call the JIT can inline, without
+ * the access checks of reflection. Other methods fall back to reflection.
+ * Generated invokers also leave calls that need argument conversion or
+ * fail to link to reflection, so these are reported the same way.
+ */
+public abstract class MethodInvoker {
+	private static final Logger	LOG			= Logger.getLogger(MethodInvoker.class
+													.getName());
+	/** The maximum number of parameters supported by generated invokers. */
+	public static final int		MAXARITY	= 5;
+
+	/**
+	 * Invoke the method.
+	 *
+	 * @param target
+	 *            the target object
+	 * @param args
+	 *            the arguments
+	 * @return the result, null for void methods.
+	 * @throws Exception
+	 *             an InvocationTargetException wrapping the exception thrown
+	 *             by the method, or a reflection exception.
+	 */
+	public abstract Object invoke(final Object target, final Object[] args)
+			throws Exception;
+
+	/**
+	 * Checks if this invoker is generated.
+	 *
+	 * @return true, if generated, false if using reflection.
+	 */
+	public abstract boolean isGenerated();
+
+	/**
+	 * Create an invoker for the given method.
+	 *
+	 * @param method
+	 *            the method
+	 * @return the method invoker
+	 */
+	public static MethodInvoker create(final Method method) {
+		if (!Modifier.isStatic(method.getModifiers())
+				&& method.getParameterTypes().length <= MAXARITY
+				&& !method.isVarArgs()) {
+			try {
+				return generate(method);
+			} catch (final Throwable e) {
+				LOG.log(Level.FINE, "Couldn't generate invoker for:" + method
+						+ ", using reflection.", e);
+			}
+		}
+		return new Reflective(method);
+	}
+
+	private static MethodInvoker generate(final Method method)
+			throws Throwable {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final MethodHandle impl = lookup.unreflect(method);
+		final int arity = method.getParameterTypes().length;
+		final boolean isVoid = method.getReturnType() == void.class;
+
+		MethodType samType = MethodType.genericMethodType(arity + 1);
+		MethodType instantiated = impl.type().wrap();
+		if (isVoid) {
+			samType = samType.changeReturnType(void.class);
+			instantiated = instantiated.changeReturnType(void.class);
+		}
+		final Class<?> sam = isVoid ? RUNS[arity] : CALLS[arity];
+		final CallSite site = LambdaMetafactory.metafactory(lookup, "call",
+				MethodType.methodType(sam), samType, impl, instantiated);
+		final Object fn = site.getTarget().invoke();
+
+		switch (arity) {
+			case 0:
+				if (isVoid) {
+					final Run0 run = (Run0) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t);
+							return null;
+						}
+					};
+				} else {
+					final Call0 call = (Call0) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t);
+						}
+					};
+				}
+			case 1:
+				if (isVoid) {
+					final Run1 run = (Run1) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t, a[0]);
+							return null;
+						}
+					};
+				} else {
+					final Call1 call = (Call1) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t, a[0]);
+						}
+					};
+				}
+			case 2:
+				if (isVoid) {
+					final Run2 run = (Run2) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t, a[0], a[1]);
+							return null;
+						}
+					};
+				} else {
+					final Call2 call = (Call2) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t, a[0], a[1]);
+						}
+					};
+				}
+			case 3:
+				if (isVoid) {
+					final Run3 run = (Run3) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t, a[0], a[1], a[2]);
+							return null;
+						}
+					};
+				} else {
+					final Call3 call = (Call3) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t, a[0], a[1], a[2]);
+						}
+					};
+				}
+			case 4:
+				if (isVoid) {
+					final Run4 run = (Run4) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t, a[0], a[1], a[2], a[3]);
+							return null;
+						}
+					};
+				} else {
+					final Call4 call = (Call4) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t, a[0], a[1], a[2], a[3]);
+						}
+					};
+				}
+			default:
+				if (isVoid) {
+					final Run5 run = (Run5) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							run.call(t, a[0], a[1], a[2], a[3], a[4]);
+							return null;
+						}
+					};
+				} else {
+					final Call5 call = (Call5) fn;
+					return new Generated(method) {
+						@Override
+						protected Object call(final Object t, final Object[] a) {
+							return call.call(t, a[0], a[1], a[2], a[3], a[4]);
+						}
+					};
+				}
+		}
+	}
+
+	/**
+	 * Base of the generated invokers, wrapping exceptions like reflection
+	 * does. Arguments the generated casts wouldn't accept as they are (null
+	 * or widened primitives, mismatches) are left to reflection, which
+	 * converts them or throws an IllegalArgumentException. If the generated
+	 * code itself fails to link, the method is invoked by reflection from
+	 * then on.
+	 */
+	private abstract static class Generated extends MethodInvoker {
+		private final Method		method;
+		private final Class<?>		owner;
+		private final Class<?>[]	types;
+		private final boolean[]		primitive;
+		private volatile boolean	linked	= true;
+
+		Generated(final Method method) {
+			this.method = method;
+			this.owner = method.getDeclaringClass();
+			this.types = method.getParameterTypes();
+			this.primitive = new boolean[types.length];
+			for (int i = 0; i < types.length; i++) {
+				primitive[i] = types[i].isPrimitive();
+				types[i] = ClassUtil.wrap(types[i]);
+			}
+		}
+
+		@Override
+		public Object invoke(final Object target, final Object[] args)
+				throws Exception {
+			if (!linked || !accepts(target, args)) {
+				return method.invoke(target, args);
+			}
+			try {
+				return call(target, args);
+			} catch (final LinkageError e) {
+				if (thrownBy(e)) {
+					throw new InvocationTargetException(e);
+				}
+				LOG.log(Level.FINE, "Generated invoker of:" + method
+						+ " failed to link, using reflection.", e);
+				linked = false;
+				return method.invoke(target, args);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+
+		@Override
+		public boolean isGenerated() {
+			return linked;
+		}
+
+		private boolean accepts(final Object target, final Object[] args) {
+			if (!owner.isInstance(target)) {
+				return false;
+			}
+			if (args == null) {
+				return types.length == 0;
+			}
+			if (args.length != types.length) {
+				return false;
+			}
+			for (int i = 0; i < types.length; i++) {
+				final Object arg = args[i];
+				if (arg == null ? primitive[i] : !types[i].isInstance(arg)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Checks if the error came from within the method, rather than from
+		 * the generated code around it.
+		 */
+		private boolean thrownBy(final Throwable e) {
+			final String self = MethodInvoker.class.getName();
+			for (final StackTraceElement frame : e.getStackTrace()) {
+				if (frame.getMethodName().equals(method.getName())
+						&& !frame.getClassName().startsWith(self)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		protected abstract Object call(final Object target, final Object[] args);
+	}
+
+	/**
+	 * The reflection fallback.
+	 */
+	private static class Reflective extends MethodInvoker {
+		private final Method	method;
+
+		Reflective(final Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public Object invoke(final Object target, final Object[] args)
+				throws Exception {
+			return method.invoke(target, args);
+		}
+
+		@Override
+		public boolean isGenerated() {
+			return false;
+		}
+	}
+
+	private static final Class<?>[]	CALLS	= new Class<?>[] { Call0.class,
+			Call1.class, Call2.class, Call3.class, Call4.class, Call5.class };
+	private static final Class<?>[]	RUNS	= new Class<?>[] { Run0.class,
+			Run1.class, Run2.class, Run3.class, Run4.class, Run5.class };
+
+	interface Call0 {
+		Object call(Object t);
+	}
+
+	interface Call1 {
+		Object call(Object t, Object a);
+	}
+
+	interface Call2 {
+		Object call(Object t, Object a, Object b);
+	}
+
+	interface Call3 {
+		Object call(Object t, Object a, Object b, Object c);
+	}
+
+	interface Call4 {
+		Object call(Object t, Object a, Object b, Object c, Object d);
+	}
+
+	interface Call5 {
+		Object call(Object t, Object a, Object b, Object c, Object d, Object e);
+	}
+
+	interface Run0 {
+		void call(Object t);
+	}
+
+	interface Run1 {
+		void call(Object t, Object a);
+	}
+
+	interface Run2 {
+		void call(Object t, Object a, Object b);
+	}
+
+	interface Run3 {
+		void call(Object t, Object a, Object b, Object c);
+	}
+
+	interface Run4 {
+		void call(Object t, Object a, Object b, Object c, Object d);
+	}
+
+	interface Run5 {
+		void call(Object t, Object a, Object b, Object c, Object d, Object e);
+	}
+}
@@ -6,6 +6,8 @@ package com.almende.util;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import org.jodah.typetools.TypeResolver;
@@ -13,11 +15,16 @@ import org.jodah.typetools.TypeResolver;
 import com.almende.util.jackson.JOM;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * The Class TypeUtil.
  * 
+ * Type resolution is paid once per type: resolved JavaTypes of classes, the
+ * types of TypeUtil subclasses and callbacks, and the ObjectReaders to inject
+ * values, are cached. The caches are ClassValues, attached to the classes
+ * involved, so they don't keep unloaded class loaders alive.
+ * 
  * @param <T>
  *            the generic type
  */
@@ -26,8 +33,36 @@ public abstract class TypeUtil<T> {
 	/**
 	 * The Constant LOG.
 	 */
-	static final Logger		LOG	= Logger.getLogger(TypeUtil.class.getName());
-	private final JavaType	valueType;
+	static final Logger											LOG			= Logger.getLogger(TypeUtil.class
+																					.getName());
+	private static final ClassValue<JavaType>					TYPES		= new ClassValue<JavaType>() {
+		@Override
+		protected JavaType computeValue(final Class<?> type) {
+			return JOM.getTypeFactory().constructType(type);
+		}
+	};
+	private static final ClassValue<JavaType>					SUBTYPES	= new ClassValue<JavaType>() {
+		@Override
+		protected JavaType computeValue(final Class<?> type) {
+			return constructType(((ParameterizedType) TypeResolver
+					.resolveGenericType(TypeUtil.class, type))
+					.getActualTypeArguments()[0]);
+		}
+	};
+	private static final ClassValue<TypeUtil<?>>				RESOLVED	= new ClassValue<TypeUtil<?>>() {
+		@Override
+		protected TypeUtil<?> computeValue(final Class<?> type) {
+			return doResolve(type);
+		}
+	};
+	private static final ClassValue<ConcurrentMap<JavaType, ObjectReader>>	READERS	= new ClassValue<ConcurrentMap<JavaType, ObjectReader>>() {
+		@Override
+		protected ConcurrentMap<JavaType, ObjectReader> computeValue(
+				final Class<?> type) {
+			return new ConcurrentHashMap<JavaType, ObjectReader>();
+		}
+	};
+	private final JavaType										valueType;
 	
 	/**
 	 * Gets an instances of this TypeUtil.
@@ -64,29 +99,32 @@ public abstract class TypeUtil<T> {
 	 *            the target
 	 * @return the type util
 	 */
+	@SuppressWarnings("unchecked")
 	public static <T> TypeUtil<T> resolve(final Object target) {
 		if (target == null) {
 			return new TypeUtil<T>(Void.class) {
 			};
 		}
-		final Type gsc = target.getClass().getGenericSuperclass();
+		return (TypeUtil<T>) RESOLVED.get(target.getClass());
+	}
+	
+	private static <T> TypeUtil<T> doResolve(final Class<?> target) {
+		final Type gsc = target.getGenericSuperclass();
 		ParameterizedType ptype = null;
 		if (gsc instanceof ParameterizedType) {
 			ptype = (ParameterizedType) gsc;
 		} else {
 			ptype = (ParameterizedType) TypeResolver.resolveGenericType(
-					(Class<?>) gsc, target.getClass());
+					(Class<?>) gsc, target);
 		}
 		if (ptype == null) {
-			ptype = (ParameterizedType) target.getClass()
-					.getGenericInterfaces()[0];
+			ptype = (ParameterizedType) target.getGenericInterfaces()[0];
 		}
 		if (ptype == null) {
 			LOG.warning("Couldn't find generic type.");
 			return null;
 		}
-		final JavaType type = JOM.getTypeFactory().constructType(
-				ptype.getActualTypeArguments()[0]);
+		final JavaType type = constructType(ptype.getActualTypeArguments()[0]);
 		if (type == null) {
 			LOG.warning("Couldn't find generic type.");
 			return null;
@@ -126,7 +164,7 @@ public abstract class TypeUtil<T> {
 	 *            the type
 	 */
 	public TypeUtil(final Class<?> type) {
-		this.valueType = JOM.getTypeFactory().constructType(type);
+		this.valueType = constructType(type);
 	}
 	
 	/**
@@ -140,11 +178,68 @@ public abstract class TypeUtil<T> {
 	 * TypeUtil...
 	 */
 	public TypeUtil() {
-		this.valueType = JOM.getTypeFactory()
-				.constructType(
-						((ParameterizedType) TypeResolver.resolveGenericType(
-								TypeUtil.class, getClass()))
-								.getActualTypeArguments()[0]);
+		this.valueType = SUBTYPES.get(getClass());
+	}
+	
+	/**
+	 * Get the JavaType of a type. The JavaTypes of classes are cached,
+	 * generic types are resolved by the TypeFactory, as their users (like
+	 * TypeUtil subclasses and binding plans) keep the result themselves.
+	 * 
+	 * @param type
+	 *            the type
+	 * @return the java type
+	 */
+	public static JavaType constructType(final Type type) {
+		if (type instanceof JavaType) {
+			return (JavaType) type;
+		}
+		if (type instanceof Class) {
+			return TYPES.get((Class<?>) type);
+		}
+		return JOM.getTypeFactory().constructType(type);
+	}
+	
+	/**
+	 * Get the ObjectReader of a type, from the cache if it has been created
+	 * before. Readers are cached with the class that owns the type, see
+	 * {@link #owner(JavaType)}.
+	 * 
+	 * @param type
+	 *            the type
+	 * @return the object reader
+	 */
+	public static ObjectReader reader(final JavaType type) {
+		final ConcurrentMap<JavaType, ObjectReader> readers = READERS
+				.get(owner(type));
+		ObjectReader result = readers.get(type);
+		if (result == null) {
+			result = JOM.getInstance().reader(type);
+			readers.putIfAbsent(type, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Get the class to attach cached data of a type to: the raw class, unless
+	 * that is a JDK class (like List or Map) while a contained type isn't. So
+	 * the readers of List&lt;Foo&gt; live and die with Foo's class loader.
+	 * 
+	 * @param type
+	 *            the type
+	 * @return the owner class
+	 */
+	static Class<?> owner(final JavaType type) {
+		final Class<?> raw = type.getRawClass();
+		if (raw.getClassLoader() == null) {
+			for (int i = 0; i < type.containedTypeCount(); i++) {
+				final Class<?> owner = owner(type.containedType(i));
+				if (owner.getClassLoader() != null) {
+					return owner;
+				}
+			}
+		}
+		return raw;
 	}
 	
 	/**
@@ -188,7 +283,7 @@ public abstract class TypeUtil<T> {
 	 * @return the t
 	 */
 	public static <T> T inject(final Object value, final Class<T> type) {
-		return inject(value, JOM.getTypeFactory().constructType(type));
+		return inject(value, constructType(type));
 	}
 	
 	/**
@@ -203,7 +298,7 @@ public abstract class TypeUtil<T> {
 	 * @return the t
 	 */
 	public static <T> T inject(final Object value, final Type type) {
-		return inject(value, JOM.getTypeFactory().constructType(type));
+		return inject(value, constructType(type));
 	}
 	
 	/**
@@ -225,16 +320,18 @@ public abstract class TypeUtil<T> {
 		if (fullType.hasRawClass(Void.class)) {
 			return null;
 		}
-		final ObjectMapper mapper = JOM.getInstance();
 		if (value instanceof JsonNode) {
-			if (fullType.getRawClass().equals(JsonNode.class)){
+			final Class<?> raw = fullType.getRawClass();
+			if (raw.equals(JsonNode.class)
+					|| (JsonNode.class.isAssignableFrom(raw) && raw
+							.isInstance(value))) {
 				return (T) value;
 			}
 			if (((JsonNode) value).isNull()) {
 				return null;
 			}
 			try {
-				return mapper.convertValue(value, fullType);
+				return reader(fullType).readValue((JsonNode) value);
 			} catch (final Exception e) {
 				final ClassCastException cce = new ClassCastException(
 						"Failed to convert value:" + value + " -----> "
@@ -6,40 +6,38 @@ package com.almende.util.callback;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.almende.util.ConcurrentLongMap;
+import com.almende.util.metrics.Counter;
+import com.almende.util.metrics.Metrics;
+import com.almende.util.threads.ThreadPool;
+import com.almende.util.threads.TimingWheel;
+import com.fasterxml.jackson.databind.JsonNode;
+
 /**
  * Queue to hold a list with callbacks in progress.
- * The Queue handles timeouts on the callbacks.
+ * The Queue handles timeouts on the callbacks, through a (shared) hashed
+ * timing wheel.
+ * Integral ids (numbers, or numeric JsonNodes, like generated JSON-RPC ids) are
+ * kept by their primitive long value, other ids as objects.
  * 
  * @param <T>
  *            the generic type
  */
 public class AsyncCallbackQueue<T> {
-	private final Map<Object, CallbackHandler>	queue		= new ConcurrentHashMap<Object, CallbackHandler>();
-	// FIXME: provide some means for the Appengine implementation of
-	// ThreadManager.
-	private static ScheduledThreadPoolExecutor	scheduler	= new ScheduledThreadPoolExecutor(
-																	1,
-																	Executors
-																			.defaultThreadFactory());
+	private static final Counter						OUTSTANDING	= Metrics
+																			.counter("callbacks.outstanding");
+	private static final Counter						TIMEDOUT	= Metrics
+																			.counter("callbacks.timedOut");
+	private final Map<Object, CallbackHandler>			queue		= new ConcurrentHashMap<Object, CallbackHandler>();
+	private final ConcurrentLongMap<CallbackHandler>	longQueue	= new ConcurrentLongMap<CallbackHandler>();
+	private final TimingWheel							wheel		= TimingWheel
+																			.shared();
 	
 	/** timeout in seconds */
-	private int									defTimeout	= 30;
-	
-	static {
-		try {
-			ScheduledThreadPoolExecutor.class.getMethod(
-					"setRemoveOnCancelPolicy", Boolean.class);
-			scheduler.setRemoveOnCancelPolicy(true);
-		} catch (final NoSuchMethodException e) {
-			// Do nothing, Java 6 environment
-		}
-	}
+	private int											defTimeout	= 30;
 	
 	/**
 	 * Append a callback to the queue.
@@ -60,26 +58,84 @@ public class AsyncCallbackQueue<T> {
 	 */
 	public void push(final Object id, final String description,
 			final AsyncCallback<T> callback) {
-		if (queue.containsKey(id)) {
+		push(id, description, callback, defTimeout, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Append a callback to the queue, with a specific timeout.
+	 * 
+	 * @param id
+	 *            the id
+	 * @param description
+	 *            the description
+	 * @param callback
+	 *            the callback
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit of the timeout
+	 * @see #push(Object, String, AsyncCallback)
+	 */
+	public void push(final Object id, final String description,
+			final AsyncCallback<T> callback, final long timeout,
+			final TimeUnit unit) {
+		if (isLong(id)) {
+			push(toLong(id), description, callback, timeout, unit);
+			return;
+		}
+		final CallbackHandler handler = new CallbackHandler(id, 0, description,
+				callback);
+		if (queue.putIfAbsent(id, handler) != null) {
 			throw new IllegalStateException("Callback with id '" + id
 					+ "' already in queue");
 		}
-		
-		final AsyncCallbackQueue<T> me = this;
-		final CallbackHandler handler = new CallbackHandler();
-		handler.callback = callback;
-		handler.timeout = scheduler.schedule(new Runnable() {
-			@Override
-			public void run() {
-				final AsyncCallback<T> callback = me.pull(id);
-				if (callback != null) {
-					callback.onFailure(new TimeoutException(
-							"Timeout occurred for request with id '" + id
-									+ "': " + description));
-				}
-			}
-		}, defTimeout, TimeUnit.SECONDS);
-		queue.put(id, handler);
+		OUTSTANDING.inc();
+		wheel.schedule(handler, timeout, unit);
+	}
+	
+	/**
+	 * Append a callback to the queue, by a primitive id.
+	 * 
+	 * @param id
+	 *            the id
+	 * @param description
+	 *            the description
+	 * @param callback
+	 *            the callback
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit of the timeout
+	 * @see #push(Object, String, AsyncCallback)
+	 */
+	public void push(final long id, final String description,
+			final AsyncCallback<T> callback, final long timeout,
+			final TimeUnit unit) {
+		final CallbackHandler handler = new CallbackHandler(null, id,
+				description, callback);
+		if (longQueue.putIfAbsent(id, handler) != null) {
+			throw new IllegalStateException("Callback with id '" + id
+					+ "' already in queue");
+		}
+		OUTSTANDING.inc();
+		wheel.schedule(handler, timeout, unit);
+	}
+	
+	/**
+	 * Append a callback to the queue, by a primitive id, with the default
+	 * timeout.
+	 * 
+	 * @param id
+	 *            the id
+	 * @param description
+	 *            the description
+	 * @param callback
+	 *            the callback
+	 * @see #push(Object, String, AsyncCallback)
+	 */
+	public void push(final long id, final String description,
+			final AsyncCallback<T> callback) {
+		push(id, description, callback, defTimeout, TimeUnit.SECONDS);
 	}
 	
 	/**
@@ -92,33 +148,101 @@ public class AsyncCallbackQueue<T> {
 	 * @return the async callback
 	 */
 	public AsyncCallback<T> pull(final Object id) {
-		final CallbackHandler handler = queue.remove(id);
+		if (isLong(id)) {
+			return pull(toLong(id));
+		}
+		return release(queue.remove(id));
+	}
+	
+	/**
+	 * Pull a callback from the queue, by a primitive id.
+	 * 
+	 * @param id
+	 *            the id
+	 * @return the async callback
+	 * @see #pull(Object)
+	 */
+	public AsyncCallback<T> pull(final long id) {
+		return release(longQueue.remove(id));
+	}
+	
+	private AsyncCallback<T> release(final CallbackHandler handler) {
 		if (handler != null) {
 			// stop the timeout
-			handler.timeout.cancel(true);
-			handler.timeout = null;
+			wheel.cancel(handler);
+			OUTSTANDING.dec();
 			return handler.callback;
 		}
 		return null;
 	}
 	
 	/**
-	 * Remove all callbacks from the queue.
+	 * Remove all callbacks from this queue. Other queues are not affected.
 	 */
-	public synchronized void clear() {
-		queue.clear();
-		scheduler.shutdownNow();
-		scheduler = new ScheduledThreadPoolExecutor(1,
-				Executors.defaultThreadFactory());
-		scheduler.setRemoveOnCancelPolicy(true);
+	public void clear() {
+		for (final Object id : queue.keySet()) {
+			pull(id);
+		}
+		for (final long id : longQueue.keys()) {
+			pull(id);
+		}
+	}
+	
+	private static boolean isLong(final Object id) {
+		if (id instanceof Long || id instanceof Integer || id instanceof Short
+				|| id instanceof Byte) {
+			return true;
+		}
+		if (id instanceof JsonNode) {
+			final JsonNode node = (JsonNode) id;
+			return node.isIntegralNumber() && node.canConvertToLong();
+		}
+		return false;
+	}
+	
+	private static long toLong(final Object id) {
+		if (id instanceof JsonNode) {
+			return ((JsonNode) id).asLong();
+		}
+		return ((Number) id).longValue();
 	}
 	
 	/**
-	 * Helper class to store a callback and its timeout task.
+	 * Helper class to store a callback and its timeout.
 	 */
-	private class CallbackHandler {
-		private AsyncCallback<T>	callback;
-		private ScheduledFuture<?>	timeout;
+	private class CallbackHandler extends TimingWheel.Timeout {
+		/** The object id, or null if the primitive id is used. */
+		private final Object			id;
+		private final long				longId;
+		private final String			description;
+		private final AsyncCallback<T>	callback;
+		
+		CallbackHandler(final Object id, final long longId,
+				final String description, final AsyncCallback<T> callback) {
+			this.id = id;
+			this.longId = longId;
+			this.description = description;
+			this.callback = callback;
+		}
+		
+		@Override
+		protected void expire() {
+			final boolean removed = id != null ? queue.remove(id, this)
+					: longQueue.remove(longId, this);
+			if (removed) {
+				OUTSTANDING.dec();
+				TIMEDOUT.inc();
+				ThreadPool.getPool().execute(new Runnable() {
+					@Override
+					public void run() {
+						callback.onFailure(new TimeoutException(
+								"Timeout occurred for request with id '"
+										+ (id != null ? id : longId) + "': "
+										+ description));
+					}
+				});
+			}
+		}
 	}
 	
 	/**
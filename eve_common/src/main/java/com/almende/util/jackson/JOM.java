@@ -3,6 +3,7 @@
  */
 package com.almende.util.jackson;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -20,7 +21,7 @@ import com.fasterxml.jackson.datatype.joda.JodaModule;
 public final class JOM {
 	private static final ObjectMapper	MAPPER;
 	static {
-		MAPPER = createInstance();
+		MAPPER = createInstance(null);
 	}
 	
 	protected JOM() {
@@ -63,12 +64,14 @@ public final class JOM {
 	}
 	
 	/**
-	 * Creates the instance.
+	 * Creates an instance, configured like the singleton.
 	 * 
+	 * @param factory
+	 *            the factory of the data format, null for JSON.
 	 * @return the object mapper
 	 */
-	private static synchronized ObjectMapper createInstance() {
-		final ObjectMapper mapper = new ObjectMapper();
+	static synchronized ObjectMapper createInstance(final JsonFactory factory) {
+		final ObjectMapper mapper = new ObjectMapper(factory);
 		
 		// set configuration
 		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
@@ -0,0 +1,248 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.jackson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The wire formats of (JSON-RPC) messages. Text JSON is the default; Smile is
+ * a binary encoding of the same data model, smaller and faster to parse,
+ * especially for numeric content. Smile content is recognized by its header,
+ * so receivers don't need to be told which format is used.
+ */
+public enum JsonCodec {
+
+	/** Text JSON. */
+	JSON("json", "application/json", JOM.getInstance()),
+	/** Binary JSON, in the Jackson Smile format. */
+	SMILE("smile", "application/x-jackson-smile", JOM
+			.createInstance(new SmileFactory()));
+
+	private static final Charset	UTF8	= Charset.forName("UTF-8");
+	private final String			name;
+	private final String			contentType;
+	private final ObjectMapper		mapper;
+
+	private JsonCodec(final String name, final String contentType,
+			final ObjectMapper mapper) {
+		this.name = name;
+		this.contentType = contentType;
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Gets the name, as used in configurations.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the MIME content type.
+	 *
+	 * @return the content type
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Gets the object mapper of this format.
+	 *
+	 * @return the mapper
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Checks if this is a binary format.
+	 *
+	 * @return true, if binary
+	 */
+	public boolean isBinary() {
+		return this != JSON;
+	}
+
+	/**
+	 * Encode a message in this format. The message can be JSON text, encoded
+	 * bytes, a JsonNode, or any object Jackson can serialize.
+	 *
+	 * @param message
+	 *            the message
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public byte[] encode(final Object message) throws IOException {
+		if (message instanceof byte[]) {
+			final byte[] bytes = (byte[]) message;
+			if (detect(bytes) == this) {
+				return bytes;
+			}
+			return mapper.writeValueAsBytes(decode(bytes));
+		}
+		if (message instanceof String) {
+			if (this == JSON) {
+				return ((String) message).getBytes(UTF8);
+			}
+			return mapper.writeValueAsBytes(JSON.mapper
+					.readTree((String) message));
+		}
+		return mapper.writeValueAsBytes(message);
+	}
+
+	/**
+	 * Encode a message as JSON text.
+	 *
+	 * @param message
+	 *            the message, see {@link #encode(Object)}
+	 * @return the JSON text
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static String toText(final Object message) throws IOException {
+		if (message instanceof String) {
+			return (String) message;
+		}
+		return new String(JSON.encode(message), UTF8);
+	}
+
+	/**
+	 * Decode bytes to a JSON tree, in whatever format they are.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the JSON tree
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static JsonNode decode(final byte[] bytes) throws IOException {
+		return detect(bytes).mapper.readTree(bytes);
+	}
+
+	/**
+	 * Create a parser for the bytes, in whatever format they are.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the parser
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static JsonParser createParser(final byte[] bytes)
+			throws IOException {
+		return detect(bytes).mapper.getFactory().createParser(bytes);
+	}
+
+	/**
+	 * Detect the format of the bytes, by the Smile header.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the format, JSON if not recognized.
+	 */
+	public static JsonCodec detect(final byte[] bytes) {
+		if (bytes != null && bytes.length >= 3
+				&& bytes[0] == SmileConstants.HEADER_BYTE_1
+				&& bytes[1] == SmileConstants.HEADER_BYTE_2
+				&& bytes[2] == SmileConstants.HEADER_BYTE_3) {
+			return SMILE;
+		}
+		return JSON;
+	}
+
+	/**
+	 * Get the format by its configuration name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the format, JSON if unknown or null.
+	 */
+	public static JsonCodec fromName(final String name) {
+		for (final JsonCodec codec : values()) {
+			if (codec.name.equalsIgnoreCase(name)) {
+				return codec;
+			}
+		}
+		return JSON;
+	}
+
+	/**
+	 * Get the format by its content type (parameters like the charset are
+	 * ignored).
+	 *
+	 * @param contentType
+	 *            the content type
+	 * @return the format, null if unknown or null.
+	 */
+	public static JsonCodec fromContentType(final String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		final int end = contentType.indexOf(';');
+		final String type = (end >= 0 ? contentType.substring(0, end)
+				: contentType).trim();
+		for (final JsonCodec codec : values()) {
+			if (codec.contentType.equalsIgnoreCase(type)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Choose the format of a reply, from an HTTP Accept header: the first
+	 * listed format that is supported, or the given default if there is none.
+	 *
+	 * @param accept
+	 *            the Accept header, may be null.
+	 * @param defaultCodec
+	 *            the default codec
+	 * @return the format
+	 */
+	public static JsonCodec negotiate(final String accept,
+			final JsonCodec defaultCodec) {
+		if (accept != null) {
+			for (final String type : accept.split(",")) {
+				final JsonCodec codec = fromContentType(type);
+				if (codec != null) {
+					return codec;
+				}
+			}
+		}
+		return defaultCodec;
+	}
+
+	/**
+	 * Read all bytes from a stream.
+	 *
+	 * @param in
+	 *            the in
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static byte[] readBytes(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] b = new byte[4096];
+		int n;
+		while ((n = in.read(b)) != -1) {
+			out.write(b, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
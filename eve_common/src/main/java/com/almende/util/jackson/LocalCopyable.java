@@ -0,0 +1,20 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.jackson;
+
+/**
+ * A message that is handed to a receiver in the same JVM as an object, without
+ * serialization. The receiver gets a copy of the mutable parts only (e.g. the
+ * JSON trees of params and results), everything else is shared.
+ */
+public interface LocalCopyable {
+
+	/**
+	 * Copy this message for in-process delivery.
+	 *
+	 * @return the copy
+	 */
+	Object localCopy();
+}
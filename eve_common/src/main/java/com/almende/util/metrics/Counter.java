@@ -0,0 +1,43 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter (or gauge, when decremented as well), cheap under contention.
+ */
+public class Counter implements CounterMBean {
+	private final LongAdder	value	= new LongAdder();
+	
+	/**
+	 * Increment.
+	 */
+	public void inc() {
+		value.increment();
+	}
+	
+	/**
+	 * Decrement.
+	 */
+	public void dec() {
+		value.decrement();
+	}
+	
+	/**
+	 * Add.
+	 * 
+	 * @param delta
+	 *            the delta
+	 */
+	public void add(final long delta) {
+		value.add(delta);
+	}
+	
+	@Override
+	public long getValue() {
+		return value.sum();
+	}
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMBean {
+	
+	/**
+	 * Gets the current value.
+	 * 
+	 * @return the value
+	 */
+	long getValue();
+}
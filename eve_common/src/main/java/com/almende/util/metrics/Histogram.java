@@ -0,0 +1,168 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Lock-free, log-linear histogram of (non-negative) long values, typically
+ * latencies in nanoseconds. Each power of two is split into four buckets, so
+ * percentiles are accurate to within 25%. Recording a value doesn't allocate.
+ */
+public class Histogram implements HistogramMBean {
+	private static final int	SUBBITS		= 2;
+	private static final int	SUBBUCKETS	= 1 << SUBBITS;
+	private static final int	NOFBUCKETS	= (64 - SUBBITS) * SUBBUCKETS;
+
+	private final AtomicLongArray	buckets		= new AtomicLongArray(
+														NOFBUCKETS);
+	private final LongAdder			count		= new LongAdder();
+	private final LongAdder			sum			= new LongAdder();
+	private final AtomicLong		max			= new AtomicLong(0);
+
+	/**
+	 * Record a value, negative values are counted as 0.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void record(final long value) {
+		final long val = value < 0 ? 0 : value;
+		buckets.incrementAndGet(index(val));
+		count.increment();
+		sum.add(val);
+		long current;
+		while (val > (current = max.get())) {
+			if (max.compareAndSet(current, val)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Record the time elapsed since the given System.nanoTime().
+	 *
+	 * @param startNanos
+	 *            the start time in nanoseconds
+	 */
+	public void recordSince(final long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public double getMean() {
+		final long cnt = count.sum();
+		return cnt == 0 ? 0 : (double) sum.sum() / cnt;
+	}
+
+	@Override
+	public long getMax() {
+		return max.get();
+	}
+
+	@Override
+	public long getP50() {
+		return getPercentile(0.5);
+	}
+
+	@Override
+	public long getP90() {
+		return getPercentile(0.9);
+	}
+
+	@Override
+	public long getP99() {
+		return getPercentile(0.99);
+	}
+
+	@Override
+	public long getP999() {
+		return getPercentile(0.999);
+	}
+
+	/**
+	 * Gets the (approximate) value at the given percentile.
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 1
+	 * @return the upper bound of the bucket holding that percentile.
+	 */
+	public long getPercentile(final double percentile) {
+		long total = 0;
+		final long[] snapshot = new long[NOFBUCKETS];
+		for (int i = 0; i < NOFBUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long target = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for (int i = 0; i < NOFBUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= target && snapshot[i] > 0) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < NOFBUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Gets a JSON summary of this histogram.
+	 *
+	 * @return the summary
+	 */
+	public ObjectNode toJson() {
+		final ObjectNode result = JOM.createObjectNode();
+		result.put("count", getCount());
+		result.put("mean", getMean());
+		result.put("max", getMax());
+		result.put("p50", getP50());
+		result.put("p90", getP90());
+		result.put("p99", getP99());
+		result.put("p999", getP999());
+		return result;
+	}
+
+	private static int index(final long value) {
+		if (value < SUBBUCKETS) {
+			return (int) value;
+		}
+		final int exp = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (exp - SUBBITS)) & (SUBBUCKETS - 1);
+		return ((exp - SUBBITS + 1) << SUBBITS) | sub;
+	}
+
+	private static long upperBound(final int index) {
+		if (index < SUBBUCKETS) {
+			return index;
+		}
+		final int exp = (index >>> SUBBITS) + SUBBITS - 1;
+		final long sub = index & (SUBBUCKETS - 1);
+		final long width = 1L << (exp - SUBBITS);
+		return ((SUBBUCKETS | sub) << (exp - SUBBITS)) + width - 1;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.metrics;
+
+/**
+ * JMX view of a {@link Histogram}.
+ */
+public interface HistogramMBean {
+	
+	/**
+	 * Gets the number of recorded values.
+	 * 
+	 * @return the count
+	 */
+	long getCount();
+	
+	/**
+	 * Gets the mean.
+	 * 
+	 * @return the mean
+	 */
+	double getMean();
+	
+	/**
+	 * Gets the max.
+	 * 
+	 * @return the max
+	 */
+	long getMax();
+	
+	/**
+	 * Gets the median.
+	 * 
+	 * @return the p50
+	 */
+	long getP50();
+	
+	/**
+	 * Gets the 90th percentile.
+	 * 
+	 * @return the p90
+	 */
+	long getP90();
+	
+	/**
+	 * Gets the 99th percentile.
+	 * 
+	 * @return the p99
+	 */
+	long getP99();
+	
+	/**
+	 * Gets the 99.9th percentile.
+	 * 
+	 * @return the p999
+	 */
+	long getP999();
+	
+	/**
+	 * Reset the histogram.
+	 */
+	void reset();
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Registry of the JVM-wide Eve metrics. Histograms are grouped (e.g.
+ * "rpc.invoke") and named within their group (e.g. the method name), so
+ * lookups on the hot path don't need to build a key. All metrics are
+ * published through JMX under the "com.almende.eve" domain.
+ */
+public final class Metrics {
+	private static final Logger													LOG			= Logger.getLogger(Metrics.class
+																									.getName());
+	private static final String													DOMAIN		= "com.almende.eve";
+	private static final ConcurrentMap<String, ConcurrentMap<String, Histogram>>	HISTOGRAMS	= new ConcurrentHashMap<String, ConcurrentMap<String, Histogram>>();
+	private static final ConcurrentMap<String, Counter>							COUNTERS	= new ConcurrentHashMap<String, Counter>();
+
+	private static final Function<String, ConcurrentMap<String, Histogram>>	NEWGROUP	= new Function<String, ConcurrentMap<String, Histogram>>() {
+																						@Override
+																						public ConcurrentMap<String, Histogram> apply(
+																								final String group) {
+																							return new ConcurrentHashMap<String, Histogram>();
+																						}
+																					};
+	private static final Function<String, Counter>								NEWCOUNTER	= new Function<String, Counter>() {
+																						@Override
+																						public Counter apply(
+																								final String name) {
+																							final Counter created = new Counter();
+																							register("type=Counter,name="
+																									+ ObjectName
+																											.quote(name),
+																									created);
+																							return created;
+																						}
+																					};
+
+	private Metrics() {}
+
+	/**
+	 * Gets (or creates) a histogram.
+	 *
+	 * @param group
+	 *            the group
+	 * @param name
+	 *            the name within the group
+	 * @return the histogram
+	 */
+	public static Histogram histogram(final String group, final String name) {
+		final ConcurrentMap<String, Histogram> histograms = HISTOGRAMS
+				.computeIfAbsent(group, NEWGROUP);
+		// Existing histograms are found without locking.
+		final Histogram histogram = histograms.get(name);
+		if (histogram != null) {
+			return histogram;
+		}
+		return histograms.computeIfAbsent(name,
+				new Function<String, Histogram>() {
+					@Override
+					public Histogram apply(final String key) {
+						final Histogram created = new Histogram();
+						register("type=Histogram,group="
+								+ ObjectName.quote(group) + ",name="
+								+ ObjectName.quote(key), created);
+						return created;
+					}
+				});
+	}
+
+	/**
+	 * Gets (or creates) a counter.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the counter
+	 */
+	public static Counter counter(final String name) {
+		final Counter counter = COUNTERS.get(name);
+		if (counter != null) {
+			return counter;
+		}
+		return COUNTERS.computeIfAbsent(name, NEWCOUNTER);
+	}
+
+	/**
+	 * Gets a JSON snapshot of all metrics:
+	 * { "histograms":{ group:{ name:{ count, mean, max, p50, ...}}},
+	 * "counters":{ name:value } }
+	 *
+	 * @return the snapshot
+	 */
+	public static ObjectNode toJson() {
+		final ObjectNode result = JOM.createObjectNode();
+		final ObjectNode histograms = result.putObject("histograms");
+		for (final Map.Entry<String, ConcurrentMap<String, Histogram>> group : HISTOGRAMS
+				.entrySet()) {
+			final ObjectNode groupNode = histograms.putObject(group.getKey());
+			for (final Map.Entry<String, Histogram> entry : group.getValue()
+					.entrySet()) {
+				groupNode.set(entry.getKey(), entry.getValue().toJson());
+			}
+		}
+		final ObjectNode counters = result.putObject("counters");
+		for (final Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+			counters.put(entry.getKey(), entry.getValue().getValue());
+		}
+		return result;
+	}
+
+	private static void register(final String name, final Object mbean) {
+		try {
+			final MBeanServer server = ManagementFactory
+					.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(DOMAIN + ":" + name);
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(mbean, objectName);
+			}
+		} catch (final Exception e) {
+			LOG.log(Level.FINE, "Couldn't register metric in JMX:" + name, e);
+		}
+	}
+}
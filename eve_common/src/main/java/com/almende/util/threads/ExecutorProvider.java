@@ -0,0 +1,28 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Service provider interface for the executor backing the {@link ThreadPool}.
+ * Implementations need a public no-argument constructor, to allow them to be
+ * configured by classname.
+ */
+public interface ExecutorProvider {
+	
+	/**
+	 * Creates a new executor.
+	 * 
+	 * @param nofCores
+	 *            the nof CPU cores to use
+	 * @param factory
+	 *            the thread factory (optional for backends that don't use
+	 *            platform threads)
+	 * @return the executor service
+	 */
+	ExecutorService create(final int nofCores, final ThreadFactory factory);
+}
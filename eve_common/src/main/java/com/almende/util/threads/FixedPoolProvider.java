@@ -0,0 +1,236 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.almende.util.metrics.Counter;
+import com.almende.util.metrics.Metrics;
+
+/**
+ * The default executor backend: a fixed size pool of platform threads with a
+ * bounded queue. A task offered to a full queue is handled according to the
+ * {@link Overflow} policy:
+ * <ul>
+ * <li>CALLER_RUNS (default): run the task on the offering thread</li>
+ * <li>BLOCK: wait up to the block timeout for room, then run the task on the
+ * offering thread; pool threads run it right away instead of being parked</li>
+ * <li>REJECT: throw a RejectedExecutionException</li>
+ * </ul>
+ * Only REJECT loses tasks, most callers of the pool don't expect that, so it
+ * must be chosen explicitly. Dropping messages is left to the agent mailboxes,
+ * which know which messages are notifications.
+ *
+ * Tasks run by the caller and rejected tasks are counted in the
+ * "threadPool.callerRuns" and "threadPool.rejected" {@link Metrics} counters,
+ * which are published in JMX.
+ */
+public class FixedPoolProvider implements ExecutorProvider {
+	/** The default maximum number of queued tasks. */
+	public static final int					DEFAULT_QUEUE_SIZE	= 10000;
+	private static final Counter			CALLERRUNS			= Metrics
+																		.counter("threadPool.callerRuns");
+	private static final Counter			REJECTED			= Metrics
+																		.counter("threadPool.rejected");
+	private static final ThreadLocal<Boolean>	POOLTHREAD			= new ThreadLocal<Boolean>();
+	private final int						queueSize;
+	private final Overflow					policy;
+	private final long						blockTimeout;
+
+	/**
+	 * What to do with a task offered to a full pool queue.
+	 */
+	public static enum Overflow {
+		/** Run the task on the offering thread. */
+		CALLER_RUNS,
+		/**
+		 * Block the offering thread until there is room, run the task on it
+		 * after the block timeout.
+		 */
+		BLOCK,
+		/** Reject the task. */
+		REJECT;
+
+		/**
+		 * Get the policy by name: "callerRuns", "block" or "reject".
+		 *
+		 * @param name
+		 *            the name
+		 * @return the policy, CALLER_RUNS if unknown.
+		 */
+		public static Overflow fromString(final String name) {
+			if ("reject".equalsIgnoreCase(name)) {
+				return REJECT;
+			}
+			if ("block".equalsIgnoreCase(name)) {
+				return BLOCK;
+			}
+			return CALLER_RUNS;
+		}
+	}
+
+	/**
+	 * Instantiates a new fixed pool provider, with the default queue size and
+	 * the CALLER_RUNS policy.
+	 */
+	public FixedPoolProvider() {
+		this(DEFAULT_QUEUE_SIZE, Overflow.CALLER_RUNS, 1000);
+	}
+
+	/**
+	 * Instantiates a new fixed pool provider.
+	 *
+	 * @param queueSize
+	 *            the maximum number of queued tasks, unbounded if not
+	 *            positive.
+	 * @param policy
+	 *            the policy for tasks offered to a full queue
+	 * @param blockTimeout
+	 *            the maximum time (in ms) to block, for the BLOCK policy
+	 */
+	public FixedPoolProvider(final int queueSize, final Overflow policy,
+			final long blockTimeout) {
+		this.queueSize = queueSize > 0 ? queueSize : Integer.MAX_VALUE;
+		this.policy = policy != null ? policy : Overflow.CALLER_RUNS;
+		this.blockTimeout = blockTimeout;
+	}
+
+	@Override
+	public ExecutorService create(final int nofCores,
+			final ThreadFactory factory) {
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(nofCores,
+				nofCores, 60, TimeUnit.SECONDS,
+				queueSize < Integer.MAX_VALUE ? new ArrayBlockingQueue<Runnable>(
+						queueSize) : new LinkedBlockingQueue<Runnable>(),
+				new PoolThreadFactory(factory), new Admission());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Gets the number of tasks rejected by all fixed pools.
+	 *
+	 * @return the rejected count
+	 */
+	public static long getRejected() {
+		return REJECTED.getValue();
+	}
+
+	/**
+	 * Gets the number of tasks run by the caller, as their fixed pool was
+	 * full.
+	 *
+	 * @return the caller runs count
+	 */
+	public static long getCallerRuns() {
+		return CALLERRUNS.getValue();
+	}
+
+	/**
+	 * Checks if the current thread belongs to a fixed pool.
+	 *
+	 * @return true, if it does
+	 */
+	static boolean isPoolThread() {
+		return POOLTHREAD.get() != null;
+	}
+
+	/**
+	 * Gets the queue size.
+	 *
+	 * @return the queue size
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Gets the policy.
+	 *
+	 * @return the policy
+	 */
+	public Overflow getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Marks the threads of the pool, so BLOCK never parks them.
+	 */
+	private static final class PoolThreadFactory implements ThreadFactory {
+		private final ThreadFactory	factory;
+
+		PoolThreadFactory(final ThreadFactory factory) {
+			this.factory = factory;
+		}
+
+		@Override
+		public Thread newThread(final Runnable task) {
+			return factory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					POOLTHREAD.set(Boolean.TRUE);
+					task.run();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Applies the policy to tasks offered to a full queue.
+	 */
+	private final class Admission implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(final Runnable task,
+				final ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				// Let the caller retry on the executor that replaced this one.
+				throw new RejectedExecutionException("Thread pool is shut down");
+			}
+			switch (policy) {
+				case REJECT:
+					REJECTED.inc();
+					throw new RejectedExecutionException(
+							"Thread pool is full (" + policy + ")");
+				case BLOCK:
+					if (!isPoolThread() && await(task, executor)) {
+						return;
+					}
+					break;
+				default:
+					break;
+			}
+			CALLERRUNS.inc();
+			task.run();
+		}
+
+		private boolean await(final Runnable task,
+				final ThreadPoolExecutor executor) {
+			try {
+				if (!executor.getQueue().offer(task, blockTimeout,
+						TimeUnit.MILLISECONDS)) {
+					return false;
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if (executor.isShutdown() && executor.remove(task)) {
+				throw new RejectedExecutionException("Thread pool is shut down");
+			}
+			if (executor.getPoolSize() == 0) {
+				executor.prestartCoreThread();
+			}
+			return true;
+		}
+	}
+}
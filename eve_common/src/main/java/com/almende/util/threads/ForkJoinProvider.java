@@ -0,0 +1,57 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Work-stealing executor backend, using a ForkJoinPool in async (FIFO) mode,
+ * which suits the event-style tasks of the agents.
+ */
+public class ForkJoinProvider implements ExecutorProvider {
+	
+	@Override
+	public ExecutorService create(final int nofCores,
+			final ThreadFactory factory) {
+		return new ForkJoinPool(nofCores, factory != null ? new WorkerFactory(
+				factory) : ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+				null, true);
+	}
+	
+	/**
+	 * Adapts a ThreadFactory to the ForkJoinPool: the workers get the name,
+	 * daemon status, priority and context classloader of the threads the
+	 * factory would create.
+	 */
+	private static final class WorkerFactory implements
+			ForkJoinPool.ForkJoinWorkerThreadFactory {
+		private static final Runnable	NOOP	= new Runnable() {
+													@Override
+													public void run() {}
+												};
+		private final ThreadFactory		factory;
+		
+		WorkerFactory(final ThreadFactory factory) {
+			this.factory = factory;
+		}
+		
+		@Override
+		public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+			final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+					.newThread(pool);
+			final Thread template = factory.newThread(NOOP);
+			if (template != null) {
+				worker.setName(template.getName());
+				worker.setDaemon(template.isDaemon());
+				worker.setPriority(template.getPriority());
+				worker.setContextClassLoader(template.getContextClassLoader());
+			}
+			return worker;
+		}
+	}
+}
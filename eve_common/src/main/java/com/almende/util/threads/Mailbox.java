@@ -0,0 +1,399 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.almende.util.metrics.Counter;
+import com.almende.util.metrics.Metrics;
+
+/**
+ * Bounded, lock-free mailbox, drained by the shared {@link ThreadPool}. At
+ * most one thread handles the messages of a single mailbox at any time, giving
+ * its owner single-threaded (actor-style) semantics. A drain run handles up to
+ * batchSize messages before giving its pool thread back.
+ *
+ * Besides its own capacity, each mailbox counts against a JVM-wide limit on
+ * queued messages. What happens when either bound is reached is determined by
+ * the mailbox {@link Policy}.
+ *
+ * @param <T>
+ *            the generic type
+ */
+public abstract class Mailbox<T> {
+	private static final Logger			LOG				= Logger.getLogger(Mailbox.class
+																.getName());
+	private static final AtomicInteger	GLOBALSIZE		= new AtomicInteger(0);
+	private static final Counter		GLOBALREJECTED	= Metrics
+																.counter("mailbox.rejected");
+	private static final Counter		GLOBALDROPPED	= Metrics
+																.counter("mailbox.dropped");
+	private static final AtomicInteger	WAITERS			= new AtomicInteger(0);
+	private static final Object			LOCK			= new Object();
+	private static volatile int			globalCapacity	= Integer.MAX_VALUE;
+
+	private final Queue<T>				queue			= new ConcurrentLinkedQueue<T>();
+	private final AtomicInteger			size			= new AtomicInteger(0);
+	private final AtomicBoolean			scheduled		= new AtomicBoolean(false);
+	private final AtomicLong			rejected		= new AtomicLong(0);
+	private final AtomicLong			dropped			= new AtomicLong(0);
+	private final int					capacity;
+	private final int					batchSize;
+	private Policy						policy			= Policy.REJECT;
+	private long						blockTimeout	= 1000;
+	private volatile Thread				drainThread		= null;
+	private final Runnable				drainer			= new Runnable() {
+															@Override
+															public void run() {
+																drain();
+															}
+														};
+
+	/**
+	 * What to do with a message offered to a full mailbox.
+	 */
+	public static enum Policy {
+		/** Reject the new message. */
+		REJECT,
+		/**
+		 * Drop the oldest droppable message (see
+		 * {@link Mailbox#isDroppable(Object)}) to make room, reject if there
+		 * is none.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Block the offering thread until there is room, reject after the
+		 * block timeout.
+		 */
+		BLOCK;
+
+		/**
+		 * Get the policy by name: "reject", "dropOldest" or "block".
+		 *
+		 * @param name
+		 *            the name
+		 * @return the policy, REJECT if unknown.
+		 */
+		public static Policy fromString(final String name) {
+			if ("dropOldest".equalsIgnoreCase(name)
+					|| "drop_oldest".equalsIgnoreCase(name)) {
+				return DROP_OLDEST;
+			}
+			if ("block".equalsIgnoreCase(name)) {
+				return BLOCK;
+			}
+			return REJECT;
+		}
+	}
+
+	/**
+	 * Instantiates a new mailbox.
+	 *
+	 * @param capacity
+	 *            the maximum number of waiting messages
+	 * @param batchSize
+	 *            the maximum number of messages handled per drain run
+	 */
+	public Mailbox(final int capacity, final int batchSize) {
+		this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+		this.batchSize = batchSize > 0 ? batchSize : 1;
+	}
+
+	/**
+	 * Instantiates a new mailbox.
+	 *
+	 * @param capacity
+	 *            the maximum number of waiting messages
+	 * @param batchSize
+	 *            the maximum number of messages handled per drain run
+	 * @param policy
+	 *            the overflow policy
+	 * @param blockTimeout
+	 *            the maximum time (in ms) to block, for the BLOCK policy
+	 */
+	public Mailbox(final int capacity, final int batchSize,
+			final Policy policy, final long blockTimeout) {
+		this(capacity, batchSize);
+		this.policy = policy != null ? policy : Policy.REJECT;
+		this.blockTimeout = blockTimeout;
+	}
+
+	/**
+	 * Handle a single message, called from a pool thread, never concurrently
+	 * for the same mailbox.
+	 *
+	 * @param message
+	 *            the message
+	 */
+	protected abstract void handle(final T message);
+
+	/**
+	 * Checks if the message may be dropped under the DROP_OLDEST policy. By
+	 * default no message is droppable.
+	 *
+	 * @param message
+	 *            the message
+	 * @return true, if droppable
+	 */
+	protected boolean isDroppable(final T message) {
+		return false;
+	}
+
+	/**
+	 * Offer a message to this mailbox.
+	 *
+	 * @param message
+	 *            the message
+	 * @return true, if successful, false if the message got rejected.
+	 */
+	public boolean offer(final T message) {
+		boolean admitted = reserve();
+		if (!admitted) {
+			switch (policy) {
+				case DROP_OLDEST:
+					while (!admitted && dropOldest()) {
+						admitted = reserve();
+					}
+					break;
+				case BLOCK:
+					admitted = await();
+					break;
+				default:
+					break;
+			}
+		}
+		if (!admitted) {
+			rejected.incrementAndGet();
+			GLOBALREJECTED.inc();
+			return false;
+		}
+		queue.offer(message);
+		schedule();
+		return true;
+	}
+
+	/**
+	 * Gets the number of waiting messages.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Gets the capacity.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the batch size.
+	 *
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Gets the overflow policy.
+	 *
+	 * @return the policy
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Gets the number of rejected messages.
+	 *
+	 * @return the rejected count
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Gets the number of dropped messages.
+	 *
+	 * @return the dropped count
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Gets the number of messages waiting in all mailboxes.
+	 *
+	 * @return the global size
+	 */
+	public static int getGlobalSize() {
+		return GLOBALSIZE.get();
+	}
+
+	/**
+	 * Gets the number of messages rejected by all mailboxes.
+	 *
+	 * @return the global rejected count
+	 */
+	public static long getGlobalRejected() {
+		return GLOBALREJECTED.getValue();
+	}
+
+	/**
+	 * Gets the number of messages dropped by all mailboxes.
+	 *
+	 * @return the global dropped count
+	 */
+	public static long getGlobalDropped() {
+		return GLOBALDROPPED.getValue();
+	}
+
+	/**
+	 * Gets the maximum number of messages waiting in all mailboxes.
+	 *
+	 * @return the global capacity
+	 */
+	public static int getGlobalCapacity() {
+		return globalCapacity;
+	}
+
+	/**
+	 * Sets the maximum number of messages waiting in all mailboxes together.
+	 *
+	 * @param globalCapacity
+	 *            the new global capacity, unbounded if not positive.
+	 */
+	public static void setGlobalCapacity(final int globalCapacity) {
+		Mailbox.globalCapacity = globalCapacity > 0 ? globalCapacity
+				: Integer.MAX_VALUE;
+	}
+
+	private boolean reserve() {
+		int current;
+		do {
+			current = size.get();
+			if (current >= capacity) {
+				return false;
+			}
+		} while (!size.compareAndSet(current, current + 1));
+		do {
+			current = GLOBALSIZE.get();
+			if (current >= globalCapacity) {
+				size.decrementAndGet();
+				return false;
+			}
+		} while (!GLOBALSIZE.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	private void release() {
+		size.decrementAndGet();
+		GLOBALSIZE.decrementAndGet();
+		if (WAITERS.get() > 0) {
+			synchronized (LOCK) {
+				LOCK.notifyAll();
+			}
+		}
+	}
+
+	private boolean dropOldest() {
+		final Iterator<T> iter = queue.iterator();
+		while (iter.hasNext()) {
+			final T message = iter.next();
+			// remove() fails if a drain run took the message in the meantime.
+			if (isDroppable(message) && queue.remove(message)) {
+				release();
+				dropped.incrementAndGet();
+				GLOBALDROPPED.inc();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean await() {
+		// Blocking our own drain thread would never free any room, and
+		// parked pool threads can't drain other mailboxes.
+		if (Thread.currentThread() == drainThread || ThreadPool.isPoolThread()) {
+			return false;
+		}
+		final long deadline = System.currentTimeMillis() + blockTimeout;
+		WAITERS.incrementAndGet();
+		try {
+			synchronized (LOCK) {
+				while (!reserve()) {
+					final long remaining = deadline
+							- System.currentTimeMillis();
+					if (remaining <= 0) {
+						return false;
+					}
+					LOCK.wait(remaining);
+				}
+				return true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			WAITERS.decrementAndGet();
+		}
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true) && !submit()) {
+			// The pool is full, the messages are admitted already.
+			drain();
+		}
+	}
+
+	private boolean submit() {
+		try {
+			ThreadPool.getPool().execute(drainer);
+			return true;
+		} catch (final RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	private void drain() {
+		final Thread previous = drainThread;
+		drainThread = Thread.currentThread();
+		try {
+			do {
+				int count = 0;
+				T message;
+				while (count < batchSize && (message = queue.poll()) != null) {
+					release();
+					count++;
+					try {
+						handle(message);
+					} catch (final Throwable e) {
+						LOG.log(Level.WARNING, "Mailbox handler failed", e);
+					}
+				}
+				scheduled.set(false);
+				// Messages may have arrived between the last poll and
+				// resetting the flag, or the batch limit was reached. Go on
+				// here if the pool can't take another run.
+			} while (!queue.isEmpty() && scheduled.compareAndSet(false, true)
+					&& !submit());
+		} finally {
+			drainThread = previous;
+		}
+	}
+}
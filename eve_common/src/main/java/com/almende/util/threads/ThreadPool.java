@@ -4,28 +4,85 @@
  */
 package com.almende.util.threads;
 
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
- * The Class ThreadPool.
+ * The Class ThreadPool, the shared executor of Eve. The actual backend is
+ * pluggable through an {@link ExecutorProvider}, switching backends lets the
+ * old executor finish its queued work.
  */
 public class ThreadPool {
-	private static int					nofCores = 8;
-	private static ThreadFactory		factory	= Executors
-														.defaultThreadFactory();
-	private static ThreadPoolExecutor	pool	= new ThreadPoolExecutor(
-														nofCores,
-														nofCores,
-														60,
-														TimeUnit.SECONDS,
-														new LinkedBlockingQueue<Runnable>(),
-														factory,
-														new ThreadPoolExecutor.CallerRunsPolicy());
+	private static final Logger						LOG			= Logger.getLogger(ThreadPool.class
+																		.getName());
+	private static int								nofCores	= 8;
+	private static ThreadFactory					factory		= Executors
+																		.defaultThreadFactory();
+	private static ExecutorProvider					provider	= new FixedPoolProvider();
+	private static volatile ExecutorService			current		= provider
+																		.create(nofCores,
+																				factory);
+	private static final SwitchableExecutorService	POOL		= new SwitchableExecutorService();
+	
+	/**
+	 * Configure the thread pool, based on the "threadPool" section of the Eve
+	 * yaml.
+	 * 
+	 * @param params
+	 *            the params
+	 */
+	public static synchronized void configure(final ObjectNode params) {
+		final ThreadPoolConfig config = new ThreadPoolConfig(params);
+		if (config.getNofCores() > 0) {
+			nofCores = config.getNofCores();
+		}
+		provider = getProvider(config.getExecutor());
+		if (provider instanceof FixedPoolProvider) {
+			provider = new FixedPoolProvider(config.getQueueSize(),
+					FixedPoolProvider.Overflow.fromString(config.getPolicy()),
+					config.getBlockTimeout());
+		}
+		Mailbox.setGlobalCapacity(config.getMaxQueued());
+		replace();
+	}
 	
+	/**
+	 * Gets a provider by name: "fixed", "forkjoin", "virtual" or the classname
+	 * of an {@link ExecutorProvider} implementation.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the provider
+	 */
+	public static ExecutorProvider getProvider(final String name) {
+		if (name == null || "fixed".equalsIgnoreCase(name)) {
+			return new FixedPoolProvider();
+		}
+		if ("forkjoin".equalsIgnoreCase(name)) {
+			return new ForkJoinProvider();
+		}
+		if ("virtual".equalsIgnoreCase(name)) {
+			return new VirtualThreadProvider();
+		}
+		try {
+			return (ExecutorProvider) Class.forName(name)
+					.getDeclaredConstructor().newInstance();
+		} catch (final Exception e) {
+			LOG.log(Level.WARNING, "Couldn't load executor provider:" + name
+					+ ", using default.", e);
+		}
+		return new FixedPoolProvider();
+	}
 	
 	/**
 	 * Sets the nof CPU cores, for efficient resource usage.
@@ -33,23 +90,40 @@ public class ThreadPool {
 	 * @param nofCores
 	 *            the new nof cores
 	 */
-	public static void setNofCores(int nofCores){
-		ThreadPool.nofCores=nofCores;
-		pool.purge();
-		pool.shutdownNow();
-		pool = new ThreadPoolExecutor(nofCores, nofCores, 60, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>(), factory,
-				new ThreadPoolExecutor.CallerRunsPolicy());
-		pool.allowCoreThreadTimeOut(true);
+	public static synchronized void setNofCores(int nofCores) {
+		ThreadPool.nofCores = nofCores;
+		replace();
 	}
 	
 	/**
-	 * Gets the pool.
+	 * Gets the pool. This is a stable facade over the current backend, which
+	 * stays valid when the backend is replaced. For the statistics of the
+	 * backend (active count, queue, etc.), see {@link #getExecutor()}.
 	 * 
 	 * @return the pool
 	 */
-	public static ThreadPoolExecutor getPool() {
-		return pool;
+	public static ExecutorService getPool() {
+		return POOL;
+	}
+	
+	/**
+	 * Checks if the current thread is a thread of the pool. These must never
+	 * be parked waiting for room in a queue.
+	 * 
+	 * @return true, if it is
+	 */
+	public static boolean isPoolThread() {
+		return FixedPoolProvider.isPoolThread()
+				|| Thread.currentThread() instanceof ForkJoinWorkerThread;
+	}
+	
+	/**
+	 * Gets the current backend executor itself.
+	 * 
+	 * @return the executor
+	 */
+	public static ExecutorService getExecutor() {
+		return current;
 	}
 	
 	/**
@@ -67,13 +141,90 @@ public class ThreadPool {
 	 * @param factory
 	 *            the new factory
 	 */
-	public static void setFactory(final ThreadFactory factory) {
+	public static synchronized void setFactory(final ThreadFactory factory) {
 		ThreadPool.factory = factory;
-		pool.purge();
-		pool.shutdownNow();
-		pool = new ThreadPoolExecutor(nofCores, nofCores, 60, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>(), factory,
-				new ThreadPoolExecutor.CallerRunsPolicy());
-		pool.allowCoreThreadTimeOut(true);
+		replace();
+	}
+	
+	/**
+	 * Gets the executor provider.
+	 * 
+	 * @return the provider
+	 */
+	public static ExecutorProvider getProvider() {
+		return provider;
+	}
+	
+	/**
+	 * Sets the executor provider.
+	 * 
+	 * @param provider
+	 *            the new provider
+	 */
+	public static synchronized void setProvider(final ExecutorProvider provider) {
+		ThreadPool.provider = provider;
+		replace();
+	}
+	
+	/**
+	 * Replace the backing executor. The old executor is shutdown gracefully,
+	 * so tasks already queued there will still run.
+	 */
+	private static void replace() {
+		final ExecutorService old = current;
+		current = provider.create(nofCores, factory);
+		old.shutdown();
+	}
+	
+	/**
+	 * Stable facade over the current backend, retrying tasks that got
+	 * rejected by an executor that was replaced in the meantime. It never
+	 * starts threads of its own, everything is delegated to the backend.
+	 */
+	private static class SwitchableExecutorService extends
+			AbstractExecutorService {
+		
+		@Override
+		public void execute(final Runnable command) {
+			ExecutorService target = current;
+			while (true) {
+				try {
+					target.execute(command);
+					return;
+				} catch (final RejectedExecutionException e) {
+					final ExecutorService next = current;
+					if (next == target) {
+						throw e;
+					}
+					target = next;
+				}
+			}
+		}
+		
+		@Override
+		public void shutdown() {
+			current.shutdown();
+		}
+		
+		@Override
+		public List<Runnable> shutdownNow() {
+			return current.shutdownNow();
+		}
+		
+		@Override
+		public boolean isShutdown() {
+			return current.isShutdown();
+		}
+		
+		@Override
+		public boolean isTerminated() {
+			return current.isTerminated();
+		}
+		
+		@Override
+		public boolean awaitTermination(final long timeout, final TimeUnit unit)
+				throws InterruptedException {
+			return current.awaitTermination(timeout, unit);
+		}
 	}
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import com.almende.eve.capabilities.Config;
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The Class ThreadPoolConfig, the "threadPool" section of the Eve yaml:
+ * 
+ * <pre>
+ * threadPool:
+ *    executor: fixed       # fixed (default), forkjoin, virtual or a classname
+ *    nofCores: 8
+ *    queueSize: 10000      # tasks queued in the fixed pool
+ *    policy: callerRuns    # callerRuns, block or reject, when that queue is full
+ *    blockTimeout: 1000
+ *    maxQueued: 100000     # messages queued in all agent mailboxes
+ * </pre>
+ */
+public class ThreadPoolConfig extends Config {
+	
+	/**
+	 * Instantiates a new thread pool config.
+	 */
+	public ThreadPoolConfig() {
+		this(JOM.createObjectNode());
+	}
+	
+	/**
+	 * Instantiates a new thread pool config.
+	 * 
+	 * @param node
+	 *            the node
+	 */
+	public ThreadPoolConfig(final ObjectNode node) {
+		super(node);
+	}
+	
+	/**
+	 * Sets the executor type: "fixed", "forkjoin", "virtual" or the classname
+	 * of an {@link ExecutorProvider}.
+	 * 
+	 * @param executor
+	 *            the new executor
+	 */
+	public void setExecutor(final String executor) {
+		this.put("executor", executor);
+	}
+	
+	/**
+	 * Gets the executor type.
+	 * 
+	 * @return the executor
+	 */
+	public String getExecutor() {
+		if (this.has("executor")) {
+			return this.get("executor").asText();
+		}
+		return "fixed";
+	}
+	
+	/**
+	 * Sets the nof cores.
+	 * 
+	 * @param nofCores
+	 *            the new nof cores
+	 */
+	public void setNofCores(final int nofCores) {
+		this.put("nofCores", nofCores);
+	}
+	
+	/**
+	 * Gets the nof cores.
+	 * 
+	 * @return the nof cores, or -1 if not set.
+	 */
+	public int getNofCores() {
+		if (this.has("nofCores")) {
+			return this.get("nofCores").asInt();
+		}
+		return -1;
+	}
+	
+	/**
+	 * Sets the maximum number of inbound messages queued in all agent
+	 * mailboxes together.
+	 * 
+	 * @param maxQueued
+	 *            the new max queued
+	 */
+	public void setMaxQueued(final int maxQueued) {
+		this.put("maxQueued", maxQueued);
+	}
+	
+	/**
+	 * Gets the maximum number of queued inbound messages.
+	 * 
+	 * @return the max queued, or -1 if not set (unbounded).
+	 */
+	public int getMaxQueued() {
+		if (this.has("maxQueued")) {
+			return this.get("maxQueued").asInt();
+		}
+		return -1;
+	}
+	
+	/**
+	 * Sets the maximum number of tasks queued in the fixed thread pool.
+	 * 
+	 * @param queueSize
+	 *            the new queue size, unbounded if not positive.
+	 */
+	public void setQueueSize(final int queueSize) {
+		this.put("queueSize", queueSize);
+	}
+	
+	/**
+	 * Gets the maximum number of tasks queued in the fixed thread pool.
+	 * 
+	 * @return the queue size, defaults to
+	 *         {@link FixedPoolProvider#DEFAULT_QUEUE_SIZE}.
+	 */
+	public int getQueueSize() {
+		if (this.has("queueSize")) {
+			return this.get("queueSize").asInt();
+		}
+		return FixedPoolProvider.DEFAULT_QUEUE_SIZE;
+	}
+	
+	/**
+	 * Sets the policy for tasks offered to a full pool queue: "callerRuns",
+	 * "block" or "reject", see {@link FixedPoolProvider.Overflow}.
+	 * 
+	 * @param policy
+	 *            the new policy
+	 */
+	public void setPolicy(final String policy) {
+		this.put("policy", policy);
+	}
+	
+	/**
+	 * Gets the policy for tasks offered to a full pool queue.
+	 * 
+	 * @return the policy
+	 */
+	public String getPolicy() {
+		if (this.has("policy")) {
+			return this.get("policy").asText();
+		}
+		return "callerRuns";
+	}
+	
+	/**
+	 * Sets the maximum time (in ms) to wait for room in the pool queue, for
+	 * the "block" policy.
+	 * 
+	 * @param blockTimeout
+	 *            the new block timeout
+	 */
+	public void setBlockTimeout(final long blockTimeout) {
+		this.put("blockTimeout", blockTimeout);
+	}
+	
+	/**
+	 * Gets the block timeout.
+	 * 
+	 * @return the block timeout
+	 */
+	public long getBlockTimeout() {
+		if (this.has("blockTimeout")) {
+			return this.get("blockTimeout").asLong();
+		}
+		return 1000;
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel, for large numbers of timeouts which are mostly
+ * cancelled before they expire (like RPC callback timeouts). Scheduling and
+ * cancelling are O(1) and don't allocate: the {@link Timeout} itself is the
+ * list node. Expiry is accurate to one tick.
+ *
+ * A small set of shared wheels is available through {@link #shared()}, each
+ * driven by its own daemon thread.
+ */
+public class TimingWheel {
+	private static final Logger			LOG			= Logger.getLogger(TimingWheel.class
+															.getName());
+	private static final int			NOFSHARDS	= Math.max(1, Math.min(4,
+															Runtime.getRuntime()
+																	.availableProcessors() / 2));
+	private static final TimingWheel[]	SHARDS		= new TimingWheel[NOFSHARDS];
+	private static final AtomicInteger	NEXTSHARD	= new AtomicInteger(0);
+
+	private final long					tickMillis;
+	private final Bucket[]				buckets;
+	private final int					mask;
+	private final long					startTime;
+	private volatile long				processed	= 0;
+
+	/**
+	 * Gets one of the shared timing wheels, handed out round robin.
+	 *
+	 * @return the timing wheel
+	 */
+	public static TimingWheel shared() {
+		final int shard = (NEXTSHARD.getAndIncrement() & Integer.MAX_VALUE)
+				% NOFSHARDS;
+		synchronized (SHARDS) {
+			if (SHARDS[shard] == null) {
+				SHARDS[shard] = new TimingWheel(100, TimeUnit.MILLISECONDS, 512);
+			}
+			return SHARDS[shard];
+		}
+	}
+
+	/**
+	 * Instantiates a new timing wheel.
+	 *
+	 * @param tick
+	 *            the tick duration
+	 * @param unit
+	 *            the unit of the tick duration
+	 * @param wheelSize
+	 *            the number of buckets, rounded up to a power of two
+	 */
+	public TimingWheel(final long tick, final TimeUnit unit,
+			final int wheelSize) {
+		tickMillis = Math.max(1, unit.toMillis(tick));
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		buckets = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			buckets[i] = new Bucket();
+		}
+		mask = size - 1;
+		startTime = System.currentTimeMillis();
+
+		final Thread worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "TimingWheel");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Schedule the timeout to expire after the given delay. A timeout can
+	 * only be scheduled once at a time.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @param delay
+	 *            the delay
+	 * @param unit
+	 *            the unit of the delay
+	 */
+	public void schedule(final Timeout timeout, final long delay,
+			final TimeUnit unit) {
+		final long ticks = Math.max(1, (unit.toMillis(delay) + tickMillis - 1)
+				/ tickMillis);
+		while (true) {
+			final long target = processed + ticks;
+			final Bucket bucket = buckets[(int) (target & mask)];
+			synchronized (bucket) {
+				// Retry if the worker passed this bucket in the meantime.
+				if (target > processed) {
+					timeout.deadline = target;
+					bucket.add(timeout);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cancel the timeout.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @return true, if the timeout was still pending.
+	 */
+	public boolean cancel(final Timeout timeout) {
+		final Bucket bucket = timeout.bucket;
+		if (bucket == null) {
+			return false;
+		}
+		synchronized (bucket) {
+			if (timeout.bucket != bucket) {
+				return false;
+			}
+			bucket.remove(timeout);
+		}
+		return true;
+	}
+
+	private void work() {
+		while (true) {
+			final long next = processed + 1;
+			final long sleep = startTime + next * tickMillis
+					- System.currentTimeMillis();
+			if (sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch (final InterruptedException e) {
+					return;
+				}
+			}
+			final Bucket bucket = buckets[(int) (next & mask)];
+			Timeout expired = null;
+			synchronized (bucket) {
+				processed = next;
+				Timeout timeout = bucket.head;
+				while (timeout != null) {
+					final Timeout following = timeout.next;
+					if (timeout.deadline <= next) {
+						bucket.remove(timeout);
+						timeout.next = expired;
+						expired = timeout;
+					}
+					timeout = following;
+				}
+			}
+			while (expired != null) {
+				final Timeout timeout = expired;
+				expired = timeout.next;
+				timeout.next = null;
+				try {
+					timeout.expire();
+				} catch (final Throwable e) {
+					LOG.log(Level.WARNING, "Timeout handler failed", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A timeout, to be extended with the action to run on expiry.
+	 */
+	public abstract static class Timeout {
+		private long				deadline	= 0;
+		private volatile Bucket		bucket		= null;
+		private Timeout				prev		= null;
+		private Timeout				next		= null;
+
+		/**
+		 * Called from the timing wheel thread when this timeout expires.
+		 * Implementations should be short, or hand their work to a pool.
+		 */
+		protected abstract void expire();
+	}
+
+	/**
+	 * Doubly linked list of timeouts.
+	 */
+	private static class Bucket {
+		private Timeout	head	= null;
+
+		private void add(final Timeout timeout) {
+			timeout.bucket = this;
+			timeout.prev = null;
+			timeout.next = head;
+			if (head != null) {
+				head.prev = timeout;
+			}
+			head = timeout;
+		}
+
+		private void remove(final Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
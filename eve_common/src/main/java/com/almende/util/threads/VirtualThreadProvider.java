@@ -0,0 +1,55 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Thread-per-task executor backend, using virtual threads. Blocking tasks (like
+ * callSync()) don't pin a platform thread here. On JVMs without virtual
+ * threads, this falls back to the work-stealing backend.
+ */
+public class VirtualThreadProvider implements ExecutorProvider {
+	private static final Logger	LOG	= Logger.getLogger(VirtualThreadProvider.class
+											.getName());
+	
+	/**
+	 * Checks if virtual threads are available in this JVM.
+	 * 
+	 * @return true, if available
+	 */
+	public static boolean isAvailable() {
+		return getFactoryMethod() != null;
+	}
+	
+	private static Method getFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (final NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	@Override
+	public ExecutorService create(final int nofCores,
+			final ThreadFactory factory) {
+		final Method method = getFactoryMethod();
+		if (method != null) {
+			try {
+				return (ExecutorService) method.invoke(null);
+			} catch (final Exception e) {
+				LOG.warning("Couldn't create virtual thread executor:"
+						+ e.getMessage());
+			}
+		} else {
+			LOG.warning("Virtual threads not available in this JVM, falling back to ForkJoinPool.");
+		}
+		return new ForkJoinProvider().create(nofCores, factory);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util.uuid;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of compact, unique ids: a cheaper replacement of {@link UUID} for
+ * ids that only need to be unique, like request ids and task ids.
+ *
+ * Ids are taken from a JVM wide counter, which hands out blocks of ids to each
+ * thread. Within its block, a thread counts without any synchronization, so
+ * ids are monotonic per thread and generated lock-free. String ids are
+ * prefixed by a node id, derived from the host and the start of this JVM, to
+ * make them unique across JVMs as well.
+ */
+public final class IdGenerator {
+	private static final int					BLOCK	= 1024;
+	private static final AtomicLong				BLOCKS	= new AtomicLong(0);
+	private static final String					PREFIX;
+	private static final SecureRandom			RANDOM	= new SecureRandom();
+	/** The next id and the end of the block of the current thread. */
+	private static final ThreadLocal<long[]>	RANGE	= new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
+	static {
+		final long node = UUIDGen.getClockSeqAndNode();
+		PREFIX = Long.toString((node ^ (node >>> 32)) & 0xFFFFFFFFL, 36)
+				+ Long.toString(System.currentTimeMillis(), 36) + "-";
+	}
+
+	private IdGenerator() {}
+
+	/**
+	 * Get the next id, unique within this JVM. Ids start at 1, so small ids
+	 * also survive JSON clients which only know doubles.
+	 *
+	 * @return the id
+	 */
+	public static long nextLong() {
+		final long[] range = RANGE.get();
+		if (range[0] == range[1]) {
+			final long start = BLOCKS.getAndIncrement() * BLOCK + 1;
+			range[0] = start;
+			range[1] = start + BLOCK;
+		}
+		return range[0]++;
+	}
+
+	/**
+	 * Get the next id as String, unique across JVMs: the node prefix followed
+	 * by {@link #nextLong()}, in base 36.
+	 *
+	 * @return the id
+	 */
+	public static String next() {
+		return PREFIX + Long.toString(nextLong(), 36);
+	}
+
+	/**
+	 * Get a random, unguessable, token (126 random bits, in base 36), for ids
+	 * that serve as credentials.
+	 *
+	 * @return the token
+	 */
+	public static String nextToken() {
+		return Long.toString(RANDOM.nextLong() >>> 1, 36)
+				+ Long.toString(RANDOM.nextLong() >>> 1, 36);
+	}
+}
@@ -17,6 +17,7 @@ import com.almende.eve.agent.AgentConfig;
 import com.almende.eve.capabilities.Config;
 import com.almende.eve.capabilities.wake.WakeService;
 import com.almende.eve.config.YamlReader;
+import com.almende.util.threads.ThreadPool;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -161,6 +162,9 @@ public final class Boot {
 			final ClassLoader cl) {
 		final Config config = YamlReader.load(is).expand();
 		
+		if (config.has("threadPool")) {
+			ThreadPool.configure((ObjectNode) config.get("threadPool"));
+		}
 		final ArrayNode agents = (ArrayNode) config.get("agents");
 		for (final JsonNode agent : agents) {
 			final AgentConfig agentConfig = new AgentConfig((ObjectNode) agent);
@@ -0,0 +1,269 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.capabilities.wake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the most recently active Wakeables of a {@link WakeService} resident,
+ * within a maximum count and/or heap budget. Wakeables that are evicted, or
+ * idle for longer than the idle timeout, are passivated: their
+ * {@link Wakeable#passivate()} is called and the strong reference is dropped.
+ * The next message through their {@link WakeHandler} rehydrates them through
+ * {@link WakeService#wake(String)}.
+ *
+ * Lookups only update the timestamp of their entry, without locking. When the
+ * budget is exceeded, one thread at a time evicts the least recently used
+ * entries, with some slack so this doesn't happen on every admission.
+ */
+public class PassivationManager {
+	private static final Logger				LOG				= Logger.getLogger(PassivationManager.class
+																	.getName());
+	private static ScheduledExecutorService	timer			= null;
+	private static final Comparator<Resident>	LRU				= new Comparator<Resident>() {
+																@Override
+																public int compare(
+																		final Resident a,
+																		final Resident b) {
+																	return Long.compare(
+																			a.lastAccess
+																					- b.lastAccess,
+																			0);
+																}
+															};
+	private final ConcurrentMap<String, Resident>	residents	= new ConcurrentHashMap<String, Resident>();
+	private final AtomicBoolean				evicting		= new AtomicBoolean(false);
+	private final int						maxResident;
+	private final long						idleTimeout;
+	private final double					maxHeapRatio;
+	private final AtomicLong				hits			= new AtomicLong(0);
+	private final AtomicLong				misses			= new AtomicLong(0);
+	private final AtomicLong				passivations	= new AtomicLong(0);
+
+	/**
+	 * Instantiates a new passivation manager.
+	 *
+	 * @param maxResident
+	 *            the maximum number of resident Wakeables, unbounded if not
+	 *            positive.
+	 * @param idleTimeout
+	 *            the idle time (in ms) after which Wakeables are passivated,
+	 *            never if not positive.
+	 * @param maxHeapRatio
+	 *            the fraction of the maximum heap above which the least
+	 *            recently used Wakeables are passivated, not checked if not
+	 *            positive.
+	 */
+	public PassivationManager(final int maxResident, final long idleTimeout,
+			final double maxHeapRatio) {
+		this.maxResident = maxResident > 0 ? maxResident : Integer.MAX_VALUE;
+		this.idleTimeout = idleTimeout;
+		this.maxHeapRatio = maxHeapRatio;
+		if (idleTimeout > 0) {
+			final long period = Math.max(1000, idleTimeout / 2);
+			getTimer().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					sweep();
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Mark the instance as used. Counts as a hit if it is the resident
+	 * instance for this key.
+	 *
+	 * @param wakeKey
+	 *            the wake key
+	 * @param instance
+	 *            the instance
+	 * @return true, if the instance is resident, false if it has been
+	 *         passivated.
+	 */
+	public boolean touch(final String wakeKey, final Object instance) {
+		final Resident resident = residents.get(wakeKey);
+		if (resident == null || resident.instance != instance) {
+			return false;
+		}
+		resident.lastAccess = System.nanoTime();
+		hits.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Make the instance resident, possibly passivating others to stay within
+	 * budget.
+	 *
+	 * @param wakeKey
+	 *            the wake key
+	 * @param instance
+	 *            the instance
+	 */
+	public void admit(final String wakeKey, final Object instance) {
+		residents.put(wakeKey, new Resident(wakeKey, instance));
+		final int size = residents.size();
+		int overflow = 0;
+		if (size > maxResident) {
+			// Evict a little extra, so the next admissions don't need to.
+			overflow = size - maxResident + Math.max(1, maxResident / 100)
+					- 1;
+		} else if (maxHeapRatio > 0 && size > 1) {
+			final Runtime rt = Runtime.getRuntime();
+			final long used = rt.totalMemory() - rt.freeMemory();
+			if (used > rt.maxMemory() * maxHeapRatio) {
+				// Freed memory only shows after GC, so shrink gradually.
+				overflow = Math.max(1, size / 100);
+			}
+		}
+		if (overflow > 0 && evicting.compareAndSet(false, true)) {
+			try {
+				evict(overflow, instance);
+			} finally {
+				evicting.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Count a miss: a lookup of a passivated (or unloaded) Wakeable.
+	 */
+	public void miss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Passivate the Wakeable now.
+	 *
+	 * @param wakeKey
+	 *            the wake key
+	 * @return true, if it was resident.
+	 */
+	public boolean passivate(final String wakeKey) {
+		final Resident resident = residents.remove(wakeKey);
+		if (resident == null) {
+			return false;
+		}
+		passivate(resident);
+		return true;
+	}
+
+	/**
+	 * Gets the number of resident Wakeables.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return residents.size();
+	}
+
+	/**
+	 * Gets the number of handler lookups that found their Wakeable resident.
+	 *
+	 * @return the hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of handler lookups that needed a Wakeable to be woken.
+	 *
+	 * @return the misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of passivated Wakeables.
+	 *
+	 * @return the passivations
+	 */
+	public long getPassivations() {
+		return passivations.get();
+	}
+
+	private void sweep() {
+		final long threshold = System.nanoTime()
+				- TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		for (final Resident resident : residents.values()) {
+			if (resident.lastAccess - threshold <= 0
+					&& residents.remove(resident.wakeKey, resident)) {
+				passivate(resident);
+			}
+		}
+	}
+
+	/**
+	 * Passivate the least recently used residents, except the given instance.
+	 */
+	private void evict(final int count, final Object keep) {
+		final List<Resident> candidates = new ArrayList<Resident>(
+				residents.values());
+		Collections.sort(candidates, LRU);
+		int evicted = 0;
+		for (final Resident resident : candidates) {
+			if (evicted >= count) {
+				break;
+			}
+			if (resident.instance != keep
+					&& residents.remove(resident.wakeKey, resident)) {
+				passivate(resident);
+				evicted++;
+			}
+		}
+	}
+
+	private void passivate(final Resident resident) {
+		try {
+			if (resident.instance instanceof Wakeable) {
+				((Wakeable) resident.instance).passivate();
+			}
+		} catch (final Exception e) {
+			LOG.log(Level.WARNING, "Failed to passivate:'" + resident.wakeKey
+					+ "'", e);
+		}
+		passivations.incrementAndGet();
+	}
+
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "Passivation");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return timer;
+	}
+
+	private static class Resident {
+		private final String	wakeKey;
+		private final Object	instance;
+		private volatile long	lastAccess	= System.nanoTime();
+
+		Resident(final String wakeKey, final Object instance) {
+			this.wakeKey = wakeKey;
+			this.instance = instance;
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package com.almende.eve.capabilities.wake;
 
 import java.lang.ref.WeakReference;
+import java.util.logging.Logger;
 
 import com.almende.eve.capabilities.handler.Handler;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -16,6 +17,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  *            the generic type
  */
 public class WakeHandler<T> implements Handler<T> {
+	private static final Logger	LOG			= Logger.getLogger(WakeHandler.class
+													.getName());
 	private WeakReference<T>	referent	= null;
 	private final Object		wakeLock	= new Object();
 	private String				wakeKey		= null;
@@ -52,18 +55,23 @@ public class WakeHandler<T> implements Handler<T> {
 	@Override
 	@JsonIgnore
 	public T get() {
-		if (referent.get() == null) {
-			service.wake(getWakeKey());
+		T result = referent.get();
+		if (service == null
+				|| (result != null && service.touch(wakeKey, result))) {
+			return result;
 		}
-		while (referent.get() == null) {
-			synchronized (wakeLock) {
-				try {
-					wakeLock.wait();
-				} catch (final InterruptedException e) {
-				}
+		// Unloaded or passivated: wake it, once for all concurrent callers.
+		synchronized (wakeLock) {
+			result = referent.get();
+			if (result == null || !service.touch(wakeKey, result)) {
+				service.wake(getWakeKey());
+				result = referent.get();
 			}
 		}
-		return referent.get();
+		if (result == null) {
+			LOG.warning("Failed to wake:'" + wakeKey + "'");
+		}
+		return result;
 	}
 	
 	/*
@@ -74,15 +82,17 @@ public class WakeHandler<T> implements Handler<T> {
 	 */
 	@Override
 	public void update(final Handler<T> newHandler) {
-		this.referent = new WeakReference<T>(newHandler.get());
-		
 		// Can this be done in a cleaner way?
 		if (newHandler instanceof WakeHandler) {
 			final WakeHandler<T> other = (WakeHandler<T>) newHandler;
+			// Don't go through get(), that might trigger another wake.
+			this.referent = new WeakReference<T>(other.referent.get());
 			this.wakeKey = other.getWakeKey();
-			synchronized (wakeLock) {
-				wakeLock.notifyAll();
+			if (other.service != null) {
+				this.service = other.service;
 			}
+		} else {
+			this.referent = new WeakReference<T>(newHandler.get());
 		}
 	}
 	
@@ -26,6 +26,7 @@ public class WakeService implements Capability {
 	private Map<String, WakeEntry>	agents		= new HashMap<String, WakeEntry>();
 	
 	private State					state		= null;
+	private PassivationManager		passivation	= null;
 	
 	/**
 	 * Instantiates a new wake service.
@@ -45,6 +46,7 @@ public class WakeService implements Capability {
 		state = new StateBuilder().withConfig(
 				(ObjectNode) myParams.get("state")).build();
 		WakeServiceBuilder.getServices().put(state.getId(), this);
+		loadPassivation(new WakeServiceConfig(params).getPassivation());
 	}
 	
 	/**
@@ -66,6 +68,70 @@ public class WakeService implements Capability {
 		this.myParams = myParams;
 		state = new StateBuilder().withConfig((ObjectNode) myParams.get("state")).build();
 		WakeServiceBuilder.getServices().put(state.getId(), this);
+		loadPassivation(new WakeServiceConfig(myParams).getPassivation());
+	}
+	
+	/**
+	 * Load passivation. Without a passivation config, unused Wakeables are
+	 * only unloaded by the garbage collector.
+	 * 
+	 * @param pc
+	 *            the passivation config
+	 */
+	@JsonIgnore
+	public void loadPassivation(final ObjectNode pc) {
+		if (pc != null) {
+			final int maxResident = pc.has("maxResident") ? pc.get(
+					"maxResident").asInt() : -1;
+			final long idleTimeout = pc.has("idleTimeout") ? pc.get(
+					"idleTimeout").asLong() : -1;
+			final double maxHeapRatio = pc.has("maxHeapRatio") ? pc.get(
+					"maxHeapRatio").asDouble() : -1;
+			passivation = new PassivationManager(maxResident, idleTimeout,
+					maxHeapRatio);
+		} else {
+			passivation = null;
+		}
+	}
+	
+	/**
+	 * Gets the passivation manager, for its hit and miss statistics.
+	 * 
+	 * @return the passivation manager, or null if not configured.
+	 */
+	@JsonIgnore
+	public PassivationManager getPassivation() {
+		return passivation;
+	}
+	
+	/**
+	 * Check if the instance may still be used for this wake key. Always true
+	 * without passivation.
+	 * 
+	 * @param wakeKey
+	 *            the wake key
+	 * @param instance
+	 *            the instance
+	 * @return true, if the instance is resident.
+	 */
+	@JsonIgnore
+	public boolean touch(final String wakeKey, final Object instance) {
+		return passivation == null || passivation.touch(wakeKey, instance);
+	}
+	
+	/**
+	 * Make a new or woken instance resident.
+	 * 
+	 * @param wakeKey
+	 *            the wake key
+	 * @param instance
+	 *            the instance
+	 */
+	@JsonIgnore
+	public void admit(final String wakeKey, final Object instance) {
+		if (passivation != null) {
+			passivation.admit(wakeKey, instance);
+		}
 	}
 	
 	/**
@@ -116,6 +182,10 @@ public class WakeService implements Capability {
 						+ wakeKey + "'", e);
 			}
 			if (instance != null) {
+				if (passivation != null && !onBoot) {
+					passivation.miss();
+				}
+				admit(wakeKey, instance);
 				instance.wake(wakeKey, entry.getParams(), onBoot);
 			}
 		} else {
@@ -55,4 +55,28 @@ public class WakeServiceConfig extends Config {
 		return null;
 	}
 	
+	/**
+	 * Sets the passivation config. If set, the most recently active
+	 * Wakeables are kept resident and idle ones are passivated.
+	 * (e.g. { "maxResident":10000, "idleTimeout":600000, "maxHeapRatio":0.7 })
+	 * 
+	 * @param passivation
+	 *            the new passivation config
+	 */
+	public void setPassivation(final ObjectNode passivation) {
+		this.put("passivation", passivation);
+	}
+	
+	/**
+	 * Gets the passivation config.
+	 * 
+	 * @return the passivation config
+	 */
+	public ObjectNode getPassivation() {
+		if (this.has("passivation") && this.get("passivation").isObject()) {
+			return (ObjectNode) this.get("passivation");
+		}
+		return null;
+	}
+	
 }
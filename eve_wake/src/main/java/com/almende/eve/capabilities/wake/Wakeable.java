@@ -24,4 +24,12 @@ public interface Wakeable {
 	 *            WakeService.boot(). False in all other cases.
 	 */
 	void wake(String wakeKey, ObjectNode params, boolean onBoot);
+	
+	/**
+	 * Passivate, called by the {@link PassivationManager} before it releases
+	 * this instance, e.g. to release resources it holds. Nothing is flushed
+	 * by default: a later wake() creates a fresh instance from the stored
+	 * config and state.
+	 */
+	default void passivate() {}
 }
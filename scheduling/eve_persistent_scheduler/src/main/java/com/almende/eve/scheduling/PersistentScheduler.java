@@ -16,7 +16,7 @@ import com.almende.eve.state.State;
 import com.almende.eve.state.StateBuilder;
 import com.almende.eve.transport.Receiver;
 import com.almende.util.jackson.JOM;
-import com.almende.util.uuid.UUID;
+import com.almende.util.uuid.IdGenerator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -157,7 +157,7 @@ class TaskEntry implements Comparable<TaskEntry>, Serializable {
 	 *            the message
 	 */
 	public TaskEntry(final DateTime due, final Object message) {
-		taskId = new UUID().toString();
+		taskId = IdGenerator.next();
 		setMessage(message);
 		this.due = due;
 	}
@@ -15,7 +15,7 @@ import com.almende.eve.capabilities.handler.Handler;
 import com.almende.eve.scheduling.clock.Clock;
 import com.almende.eve.scheduling.clock.RunnableClock;
 import com.almende.eve.transport.Receiver;
-import com.almende.util.uuid.UUID;
+import com.almende.util.uuid.IdGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -70,8 +70,8 @@ public class SimpleScheduler implements Scheduler {
 		if (clock == null) {
 			clock = new RunnableClock();
 		}
-		final String uuid = new UUID().toString();
-		clock.requestTrigger(uuid, due, new Runnable() {
+		final String id = IdGenerator.next();
+		clock.requestTrigger(id, due, new Runnable() {
 			
 			@Override
 			public void run() {
@@ -79,7 +79,7 @@ public class SimpleScheduler implements Scheduler {
 			}
 			
 		});
-		return uuid;
+		return id;
 	}
 	
 	/*
@@ -14,6 +14,8 @@ import java.util.concurrent.TimeUnit;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 
+import com.almende.util.metrics.Histogram;
+import com.almende.util.metrics.Metrics;
 import com.almende.util.threads.ThreadPool;
 
 /**
@@ -21,12 +23,15 @@ import com.almende.util.threads.ThreadPool;
  */
 public class RunnableClock implements Runnable, Clock {
 	private static final NavigableMap<ClockEntry, ClockEntry>	TIMELINE	= new TreeMap<ClockEntry, ClockEntry>();
-	private static final ScheduledExecutorService				POOL		= Executors
-																					.newScheduledThreadPool(
-																							4,
-																							ThreadPool
-																									.getFactory());
+	// Only used for timing, the triggered callbacks run on the ThreadPool.
+	private static final ScheduledExecutorService				TIMER		= Executors
+																					.newSingleThreadScheduledExecutor(ThreadPool
+																							.getFactory());
 	private static ScheduledFuture<?>							future		= null;
+	private static final Histogram								LAG			= Metrics
+																					.histogram(
+																							"clock",
+																							"triggerLag");
 	
 	/*
 	 * (non-Javadoc)
@@ -45,12 +50,14 @@ public class RunnableClock implements Runnable, Clock {
 				final DateTime now = DateTime.now();
 				if (ce.getDue().isBefore(now)) {
 					TIMELINE.remove(ce);
-					POOL.execute(ce.getCallback());
+					LAG.record(TimeUnit.MILLISECONDS.toNanos(now.getMillis()
+							- ce.getDue().getMillis()));
+					ThreadPool.getPool().execute(ce.getCallback());
 					continue;
 				}
 				final long interval = new Interval(now, ce.getDue())
 						.toDurationMillis();
-				future = POOL.schedule(this, interval, TimeUnit.MILLISECONDS);
+				future = TIMER.schedule(this, interval, TimeUnit.MILLISECONDS);
 				break;
 			}
 		}
@@ -10,6 +10,8 @@ import java.util.logging.Logger;
 
 import com.almende.util.TypeUtil;
 import com.almende.util.jackson.JOM;
+import com.almende.util.metrics.Histogram;
+import com.almende.util.metrics.Metrics;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
@@ -30,6 +32,10 @@ public abstract class AbstractState<V> implements State {
 	private String				id			= null;
 	private StateService		service		= null;
 	private ObjectNode			myParams	= null;
+	private final Histogram		getMetric	= Metrics.histogram("state.get",
+													getClass().getSimpleName());
+	private final Histogram		putMetric	= Metrics.histogram("state.put",
+													getClass().getSimpleName());
 	
 	/**
 	 * The implemented classes must have a public constructor.
@@ -102,14 +108,19 @@ public abstract class AbstractState<V> implements State {
 	 */
 	@Override
 	public synchronized Object put(final String key, final Object value) {
-		if (value == null
-				|| Serializable.class.isAssignableFrom(value.getClass())) {
-			return locPut(key, (Serializable) value);
-		} else if (JsonNode.class.isAssignableFrom(value.getClass())) {
-			return locPut(key, (JsonNode) value);
-		} else {
-			LOG.severe("Can't handle input that is not Serializable nor JsonNode.");
-			throw new IllegalArgumentException();
+		final long start = System.nanoTime();
+		try {
+			if (value == null
+					|| Serializable.class.isAssignableFrom(value.getClass())) {
+				return locPut(key, (Serializable) value);
+			} else if (JsonNode.class.isAssignableFrom(value.getClass())) {
+				return locPut(key, (JsonNode) value);
+			} else {
+				LOG.severe("Can't handle input that is not Serializable nor JsonNode.");
+				throw new IllegalArgumentException();
+			}
+		} finally {
+			putMetric.recordSince(start);
 		}
 	}
 	
@@ -122,15 +133,21 @@ public abstract class AbstractState<V> implements State {
 	@Override
 	public synchronized boolean putIfUnchanged(final String key,
 			final Object newVal, final Object oldVal) {
-		if (newVal == null
-				|| Serializable.class.isAssignableFrom(newVal.getClass())) {
-			return locPutIfUnchanged(key, (Serializable) newVal,
-					(Serializable) oldVal);
-		} else if (JsonNode.class.isAssignableFrom(newVal.getClass())) {
-			return locPutIfUnchanged(key, (JsonNode) newVal, (JsonNode) oldVal);
-		} else {
-			LOG.severe("Can't handle input that is not Serializable nor JsonNode.");
-			throw new IllegalArgumentException();
+		final long start = System.nanoTime();
+		try {
+			if (newVal == null
+					|| Serializable.class.isAssignableFrom(newVal.getClass())) {
+				return locPutIfUnchanged(key, (Serializable) newVal,
+						(Serializable) oldVal);
+			} else if (JsonNode.class.isAssignableFrom(newVal.getClass())) {
+				return locPutIfUnchanged(key, (JsonNode) newVal,
+						(JsonNode) oldVal);
+			} else {
+				LOG.severe("Can't handle input that is not Serializable nor JsonNode.");
+				throw new IllegalArgumentException();
+			}
+		} finally {
+			putMetric.recordSince(start);
 		}
 	}
 	
@@ -152,7 +169,12 @@ public abstract class AbstractState<V> implements State {
 	@Override
 	@JsonIgnore
 	public <T> T get(final String key, final Class<T> type) {
-		return TypeUtil.inject(get(key), type);
+		final long start = System.nanoTime();
+		try {
+			return TypeUtil.inject(get(key), type);
+		} finally {
+			getMetric.recordSince(start);
+		}
 	}
 	
 	/*
@@ -164,7 +186,12 @@ public abstract class AbstractState<V> implements State {
 	@Override
 	@JsonIgnore
 	public <T> T get(final String key, final Type type) {
-		return TypeUtil.inject(get(key), type);
+		final long start = System.nanoTime();
+		try {
+			return TypeUtil.inject(get(key), type);
+		} finally {
+			getMetric.recordSince(start);
+		}
 	}
 	
 	/*
@@ -176,7 +203,12 @@ public abstract class AbstractState<V> implements State {
 	@Override
 	@JsonIgnore
 	public <T> T get(final String key, final JavaType type) {
-		return TypeUtil.inject(get(key), type);
+		final long start = System.nanoTime();
+		try {
+			return TypeUtil.inject(get(key), type);
+		} finally {
+			getMetric.recordSince(start);
+		}
 	}
 	
 	/*
@@ -188,7 +220,12 @@ public abstract class AbstractState<V> implements State {
 	@Override
 	@JsonIgnore
 	public <T> T get(final String key, final TypeUtil<T> type) {
-		return type.inject(get(key));
+		final long start = System.nanoTime();
+		try {
+			return type.inject(get(key));
+		} finally {
+			getMetric.recordSince(start);
+		}
 	}
 	
 	/*
@@ -248,7 +285,7 @@ public abstract class AbstractState<V> implements State {
 	public synchronized Serializable locPut(final String key,
 			final Serializable value) {
 		final ObjectMapper om = JOM.getInstance();
-		locPut(key, om.valueToTree(value));
+		locPut(key, (JsonNode) om.valueToTree(value));
 		return value;
 	}
 	
@@ -266,8 +303,8 @@ public abstract class AbstractState<V> implements State {
 	public boolean locPutIfUnchanged(final String key,
 			final Serializable newVal, final Serializable oldVal) {
 		final ObjectMapper om = JOM.getInstance();
-		return locPutIfUnchanged(key, om.valueToTree(newVal),
-				om.valueToTree(oldVal));
+		return locPutIfUnchanged(key, (JsonNode) om.valueToTree(newVal),
+				(JsonNode) om.valueToTree(oldVal));
 	}
 	
 	/*
@@ -0,0 +1,24 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.agent;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.almende.eve.transform.rpc.annotation.Name;
+
+/**
+ * The asynchronous version of the ExampleAgentInterface.
+ */
+public interface ExampleAgentAsyncInterface {
+	
+	/**
+	 * Hello world.
+	 * 
+	 * @param message
+	 *            the message
+	 * @return the future string
+	 */
+	CompletableFuture<String> helloWorld(@Name("message") String message);
+}
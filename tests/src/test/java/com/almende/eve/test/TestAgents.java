@@ -22,6 +22,8 @@ import com.almende.eve.state.file.FileStateConfig;
 import com.almende.eve.transport.http.HttpTransportConfig;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.metrics.Histogram;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -109,4 +111,87 @@ public class TestAgents extends TestCase {
 								"Hello world after sleep!")) + "'");
 	}
 	
+	/**
+	 * Test agents with a mailbox, calling each other over the local transport.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws URISyntaxException
+	 *             the URI syntax exception
+	 */
+	@Test
+	public void testMailbox() throws IOException, URISyntaxException {
+		final ObjectNode mailbox = JOM.createObjectNode();
+		mailbox.put("capacity", 100);
+		mailbox.put("batchSize", 10);
+		
+		final AgentConfig config = new AgentConfig("mailboxExample");
+		config.setMailbox(mailbox);
+		final ExampleAgent agent = new ExampleAgent();
+		agent.setConfig(config);
+		
+		final AgentConfig ac = new AgentConfig("mailboxTester");
+		ac.setMailbox(mailbox.deepCopy());
+		final ExampleAgent tester = new ExampleAgent();
+		tester.setConfig(ac);
+		
+		final ObjectNode callParams = JOM.createObjectNode();
+		for (int i = 0; i < 20; i++) {
+			callParams.put("message", "Hello mailbox " + i);
+			final String result = tester.pubSendSync(new URI(
+					"local:mailboxExample"), "helloWorld", callParams);
+			assertEquals("You said:Hello mailbox " + i, result);
+		}
+	}
+	
+	/**
+	 * Test the metrics namespace.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws URISyntaxException
+	 *             the URI syntax exception
+	 */
+	@Test
+	public void testMetrics() throws IOException, URISyntaxException {
+		final ExampleAgent agent = new ExampleAgent();
+		agent.setConfig(new AgentConfig("metricsExample"));
+		final ExampleAgent tester = new ExampleAgent();
+		tester.setConfig(new AgentConfig("metricsTester"));
+		
+		final ObjectNode callParams = JOM.createObjectNode();
+		callParams.put("message", "Hello metrics");
+		for (int i = 0; i < 10; i++) {
+			tester.pubSendSync(new URI("local:metricsExample"), "helloWorld",
+					callParams);
+		}
+		// A receive is recorded once handled, which is just after its reply
+		// got sent.
+		JsonNode metrics = null;
+		for (int i = 0; i < 50; i++) {
+			metrics = JOM.getInstance().valueToTree(
+					tester.pubSendSync(new URI("local:metricsExample"),
+							"metrics.get", null));
+			if (metrics.get("agent").get("receive").get("count").asLong() >= 10) {
+				break;
+			}
+		}
+		LOG.info("Metrics:" + metrics);
+		assertTrue(metrics.get("agent").get("receive").get("count").asLong() >= 10);
+		final JsonNode jvm = metrics.get("jvm");
+		assertTrue(jvm.get("histograms").get("rpc.invoke").get("helloWorld")
+				.get("count").asLong() >= 10);
+		assertTrue(jvm.get("histograms").get("router.send").has("local"));
+		assertTrue(jvm.get("counters").has("callbacks.outstanding"));
+		
+		final Histogram histogram = new Histogram();
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1000, histogram.getCount());
+		// Accurate within a bucket
+		assertTrue(Math.abs(histogram.getP50() - 500) <= 125);
+		assertTrue(Math.abs(histogram.getP99() - 990) <= 250);
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.test;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.almende.util.callback.AsyncCallback;
+import com.almende.util.callback.AsyncCallbackQueue;
+import com.almende.util.jackson.JOM;
+import com.almende.util.uuid.IdGenerator;
+
+/**
+ * The Class TestCallbacks.
+ */
+public class TestCallbacks extends TestCase {
+	
+	/**
+	 * Test callback timeouts and cancellation.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testTimeouts() throws InterruptedException {
+		final AsyncCallbackQueue<String> queue = new AsyncCallbackQueue<String>();
+		final AsyncCallbackQueue<String> other = new AsyncCallbackQueue<String>();
+		final CountDownLatch timeouts = new CountDownLatch(10);
+		final AtomicInteger failures = new AtomicInteger(0);
+		final AsyncCallback<String> callback = new AsyncCallback<String>() {
+			@Override
+			public void onSuccess(final String result) {}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				failures.incrementAndGet();
+				if (exception instanceof TimeoutException) {
+					timeouts.countDown();
+				}
+			}
+		};
+		for (int i = 0; i < 1000; i++) {
+			queue.push(i, "test", callback, 200, TimeUnit.MILLISECONDS);
+		}
+		for (int i = 10; i < 1000; i++) {
+			assertNotNull(queue.pull(i));
+		}
+		for (int i = 0; i < 10; i++) {
+			other.push(i, "other", callback, 200, TimeUnit.MILLISECONDS);
+		}
+		// Clearing one queue must not influence the other.
+		other.clear();
+		assertTrue(timeouts.await(5, TimeUnit.SECONDS));
+		Thread.sleep(500);
+		assertEquals(10, failures.get());
+		assertNull(queue.pull(0));
+	}
+	
+	/**
+	 * Test id generation from several threads, and pulling callbacks by the
+	 * ids as they come back in JSON.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testIds() throws InterruptedException {
+		final AsyncCallbackQueue<String> queue = new AsyncCallbackQueue<String>();
+		final Set<Long> ids = Collections
+				.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final AsyncCallback<String> callback = new AsyncCallback<String>() {
+			@Override
+			public void onSuccess(final String result) {}
+			
+			@Override
+			public void onFailure(final Exception exception) {}
+		};
+		// Assertions in the workers wouldn't fail the test, so collect these.
+		final Queue<String> errors = new ConcurrentLinkedQueue<String>();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					long last = 0;
+					for (int i = 0; i < 5000; i++) {
+						final long id = IdGenerator.nextLong();
+						if (id <= last) {
+							errors.add("Id " + id + " not after " + last);
+						}
+						last = id;
+						if (!ids.add(id)) {
+							errors.add("Duplicate id " + id);
+						}
+						queue.push(id, "test", callback);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(20000, ids.size());
+		for (final Long id : ids) {
+			// Small numbers come back as IntNode, others as LongNode
+			assertNotNull(queue.pull(JOM.getInstance().valueToTree(id)));
+		}
+		assertNull(queue.pull(ids.iterator().next()));
+		assertFalse(IdGenerator.next().equals(IdGenerator.next()));
+	}
+}
@@ -4,20 +4,42 @@
  */
 package com.almende.eve.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
 
+import com.almende.eve.agent.AgentConfig;
+import com.almende.eve.agent.ExampleAgent;
 import com.almende.eve.capabilities.handler.Handler;
 import com.almende.eve.transport.Receiver;
 import com.almende.eve.transport.Transport;
 import com.almende.eve.transport.TransportBuilder;
+import com.almende.eve.transport.http.Compression;
 import com.almende.eve.transport.http.HttpTransportConfig;
+import com.almende.util.AsyncHttpClient;
+import com.almende.util.StringUtil;
+import com.almende.util.callback.AsyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.threads.ThreadPool;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -50,6 +72,352 @@ public class TestHttp extends TestCase {
 				"Hello World", null);
 	}
 	
+	/**
+	 * Test the non-blocking client against a real servlet, with more requests
+	 * than the per host limit.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testAsyncClient() throws InterruptedException {
+		final HttpTransportConfig transportConfig = new HttpTransportConfig();
+		transportConfig.setServletUrl("http://localhost:8083/agents/");
+		transportConfig.setServletLauncher("JettyLauncher");
+		final ObjectNode jettyParms = JOM.createObjectNode();
+		jettyParms.put("port", 8083);
+		transportConfig.put("jetty", jettyParms);
+		
+		final AgentConfig config = new AgentConfig("asyncExample");
+		config.setTransport(transportConfig);
+		final ExampleAgent agent = new ExampleAgent();
+		agent.setConfig(config);
+		
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Content-Type", "application/json");
+		final byte[] body = ("{\"jsonrpc\":\"2.0\",\"id\":1,"
+				+ "\"method\":\"helloWorld\",\"params\":{\"message\":\"Hi\"}}")
+				.getBytes();
+		final int count = 20;
+		final CountDownLatch done = new CountDownLatch(count);
+		final AtomicInteger ok = new AtomicInteger(0);
+		final AsyncHttpClient client = AsyncHttpClient.create(2);
+		assertNotNull(client);
+		for (int i = 0; i < count; i++) {
+			client.post(
+					URI.create("http://localhost:8083/agents/asyncExample"),
+					headers, body,
+					new AsyncCallback<AsyncHttpClient.Response>() {
+						@Override
+						public void onSuccess(
+								final AsyncHttpClient.Response result) {
+							if (new String(result.getBody())
+									.contains("You said:Hi")) {
+								ok.incrementAndGet();
+							}
+							done.countDown();
+						}
+						
+						@Override
+						public void onFailure(final Exception exception) {
+							LOG.warning("Failed:" + exception);
+							done.countDown();
+						}
+					});
+		}
+		assertTrue(done.await(20, TimeUnit.SECONDS));
+		assertEquals(count, ok.get());
+	}
+	
+	/**
+	 * Test that each client keeps its own limit of concurrent requests per
+	 * host.
+	 */
+	@Test
+	public void testAsyncClientLimits() {
+		final List<AsyncCallback<AsyncHttpClient.Response>> first = new ArrayList<AsyncCallback<AsyncHttpClient.Response>>();
+		final List<AsyncCallback<AsyncHttpClient.Response>> second = new ArrayList<AsyncCallback<AsyncHttpClient.Response>>();
+		final AsyncHttpClient limited = new HeldClient(2, first);
+		final AsyncHttpClient wider = new HeldClient(5, second);
+		final AtomicInteger completed = new AtomicInteger(0);
+		final AsyncCallback<AsyncHttpClient.Response> callback = new AsyncCallback<AsyncHttpClient.Response>() {
+			@Override
+			public void onSuccess(final AsyncHttpClient.Response result) {
+				completed.incrementAndGet();
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {}
+		};
+		final URI uri = URI.create("http://localhost:8083/agents/test");
+		final Map<String, String> headers = new HashMap<String, String>();
+		for (int i = 0; i < 10; i++) {
+			limited.post(uri, headers, new byte[0], callback);
+			wider.post(uri, headers, new byte[0], callback);
+		}
+		assertEquals(2, first.size());
+		assertEquals(5, second.size());
+		
+		// Completing a request starts the next one, of the same client.
+		first.get(0).onSuccess(new AsyncHttpClient.Response(200,
+				new HashMap<String, List<String>>(), new byte[0]));
+		assertEquals(1, completed.get());
+		assertEquals(3, first.size());
+		assertEquals(5, second.size());
+	}
+	
+	/**
+	 * A client that holds the requests it sends, for the test to complete.
+	 */
+	private static class HeldClient extends AsyncHttpClient {
+		private final List<AsyncCallback<Response>>	sent;
+		
+		HeldClient(final int maxPerHost,
+				final List<AsyncCallback<Response>> sent) {
+			super(maxPerHost);
+			this.sent = sent;
+		}
+		
+		@Override
+		protected void send(final URI uri, final Map<String, String> headers,
+				final byte[] body, final int length,
+				final AsyncCallback<Response> callback) {
+			sent.add(callback);
+		}
+	}
+	
+	/**
+	 * Test the replies of the servlet: a slow receiver runs on the ThreadPool,
+	 * not on the container thread, notifications get 204, failures 500 and
+	 * missing replies 504.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testServletReplies() throws Exception {
+		final HttpTransportConfig config = new HttpTransportConfig();
+		config.setServletUrl("http://localhost:8084/replies/");
+		config.setId("receiver");
+		config.setCallbackTimeout(1);
+		config.setServletLauncher("JettyLauncher");
+		final ObjectNode jettyParms = JOM.createObjectNode();
+		jettyParms.put("port", 8084);
+		config.put("jetty", jettyParms);
+		
+		final AtomicReference<Transport> transport = new AtomicReference<Transport>();
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean onPool = new AtomicBoolean(false);
+		transport.set(new TransportBuilder().withConfig(config)
+				.withHandle(new myReceiver() {
+					@Override
+					public void receive(final Object msg, final URI senderUrl,
+							final String tag) {
+						try {
+							if ("slow".equals(msg)) {
+								onPool.set(ThreadPool.isPoolThread());
+								entered.countDown();
+								release.await(10, TimeUnit.SECONDS);
+								transport.get().send(senderUrl, "done", tag);
+							} else if ("notify".equals(msg)) {
+								transport.get().send(senderUrl, "", tag);
+							} else if ("fail".equals(msg)) {
+								throw new IllegalStateException("Failing");
+							}
+							// Anything else is never answered.
+						} catch (final IOException e) {
+							LOG.warning("Failed to reply:" + e);
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}).build());
+		final URL url = new URL("http://localhost:8084/replies/receiver");
+		
+		final AtomicInteger slowStatus = new AtomicInteger(0);
+		final StringBuilder slowReply = new StringBuilder();
+		final Thread slow = new Thread() {
+			@Override
+			public void run() {
+				try {
+					slowStatus.set(post(url, "slow", slowReply));
+				} catch (final IOException e) {
+					LOG.warning("Slow request failed:" + e);
+				}
+			}
+		};
+		slow.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		assertTrue(onPool.get());
+		// Meanwhile, other requests are served and answered.
+		assertEquals(204, post(url, "notify", new StringBuilder()));
+		assertEquals(500, post(url, "fail", new StringBuilder()));
+		assertEquals(0, slowStatus.get());
+		release.countDown();
+		slow.join(5000);
+		assertEquals(200, slowStatus.get());
+		assertEquals("done", slowReply.toString());
+		
+		assertEquals(504, post(url, "never", new StringBuilder()));
+	}
+	
+	/**
+	 * Post a body, returning the HTTP status.
+	 */
+	private static int post(final URL url, final String body,
+			final StringBuilder reply) throws IOException {
+		final HttpURLConnection conn = (HttpURLConnection) url
+				.openConnection();
+		conn.setDoOutput(true);
+		conn.setRequestMethod("POST");
+		conn.setRequestProperty("Content-Type", "application/json");
+		final OutputStream out = conn.getOutputStream();
+		out.write(body.getBytes("UTF-8"));
+		out.close();
+		final int status = conn.getResponseCode();
+		final InputStream in = status < 400 ? conn.getInputStream() : conn
+				.getErrorStream();
+		if (in != null) {
+			reply.append(StringUtil.streamToString(in));
+			in.close();
+		}
+		return status;
+	}
+	
+	/**
+	 * Test compressed requests and replies, above the threshold.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCompression() throws Exception {
+		final HttpTransportConfig transportConfig = new HttpTransportConfig();
+		transportConfig.setServletUrl("http://localhost:8080/agents/");
+		transportConfig.setServletLauncher("JettyLauncher");
+		final ObjectNode jettyParms = JOM.createObjectNode();
+		jettyParms.put("port", 8080);
+		transportConfig.put("jetty", jettyParms);
+		
+		final AgentConfig config = new AgentConfig("compressExample");
+		config.setTransport(transportConfig);
+		final ExampleAgent agent = new ExampleAgent();
+		agent.setConfig(config);
+		
+		final StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			message.append("Hi");
+		}
+		final byte[] body = Compression.encode(("{\"jsonrpc\":\"2.0\",\"id\":1,"
+				+ "\"method\":\"helloWorld\",\"params\":{\"message\":\""
+				+ message + "\"}}").getBytes(), "gzip", 1024);
+		assertNotNull(body);
+		
+		// Streamed: compressed on the fly only once over the threshold.
+		final ByteArrayOutputStream small = new ByteArrayOutputStream();
+		Compression.ThresholdStream stream = Compression.stream(small, "gzip",
+				1024);
+		stream.write("Hi".getBytes());
+		stream.close();
+		assertFalse(stream.isEncoded());
+		assertEquals("Hi", small.toString());
+		final ByteArrayOutputStream large = new ByteArrayOutputStream();
+		stream = Compression.stream(large, "deflate", 512);
+		stream.write(message.toString().getBytes());
+		stream.close();
+		assertTrue(stream.isEncoded());
+		assertEquals(message.toString(), StringUtil.streamToString(Compression
+				.decode(new ByteArrayInputStream(large.toByteArray()),
+						"deflate")));
+		
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Content-Type", "application/json");
+		headers.put("Content-Encoding", "gzip");
+		headers.put("Accept-Encoding", Compression.ACCEPT_ENCODING);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<AsyncHttpClient.Response> response = new AtomicReference<AsyncHttpClient.Response>();
+		AsyncHttpClient.create(2).post(
+				URI.create("http://localhost:8080/agents/compressExample"),
+				headers, body,
+				new AsyncCallback<AsyncHttpClient.Response>() {
+					@Override
+					public void onSuccess(final AsyncHttpClient.Response result) {
+						response.set(result);
+						done.countDown();
+					}
+					
+					@Override
+					public void onFailure(final Exception exception) {
+						LOG.warning("Failed:" + exception);
+						done.countDown();
+					}
+				});
+		assertTrue(done.await(20, TimeUnit.SECONDS));
+		final AsyncHttpClient.Response result = response.get();
+		assertNotNull(result);
+		assertEquals("gzip", result.getHeader("Content-Encoding"));
+		assertNotNull(result.getHeader("Accept-Encoding"));
+		final String reply = StringUtil.streamToString(Compression.decode(
+				new ByteArrayInputStream(result.getBody()), "gzip"));
+		assertTrue(reply.contains("You said:" + message));
+	}
+	
+	/**
+	 * Test the local shortcut to an agent of another HttpService, on another
+	 * servlet path. No servlet is launched, so only the shortcut can deliver.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLocalIndex() throws Exception {
+		final HttpTransportConfig senderConfig = new HttpTransportConfig();
+		senderConfig.setServletUrl("http://localhost:8081/senders/");
+		senderConfig.setId("sender");
+		final Transport sender = new TransportBuilder()
+				.withConfig(senderConfig).withHandle(new myReceiver()).build();
+		
+		final CountDownLatch received = new CountDownLatch(1);
+		final HttpTransportConfig receiverConfig = new HttpTransportConfig();
+		receiverConfig.setServletUrl("http://localhost:8081/receivers/");
+		receiverConfig.setId("receiver");
+		new TransportBuilder().withConfig(receiverConfig)
+				.withHandle(new myReceiver() {
+					@Override
+					public void receive(final Object msg, final URI senderUrl,
+							final String tag) {
+						if ("Hello local".equals(msg)
+								&& sender.getAddress().equals(senderUrl)) {
+							received.countDown();
+						}
+					}
+				}).build();
+		
+		sender.send(URI.create("http://localhost:8081/receivers/receiver"),
+				"Hello local", null);
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		
+		// A service without the shortcut isn't reachable through it.
+		final CountDownLatch closed = new CountDownLatch(1);
+		final HttpTransportConfig closedConfig = new HttpTransportConfig();
+		closedConfig.setServletUrl("http://localhost:8081/closed/");
+		closedConfig.setId("receiver");
+		closedConfig.setDoShortcut(false);
+		new TransportBuilder().withConfig(closedConfig)
+				.withHandle(new myReceiver() {
+					@Override
+					public void receive(final Object msg, final URI senderUrl,
+							final String tag) {
+						closed.countDown();
+					}
+				}).build();
+		
+		sender.send(URI.create("http://localhost:8081/closed/receiver"),
+				"Hello local", null);
+		assertFalse(closed.await(2, TimeUnit.SECONDS));
+	}
+	
 	/**
 	 * The Class myReceiver.
 	 */
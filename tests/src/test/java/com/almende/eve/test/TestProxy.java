@@ -5,6 +5,8 @@
 package com.almende.eve.test;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import junit.framework.TestCase;
@@ -14,6 +16,7 @@ import org.junit.Test;
 import com.almende.eve.agent.AgentConfig;
 import com.almende.eve.agent.AgentProxyFactory;
 import com.almende.eve.agent.ExampleAgent;
+import com.almende.eve.agent.ExampleAgentAsyncInterface;
 import com.almende.eve.agent.ExampleAgentInterface;
 import com.almende.eve.transport.http.HttpTransportConfig;
 import com.almende.util.jackson.JOM;
@@ -50,4 +53,22 @@ public class TestProxy extends TestCase {
 				ExampleAgentInterface.class);
 		LOG.warning("Proxy got reply:" + proxy.helloWorld("Hi there"));
 	}
+	
+	/**
+	 * Test async proxy.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testAsyncProxy() throws Exception {
+		final ExampleAgent agent = new ExampleAgent();
+		agent.setConfig(new AgentConfig("asyncExample"));
+		
+		final ExampleAgentAsyncInterface proxy = AgentProxyFactory.genProxy(
+				agent, URI.create("local:asyncExample"),
+				ExampleAgentAsyncInterface.class);
+		final CompletableFuture<String> result = proxy.helloWorld("Hi there");
+		assertEquals("You said:Hi there", result.get(10, TimeUnit.SECONDS));
+	}
 }
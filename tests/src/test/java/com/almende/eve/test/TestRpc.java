@@ -4,7 +4,13 @@
  */
 package com.almende.eve.test;
 
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,13 +19,24 @@ import junit.framework.TestCase;
 import org.junit.Test;
 
 import com.almende.eve.capabilities.handler.SimpleHandler;
+import com.almende.eve.transform.rpc.RpcHeader;
 import com.almende.eve.transform.rpc.RpcTransform;
 import com.almende.eve.transform.rpc.RpcTransformBuilder;
 import com.almende.eve.transform.rpc.annotation.Access;
 import com.almende.eve.transform.rpc.annotation.AccessType;
+import com.almende.eve.transform.rpc.annotation.Cacheable;
 import com.almende.eve.transform.rpc.annotation.Name;
+import com.almende.eve.transform.rpc.annotation.Namespace;
+import com.almende.eve.transform.rpc.annotation.Optional;
+import com.almende.eve.transform.rpc.formats.JSONRPCException;
+import com.almende.eve.transform.rpc.formats.JSONRequest;
+import com.almende.eve.transform.rpc.formats.JSONResponse;
+import com.almende.util.MethodInvoker;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -67,11 +84,534 @@ public class TestRpc extends TestCase {
 		
 	}
 	
+	/**
+	 * Test a JSON-RPC batch, with a notification and an unknown method.
+	 */
+	@Test
+	public void testBatch() {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		
+		final String batch = "[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"testMe\",\"params\":{\"parm\":true}},"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"testMe\",\"params\":{\"parm\":true}},"
+				+ "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"unknown\",\"params\":{}},"
+				+ "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"testMe\",\"params\":{\"parm\":false}}]";
+		
+		final ArrayNode responses = transform.invokeBatch(
+				RpcTransform.batchConvert(batch), URI.create("local://me"));
+		assertNotNull(responses);
+		// The notification gets no response
+		assertEquals(3, responses.size());
+		for (final JsonNode response : responses) {
+			final int id = response.get("id").asInt();
+			if (id == 1) {
+				assertTrue(response.get("result").asBoolean());
+			} else if (id == 2) {
+				assertTrue(response.has("error"));
+			} else {
+				assertEquals(3, id);
+				assertFalse(response.get("result").asBoolean());
+			}
+		}
+		
+		final ArrayNode ordered = transform.invokeBatch(
+				RpcTransform.batchConvert(batch), URI.create("local://me"),
+				true);
+		assertEquals(1, ordered.get(0).get("id").asInt());
+		assertEquals(2, ordered.get(1).get("id").asInt());
+		assertEquals(3, ordered.get(2).get("id").asInt());
+		
+		// An empty batch is an invalid request
+		final ArrayNode empty = transform.invokeBatch(JOM.createArrayNode(),
+				URI.create("local://me"));
+		assertEquals(1, empty.size());
+		assertTrue(empty.get(0).has("error"));
+		
+		// A single response can't answer a batch: rejected, not executed.
+		final JSONResponse rejected = transform.invoke(batch,
+				URI.create("local://me"));
+		assertNotNull(rejected);
+		assertEquals(-32600, rejected.getObjectNode().get("error").get("code")
+				.asInt());
+	}
+	
+	/**
+	 * Test the binding of params: generic types, optional, missing and null
+	 * params.
+	 */
+	@Test
+	public void testBinding() {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		
+		final String batch = "[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"sum\",\"params\":{\"values\":[1,2,3]}},"
+				+ "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"sum\",\"params\":{\"values\":[1,2,3],\"offset\":10}},"
+				+ "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"sum\",\"params\":{\"offset\":10}},"
+				+ "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"sum\",\"params\":{\"values\":\"abc\"}}]";
+		
+		final ArrayNode responses = transform.invokeBatch(
+				RpcTransform.batchConvert(batch), URI.create("local://me"),
+				true);
+		assertEquals(4, responses.size());
+		assertEquals(6, responses.get(0).get("result").asInt());
+		assertEquals(16, responses.get(1).get("result").asInt());
+		// Required param missing
+		assertTrue(responses.get(2).has("error"));
+		// Wrong type
+		assertTrue(responses.get(3).has("error"));
+		
+		// Null for a primitive, through the streaming parser and the tree
+		final String nullRequest = "{\"jsonrpc\":\"2.0\",\"id\":5,\"method\":\"square\",\"params\":{\"value\":null}}";
+		assertEquals(-32602,
+				transform.invoke(nullRequest, URI.create("local://me"))
+						.getObjectNode().get("error").get("code").asInt());
+		assertEquals(
+				-32602,
+				transform
+						.invoke(JOM.getInstance().valueToTree(
+								RpcTransform.jsonConvert(nullRequest)),
+								URI.create("local://me")).getObjectNode()
+						.get("error").get("code").asInt());
+		assertEquals(
+				9,
+				transform
+						.invoke("{\"jsonrpc\":\"2.0\",\"id\":6,\"method\":\"square\",\"params\":{\"value\":3}}",
+								URI.create("local://me")).getResult().asInt());
+	}
+	
+	/**
+	 * Test requests read through the streaming parser, and the tree based
+	 * fallback.
+	 */
+	@Test
+	public void testStreaming() {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		final URI sender = URI.create("local://me");
+		
+		JSONResponse response = transform.invoke(
+				"{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"sum\",\"params\":{\"values\":[1,2,3],\"other\":{\"a\":[1]},\"offset\":1}}",
+				sender);
+		assertEquals(1, response.getId().asInt());
+		assertEquals(7, response.getResult().asInt());
+		
+		// params before method: falls back to the tree
+		response = transform.invoke(
+				"{\"params\":{\"values\":[1,2]},\"id\":2,\"method\":\"sum\"}",
+				sender);
+		assertEquals(2, response.getId().asInt());
+		assertEquals(3, response.getResult().asInt());
+		
+		// Errors are reported as before
+		response = transform.invoke(
+				"{\"id\":3,\"method\":\"sum\",\"params\":{\"values\":\"abc\"}}",
+				sender);
+		assertEquals(3, response.getId().asInt());
+		assertTrue(response.getObjectNode().has("error"));
+		response = transform.invoke(
+				"{\"id\":4,\"method\":\"unknown\",\"params\":{}}", sender);
+		assertEquals(4, response.getId().asInt());
+		assertTrue(response.getObjectNode().has("error"));
+		
+		// Headers, as read by agent mailboxes before queueing
+		RpcHeader header = RpcHeader.peek(
+				"{\"params\":{\"values\":[1]},\"id\":5,\"method\":\"sum\"}");
+		assertEquals(RpcHeader.Kind.REQUEST, header.getKind());
+		assertEquals(5, header.getId().asInt());
+		assertEquals(RpcHeader.Kind.NOTIFICATION, RpcHeader.peek(
+				"{\"id\":null,\"method\":\"sum\",\"params\":{}}").getKind());
+		assertEquals(RpcHeader.Kind.RESPONSE, RpcHeader.peek(
+				"{\"id\":6,\"result\":{\"method\":1}}").getKind());
+		assertEquals(RpcHeader.Kind.BATCH, RpcHeader.peek(" [{}]").getKind());
+		assertEquals(RpcHeader.Kind.INVALID, RpcHeader.peek("{\"id\":")
+				.getKind());
+		assertEquals(RpcHeader.Kind.INVALID, RpcHeader.peek("hello")
+				.getKind());
+		header = RpcHeader.peek(new JSONRequest("sum", JOM.createObjectNode()));
+		assertEquals(RpcHeader.Kind.REQUEST, header.getKind());
+		assertNotNull(header.getId());
+	}
+	
+	/**
+	 * Test requests in the binary Smile format.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSmile() throws Exception {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		final URI sender = URI.create("local://me");
+		
+		final String text = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"sum\",\"params\":{\"values\":[1,2,3]}}";
+		final byte[] bytes = JsonCodec.SMILE.encode(text);
+		assertEquals(JsonCodec.SMILE, JsonCodec.detect(bytes));
+		assertEquals(JsonCodec.JSON, JsonCodec.detect(JsonCodec.JSON.encode(text)));
+		assertEquals(JOM.getInstance().readTree(text), JsonCodec.decode(bytes));
+		
+		final JSONResponse response = transform.invoke(bytes, sender);
+		assertEquals(1, response.getId().asInt());
+		assertEquals(6, response.getResult().asInt());
+		assertEquals(RpcHeader.Kind.REQUEST, RpcHeader.peek(bytes).getKind());
+		assertEquals(JsonCodec.SMILE, JsonCodec.negotiate(
+				"application/x-jackson-smile, application/json", JsonCodec.JSON));
+	}
+	
+	/**
+	 * Test result caching of cacheable methods, and its invalidation.
+	 */
+	@Test
+	public void testCaching() {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		final URI sender = URI.create("local://me");
+		
+		assertEquals(1, lookup(transform, "{\"key\":\"a\",\"extra\":\"x\"}"));
+		// Same params, other order: served from the cache
+		assertEquals(1, lookup(transform, "{\"extra\":\"x\",\"key\":\"a\"}"));
+		final ArrayNode batch = JOM.createArrayNode();
+		batch.add(new JSONRequest("lookup", (ObjectNode) JOM.getInstance()
+				.valueToTree(new KeyParams("a", "x"))).getObjectNode());
+		assertEquals(1, transform.invokeBatch(batch, sender).get(0)
+				.get("result").asInt());
+		assertEquals(2, lookup(transform, "{\"key\":\"b\"}"));
+		assertEquals(2, lookup(transform, "{\"key\":\"b\"}"));
+		
+		final ObjectNode key = JOM.createObjectNode();
+		key.put("key", "b");
+		transform.getResultCache().invalidate("lookup", key);
+		assertEquals(3, lookup(transform, "{\"key\":\"b\"}"));
+		assertEquals(1, lookup(transform, "{\"key\":\"a\",\"extra\":\"x\"}"));
+		
+		transform.getResultCache().invalidate("lookup");
+		assertEquals(4, lookup(transform, "{\"key\":\"a\"}"));
+		assertEquals(5, lookup(transform, "{\"key\":\"b\"}"));
+		// Max size 2: "a" is evicted
+		assertEquals(6, lookup(transform, "{\"key\":\"c\"}"));
+		assertEquals(5, lookup(transform, "{\"key\":\"b\"}"));
+		assertEquals(7, lookup(transform, "{\"key\":\"a\"}"));
+		
+		// Other methods are not cached
+		assertEquals(3, transform.invoke(
+				"{\"id\":1,\"method\":\"sum\",\"params\":{\"values\":[1,2]}}",
+				sender).getResult().asInt());
+		
+		final List<Object> methods = transform.getMethods();
+		assertEquals(methods, transform.getMethods());
+		assertNotSame(methods, transform.getMethods());
+	}
+	
+	private int lookup(final RpcTransform transform, final String params) {
+		return transform.invoke(
+				"{\"id\":1,\"method\":\"lookup\",\"params\":" + params
+						+ "}", URI.create("local://me")).getResult().asInt();
+	}
+	
+	/**
+	 * The params of the lookup method.
+	 */
+	public static class KeyParams {
+		private final String	key;
+		private final String	extra;
+		
+		/**
+		 * Instantiates new key params.
+		 * 
+		 * @param key
+		 *            the key
+		 * @param extra
+		 *            the extra
+		 */
+		public KeyParams(final String key, final String extra) {
+			this.key = key;
+			this.extra = extra;
+		}
+		
+		/**
+		 * Gets the extra.
+		 * 
+		 * @return the extra
+		 */
+		public String getExtra() {
+			return extra;
+		}
+		
+		/**
+		 * Gets the key.
+		 * 
+		 * @return the key
+		 */
+		public String getKey() {
+			return key;
+		}
+	}
+	
+	/**
+	 * Test notifications: requests without id, which are run but not
+	 * answered.
+	 */
+	@Test
+	public void testNotifications() {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		final URI sender = URI.create("local://me");
+		
+		final ObjectNode key = JOM.createObjectNode();
+		key.put("key", "a");
+		final JSONRequest notification = transform.buildMsg("lookup", key,
+				null);
+		assertTrue(notification.isNotification());
+		assertFalse(notification.getObjectNode().has("id"));
+		assertFalse(transform.buildMsg("lookup", key).isNotification());
+		
+		// Through the streaming parser and through the tree
+		assertNull(transform.invoke(notification.toString(), sender));
+		assertNull(transform.invoke(notification.getObjectNode(), sender));
+		assertNull(transform.invoke("{\"id\":null,\"method\":\"lookup\","
+				+ "\"params\":{\"key\":\"b\"}}", sender));
+		// Failing notifications aren't answered either
+		assertNull(transform.invoke("{\"method\":\"unknown\"}", sender));
+		assertNull(transform.invoke(
+				"{\"method\":\"sum\",\"params\":{\"values\":\"abc\"}}", sender));
+		
+		// The notifications did run, but didn't fill the result cache
+		assertEquals(4, lookup(transform, "{\"key\":\"a\"}"));
+		assertEquals(4, lookup(transform, "{\"key\":\"a\"}"));
+	}
+	
+	/**
+	 * Test calls to methods in (nested) namespaces, from several threads.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testNamespaces() throws Exception {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(new MyClass())).build();
+		final URI sender = URI.create("local://me");
+		
+		final Thread[] threads = new Thread[4];
+		final int[] failures = new int[1];
+		for (int i = 0; i < threads.length; i++) {
+			final int nr = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						final JSONResponse response = transform.invoke(
+								"{\"id\":1,\"method\":\"sub.inner.echo\",\"params\":{\"value\":\""
+										+ nr + "\"}}", sender);
+						if (!("" + nr).equals(response.getResult().asText())) {
+							synchronized (failures) {
+								failures[0]++;
+							}
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures[0]);
+		
+		// Unknown namespace, and unknown method in a known namespace
+		JSONResponse response = transform.invoke(
+				"{\"id\":2,\"method\":\"sub.missing.echo\",\"params\":{}}",
+				sender);
+		assertTrue(response.getObjectNode().has("error"));
+		response = transform.invoke(
+				"{\"id\":3,\"method\":\"sub.unknown\",\"params\":{}}", sender);
+		assertTrue(response.getObjectNode().has("error"));
+	}
+	
+	/**
+	 * Test generated method invokers.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testInvoker() throws Exception {
+		final MethodInvoker concat = MethodInvoker.create(String.class
+				.getMethod("concat", String.class));
+		assertTrue(concat.isGenerated());
+		assertEquals("ab", concat.invoke("a", new Object[] { "b" }));
+		
+		// Primitive arguments and result
+		final MethodInvoker charAt = MethodInvoker.create(String.class
+				.getMethod("charAt", int.class));
+		assertEquals('b', charAt.invoke("abc", new Object[] { 1 }));
+		try {
+			charAt.invoke("abc", new Object[] { 10 });
+			fail();
+		} catch (final InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IndexOutOfBoundsException);
+		}
+		
+		// Void method
+		final StringBuilder sb = new StringBuilder("abc");
+		final MethodInvoker setLength = MethodInvoker
+				.create(StringBuilder.class.getMethod("setLength", int.class));
+		assertNull(setLength.invoke(sb, new Object[] { 1 }));
+		assertEquals("a", sb.toString());
+		
+		// Static methods use reflection
+		final MethodInvoker valueOf = MethodInvoker.create(String.class
+				.getMethod("valueOf", int.class));
+		assertFalse(valueOf.isGenerated());
+		assertEquals("1", valueOf.invoke(null, new Object[] { 1 }));
+		
+		// Argument mismatches are reported like reflection does, widening
+		// conversions work the same.
+		assertEquals('b', charAt.invoke("abc", new Object[] { (short) 1 }));
+		for (final Object[] args : new Object[][] { { null }, { "1" }, {} }) {
+			try {
+				charAt.invoke("abc", args);
+				fail();
+			} catch (final IllegalArgumentException e) {}
+		}
+		try {
+			concat.invoke(1, new Object[] { "b" });
+			fail();
+		} catch (final IllegalArgumentException e) {}
+		
+		// A ClassCastException of the method itself is wrapped.
+		final MethodInvoker cast = MethodInvoker.create(Caster.class
+				.getMethod("cast", Object.class));
+		assertTrue(cast.isGenerated());
+		try {
+			cast.invoke(new Caster(), new Object[] { 1 });
+			fail();
+		} catch (final InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof ClassCastException);
+		}
+	}
+	
+	/**
+	 * A method failing on its own cast.
+	 */
+	public static class Caster {
+		
+		/**
+		 * Cast the value to a String.
+		 * 
+		 * @param value
+		 *            the value
+		 * @return the string
+		 */
+		public String cast(final Object value) {
+			return (String) value;
+		}
+	}
+	
+	/**
+	 * Test methods with an asynchronous result: the reply is sent once the
+	 * result completes, with the actual failure as error.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testAsyncResult() throws Exception {
+		final ObjectNode params = JOM.createObjectNode();
+		params.put("class", "com.almende.eve.transform.rpc.RpcService");
+		
+		final MyClass dest = new MyClass();
+		final RpcTransform transform = new RpcTransformBuilder().withConfig(params).withHandle(
+				new SimpleHandler<Object>(dest)).build();
+		final URI sender = URI.create("local://me");
+		final AtomicReference<JSONResponse> reply = new AtomicReference<JSONResponse>();
+		final AsyncCallback<JSONResponse> callback = new AsyncCallback<JSONResponse>() {
+			@Override
+			public void onSuccess(final JSONResponse result) {
+				reply.set(result);
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				fail();
+			}
+		};
+		final String request = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"later\"}";
+		
+		// Through the streaming parser
+		transform.invoke(request, sender, callback);
+		assertNull(reply.get());
+		dest.pending.complete("done");
+		assertEquals("done", reply.get().getResult().asText());
+		
+		// Through the tree, failing
+		reply.set(null);
+		transform.invoke(JOM.getInstance().readTree(request), sender, callback);
+		assertNull(reply.get());
+		dest.pending.completeExceptionally(new JSONRPCException(
+				JSONRPCException.CODE.INVALID_PARAMS, "Not later"));
+		JsonNode error = reply.get().getObjectNode().get("error");
+		assertEquals(-32602, error.get("code").asInt());
+		assertEquals("Not later", error.get("message").asText());
+		
+		// The synchronous API waits for the result
+		final Thread completer = new Thread() {
+			@Override
+			public void run() {
+				while (dest.pending == null || dest.pending.isDone()) {
+					Thread.yield();
+				}
+				dest.pending.completeExceptionally(new IllegalStateException(
+						"boom"));
+			}
+		};
+		dest.pending = null;
+		completer.start();
+		error = transform.invoke(request, sender).getObjectNode()
+				.get("error");
+		assertEquals(-32603, error.get("code").asInt());
+		assertTrue(error.get("message").asText().contains("boom"));
+	}
+	
 	/**
 	 * The Class MyClass.
 	 */
 	@Access(AccessType.PUBLIC)
 	public class MyClass {
+		private final Sub					sub		= new Sub();
+		private int							lookups	= 0;
+		private volatile CompletableFuture<String>	pending	= null;
+		
+		/**
+		 * Gets the sub namespace.
+		 * 
+		 * @return the sub
+		 */
+		@Namespace("sub")
+		public Sub getSub() {
+			return sub;
+		}
 		
 		/**
 		 * Test me.
@@ -84,5 +624,100 @@ public class TestRpc extends TestCase {
 			return test;
 		}
 		
+		/**
+		 * Square a primitive.
+		 * 
+		 * @param value
+		 *            the value
+		 * @return the square
+		 */
+		public int square(@Name("value") final int value) {
+			return value * value;
+		}
+		
+		/**
+		 * Sum the values.
+		 * 
+		 * @param values
+		 *            the values
+		 * @param offset
+		 *            the (optional) offset
+		 * @return the sum
+		 */
+		public int sum(@Name("values") final List<Integer> values,
+				@Optional @Name("offset") final Integer offset) {
+			int result = offset != null ? offset : 0;
+			for (final Integer value : values) {
+				result += value;
+			}
+			return result;
+		}
+		
+		/**
+		 * A cacheable lookup, counting its actual invocations.
+		 * 
+		 * @param key
+		 *            the key
+		 * @param extra
+		 *            an (optional) extra param
+		 * @return the number of invocations so far
+		 */
+		@Cacheable(maxSize = 2)
+		public synchronized int lookup(@Name("key") final String key,
+				@Optional @Name("extra") final String extra) {
+			return ++lookups;
+		}
+		
+		/**
+		 * A result that completes later, through the pending future.
+		 * 
+		 * @return the future result
+		 */
+		public CompletionStage<String> later() {
+			pending = new CompletableFuture<String>();
+			return pending.thenApply(new Function<String, String>() {
+				@Override
+				public String apply(final String value) {
+					return value;
+				}
+			});
+		}
+		
+	}
+	
+	/**
+	 * A namespace, with a nested namespace.
+	 */
+	@Access(AccessType.PUBLIC)
+	public static class Sub {
+		private final Inner	inner	= new Inner();
+		
+		/**
+		 * Gets the inner namespace.
+		 * 
+		 * @return the inner
+		 */
+		@Namespace("inner")
+		public Inner getInner() {
+			return inner;
+		}
+	}
+	
+	/**
+	 * The innermost namespace.
+	 */
+	@Access(AccessType.PUBLIC)
+	public static class Inner {
+		
+		/**
+		 * Echo.
+		 * 
+		 * @param value
+		 *            the value
+		 * @return the value
+		 */
+		public String echo(@Name("value") final String value) {
+			return value;
+		}
 	}
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.almende.util.jackson.JOM;
+import com.almende.util.threads.ExecutorProvider;
+import com.almende.util.threads.FixedPoolProvider;
+import com.almende.util.threads.ForkJoinProvider;
+import com.almende.util.threads.Mailbox;
+import com.almende.util.threads.ThreadPool;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The Class TestThreadPool.
+ */
+public class TestThreadPool extends TestCase {
+	
+	/**
+	 * Test switching executor backends while tasks are in flight.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testSwitchBackends() throws InterruptedException {
+		final int count = 1000;
+		final CountDownLatch latch = new CountDownLatch(count);
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(1);
+				} catch (final InterruptedException e) {}
+				latch.countDown();
+			}
+		};
+		final String[] backends = new String[] { "forkjoin", "virtual",
+				"fixed" };
+		for (int i = 0; i < count; i++) {
+			ThreadPool.getPool().execute(task);
+			if (i % 300 == 0) {
+				final ObjectNode config = JOM.createObjectNode();
+				config.put("executor", backends[(i / 300) % backends.length]);
+				ThreadPool.configure(config);
+			}
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+	}
+	
+	/**
+	 * Test that the configured thread factory is used by the work-stealing
+	 * backend as well.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFactory() throws Exception {
+		final ThreadFactory original = ThreadPool.getFactory();
+		final ExecutorProvider provider = ThreadPool.getProvider();
+		try {
+			ThreadPool.setFactory(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "eve-test-worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			ThreadPool.setProvider(new ForkJoinProvider());
+			final Future<Thread> worker = ThreadPool.getPool().submit(
+					new Callable<Thread>() {
+						@Override
+						public Thread call() {
+							return Thread.currentThread();
+						}
+					});
+			final Thread thread = worker.get(5, TimeUnit.SECONDS);
+			assertEquals("eve-test-worker", thread.getName());
+			assertTrue(thread.isDaemon());
+		} finally {
+			ThreadPool.setFactory(original);
+			ThreadPool.setProvider(provider);
+		}
+	}
+	
+	/**
+	 * Test the mailbox overflow policies.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testMailboxPolicies() throws InterruptedException {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch handled = new CountDownLatch(3);
+		final Mailbox<String> box = new Mailbox<String>(2, 1,
+				Mailbox.Policy.DROP_OLDEST, 0) {
+			@Override
+			protected void handle(final String message) {
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {}
+				handled.countDown();
+			}
+			
+			@Override
+			protected boolean isDroppable(final String message) {
+				return message.startsWith("notify");
+			}
+		};
+		// The first message is taken by the drain run, which blocks.
+		assertTrue(box.offer("request1"));
+		Thread.sleep(100);
+		assertTrue(box.offer("notify1"));
+		assertTrue(box.offer("request2"));
+		// Full: the notification makes room
+		assertTrue(box.offer("request3"));
+		assertEquals(1, box.getDropped());
+		// Full, nothing left to drop
+		assertFalse(box.offer("request4"));
+		assertEquals(1, box.getRejected());
+		gate.countDown();
+		assertTrue(handled.await(5, TimeUnit.SECONDS));
+		
+		final CountDownLatch slow = new CountDownLatch(1);
+		final Mailbox<String> blocking = new Mailbox<String>(1, 1,
+				Mailbox.Policy.BLOCK, 2000) {
+			@Override
+			protected void handle(final String message) {
+				try {
+					slow.await(200, TimeUnit.MILLISECONDS);
+				} catch (final InterruptedException e) {}
+			}
+		};
+		assertTrue(blocking.offer("1"));
+		Thread.sleep(50);
+		assertTrue(blocking.offer("2"));
+		// Waits for the handler to make room
+		final long start = System.currentTimeMillis();
+		assertTrue(blocking.offer("3"));
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		assertEquals(0, blocking.getRejected());
+		
+		// Global bound over all mailboxes
+		Mailbox.setGlobalCapacity(Mailbox.getGlobalSize());
+		try {
+			assertFalse(new Mailbox<String>(10, 1) {
+				@Override
+				protected void handle(final String message) {}
+			}.offer("x"));
+		} finally {
+			Mailbox.setGlobalCapacity(0);
+		}
+	}
+	
+	/**
+	 * Test the policies of the bounded queue of the fixed pool.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testPoolPolicies() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final Runnable blocker = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {}
+			}
+		};
+		final Runnable noop = new Runnable() {
+			@Override
+			public void run() {}
+		};
+		final ThreadFactory factory = Executors.defaultThreadFactory();
+		
+		// One busy thread, one queued task: the next one is rejected, when
+		// asked for.
+		final ExecutorService rejecting = new FixedPoolProvider(1,
+				FixedPoolProvider.Overflow.REJECT, 0).create(1, factory);
+		final long rejected = FixedPoolProvider.getRejected();
+		rejecting.execute(blocker);
+		rejecting.execute(noop);
+		try {
+			rejecting.execute(noop);
+			fail();
+		} catch (final RejectedExecutionException e) {}
+		assertEquals(rejected + 1, FixedPoolProvider.getRejected());
+		
+		// The caller runs the task itself, by default.
+		assertEquals(FixedPoolProvider.Overflow.CALLER_RUNS,
+				new FixedPoolProvider().getPolicy());
+		final ExecutorService callerRuns = new FixedPoolProvider(1,
+				FixedPoolProvider.Overflow.CALLER_RUNS, 0).create(1, factory);
+		final long ranByCaller = FixedPoolProvider.getCallerRuns();
+		final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+		callerRuns.execute(blocker);
+		callerRuns.execute(noop);
+		callerRuns.execute(new Runnable() {
+			@Override
+			public void run() {
+				runner.set(Thread.currentThread());
+			}
+		});
+		assertSame(Thread.currentThread(), runner.get());
+		assertEquals(ranByCaller + 1, FixedPoolProvider.getCallerRuns());
+		
+		// Blocks the caller until there is room, pool threads run the task
+		// themselves.
+		final ExecutorService blocking = new FixedPoolProvider(1,
+				FixedPoolProvider.Overflow.BLOCK, 2000).create(1, factory);
+		final CountDownLatch slow = new CountDownLatch(1);
+		final AtomicReference<Boolean> poolRan = new AtomicReference<Boolean>();
+		blocking.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					// The queued task fills the queue.
+					slow.await();
+					final Thread self = Thread.currentThread();
+					blocking.execute(new Runnable() {
+						@Override
+						public void run() {
+							poolRan.set(Thread.currentThread() == self);
+						}
+					});
+				} catch (final InterruptedException e) {}
+				try {
+					Thread.sleep(200);
+				} catch (final InterruptedException e) {}
+			}
+		});
+		blocking.execute(noop);
+		slow.countDown();
+		final long start = System.currentTimeMillis();
+		blocking.execute(noop);
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		assertTrue(poolRan.get());
+		
+		gate.countDown();
+		rejecting.shutdown();
+		callerRuns.shutdown();
+		blocking.shutdown();
+		assertTrue(callerRuns.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
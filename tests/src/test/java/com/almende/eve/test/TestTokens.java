@@ -0,0 +1,81 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.test;
+
+import junit.framework.TestCase;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.almende.eve.transport.TransportConfig;
+import com.almende.eve.transport.tokens.TokenRet;
+import com.almende.eve.transport.tokens.TokenSigner;
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The Class TestTokens.
+ */
+public class TestTokens extends TestCase {
+
+	/**
+	 * Test signing and local verification of sender tokens.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSignedTokens() throws Exception {
+		final TransportConfig senderConfig = new TransportConfig(
+				JOM.createObjectNode());
+		assertNull(TokenSigner.create(senderConfig));
+		senderConfig.setSigningKey("nodeASecret");
+		senderConfig.setSigningKeyId("nodeA");
+		final TokenSigner sender = TokenSigner.create(senderConfig);
+
+		final TransportConfig receiverConfig = new TransportConfig(
+				JOM.createObjectNode());
+		receiverConfig.setSigningKey("nodeBSecret");
+		receiverConfig.setSigningKeyId("nodeB");
+		final ObjectNode keys = JOM.createObjectNode();
+		keys.put("nodeA", "nodeASecret");
+		receiverConfig.setTrustedKeys(keys);
+		final TokenSigner receiver = TokenSigner.create(receiverConfig);
+
+		final String senderUrl = "http://localhost:8080/agents/alice";
+		final String signature = sender.sign(senderUrl);
+		assertEquals(signature, sender.sign(senderUrl));
+		assertTrue(receiver.verify(senderUrl, signature));
+		// Again, from the cache of verified peers.
+		assertTrue(receiver.verify(senderUrl, signature));
+
+		// Signed for another sender, tampered, or by an unknown key.
+		assertFalse(receiver.verify("http://localhost:8080/agents/mallory",
+				signature));
+		assertFalse(receiver.verify(senderUrl, signature + "0"));
+		assertFalse(receiver.verify(senderUrl,
+				signature.replaceFirst("^nodeA", "nodeC")));
+		assertFalse(receiver.verify(senderUrl, null));
+		assertFalse(receiver.verify(senderUrl, "garbage"));
+
+		// The receiver itself doesn't trust other nodes.
+		assertFalse(sender.verify(senderUrl, receiver.sign(senderUrl)));
+
+		// Expired tokens are rejected.
+		senderConfig.setTokenTtl(-1);
+		final String expired = TokenSigner.create(senderConfig)
+				.sign(senderUrl);
+		assertFalse(receiver.verify(senderUrl, expired));
+
+		// The signature travels within the token.
+		final TokenRet token = JOM.getInstance().readValue(
+				TokenSigner.sign(sender, new TokenRet("abc",
+						new DateTime()), senderUrl).toString(),
+				TokenRet.class);
+		assertTrue(receiver.verify(senderUrl, token.getSignature()));
+		assertFalse(new TokenRet("abc", new DateTime())
+				.toString().contains("signature"));
+	}
+}
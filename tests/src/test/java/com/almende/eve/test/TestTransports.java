@@ -4,8 +4,17 @@
  */
 package com.almende.eve.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import junit.framework.TestCase;
@@ -13,18 +22,33 @@ import junit.framework.TestCase;
 import org.junit.Test;
 
 import com.almende.eve.capabilities.handler.Handler;
+import com.almende.eve.transform.rpc.formats.JSONRequest;
+import com.almende.eve.transform.rpc.formats.JSONResponse;
+import com.almende.eve.transport.AbstractTransport;
 import com.almende.eve.transport.LocalTransportConfig;
 import com.almende.eve.transport.Receiver;
+import com.almende.eve.transport.Router;
+import com.almende.eve.transport.MessageWriter;
 import com.almende.eve.transport.Transport;
 import com.almende.eve.transport.TransportBuilder;
+import com.almende.eve.transport.TransportService;
 import com.almende.eve.transport.ws.WebsocketTransportConfig;
 import com.almende.eve.transport.ws.WsClientTransport;
 import com.almende.eve.transport.ws.WsClientTransportBuilder;
 import com.almende.eve.transport.xmpp.XmppTransportBuilder;
 import com.almende.eve.transport.xmpp.XmppTransportConfig;
+import com.almende.eve.transport.zmq.ZmqTransport;
 import com.almende.eve.transport.zmq.ZmqTransportConfig;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
 
 /**
  * The Class TestTransports.
@@ -80,6 +104,154 @@ public class TestTransports extends TestCase {
 				null);
 	}
 	
+	/**
+	 * Test sending a MessageWriter through Zmq, from a pooled buffer.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testZmqMessageWriter() throws IOException,
+			InterruptedException {
+		try {
+			com.almende.eve.transport.zmq.ZMQ.getInstance();
+		} catch (final LinkageError e) {
+			LOG.warning("Skipping, no native ZMQ library: " + e);
+			return;
+		}
+		final ZmqTransportConfig config = new ZmqTransportConfig();
+		config.setAddress("zmq://tcp://127.0.0.1:5679");
+		config.setDoAuthentication(false);
+		
+		final List<Object> received = Collections
+				.synchronizedList(new ArrayList<Object>());
+		final CountDownLatch latch = new CountDownLatch(2);
+		// Without local shortcut, so the frames go through the socket.
+		final ZmqTransport transport = new ZmqTransport(config,
+				new MyReceiver() {
+					@Override
+					public void receive(final Object msg,
+							final URI senderUrl, final String tag) {
+						received.add(msg);
+						latch.countDown();
+					}
+				}, new TransportService() {
+					@Override
+					public void delete(final Transport instance) {}
+					
+					@Override
+					public Transport getLocal(final URI address) {
+						return null;
+					}
+				});
+		transport.connect();
+		
+		final ObjectNode message = JOM.createObjectNode();
+		message.put("hello", "world");
+		transport.send(config.getAddress(), new MessageWriter(message,
+				JsonCodec.SMILE), null);
+		transport.send(config.getAddress(), new MessageWriter(message,
+				JsonCodec.JSON), null);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		
+		boolean binary = false;
+		for (final Object msg : received) {
+			if (msg instanceof byte[]) {
+				binary = true;
+				assertEquals(message, JsonCodec.decode((byte[]) msg));
+			} else {
+				assertEquals(message,
+						JOM.getInstance().readTree((String) msg));
+			}
+		}
+		assertTrue(binary);
+	}
+	
+	/**
+	 * Test the MessageWriter serializations, and the default send, which
+	 * picks bytes or text by codec.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testMessageWriter() throws IOException {
+		final ObjectNode message = JOM.createObjectNode();
+		message.put("id", 1);
+		message.put("method", "test");
+		
+		final MessageWriter json = new MessageWriter(message, null);
+		assertEquals(JsonCodec.JSON, json.getCodec());
+		assertEquals(message, JOM.getInstance().readTree(json.toText()));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		json.writeTo(out);
+		assertTrue(Arrays.equals(json.toBytes(), out.toByteArray()));
+		
+		final MessageWriter smile = new MessageWriter(message, JsonCodec.SMILE);
+		assertEquals(JsonCodec.SMILE, JsonCodec.detect(smile.toBytes()));
+		assertEquals(message, JsonCodec.decode(smile.toBytes()));
+		assertEquals(message, JOM.getInstance().readTree(smile.toText()));
+		// Text and bytes given as message are re-encoded as needed.
+		assertEquals(message, JsonCodec.decode(new MessageWriter(
+				message.toString(), JsonCodec.SMILE).toBytes()));
+		assertEquals(message, JOM.getInstance().readTree(
+				new MessageWriter(smile.toBytes(), null).toText()));
+		
+		// Pooled buffers hold just the message, and are reused.
+		final MessageWriter.Buffer buffer = smile.toBuffer();
+		assertTrue(Arrays.equals(smile.toBytes(), Arrays.copyOf(
+				buffer.array(), buffer.length())));
+		buffer.release();
+		boolean reused = false;
+		final List<MessageWriter.Buffer> taken = new ArrayList<MessageWriter.Buffer>();
+		for (int i = 0; i < 16 && !reused; i++) {
+			final MessageWriter.Buffer next = json.toBuffer();
+			assertEquals(message, JOM.getInstance().readTree(
+					new String(next.array(), 0, next.length(), "UTF-8")));
+			reused = next == buffer;
+			taken.add(next);
+		}
+		assertTrue(reused);
+		for (final MessageWriter.Buffer next : taken) {
+			next.release();
+		}
+		
+		// The default send: binary codecs as bytes, others as text.
+		final List<Object> sent = new ArrayList<Object>();
+		final Transport transport = new AbstractTransport(
+				URI.create("test:me"), null, null, null) {
+			@Override
+			public void send(final URI receiverUri, final String message,
+					final String tag) throws IOException {
+				sent.add(message);
+			}
+			
+			@Override
+			public void send(final URI receiverUri, final byte[] message,
+					final String tag) throws IOException {
+				sent.add(message);
+			}
+			
+			@Override
+			public void connect() throws IOException {}
+			
+			@Override
+			public void disconnect() {}
+			
+			@Override
+			public List<String> getProtocols() {
+				return Arrays.asList("test");
+			}
+		};
+		transport.send(URI.create("test:other"), json, null);
+		transport.send(URI.create("test:other"), smile, null);
+		assertEquals(2, sent.size());
+		assertEquals(message, JOM.getInstance().readTree((String) sent.get(0)));
+		assertEquals(message, JsonCodec.decode((byte[]) sent.get(1)));
+	}
+	
 	/**
 	 * Test local transport.
 	 * 
@@ -96,6 +268,93 @@ public class TestTransports extends TestCase {
 		transport.send(URI.create("local:testMe"), "Hello World", null);
 	}
 	
+	/**
+	 * Test that JSON-RPC messages make a local round trip as objects, without
+	 * being serialized, and that the receiver gets its own params and result.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLocalObjects() throws Exception {
+		final Counted counted = new Counted();
+		final ObjectNode params = JOM.createObjectNode();
+		params.putPOJO("counted", counted);
+		params.putArray("values").add(1);
+		final JSONRequest request = new JSONRequest("test", params);
+		
+		final AtomicReference<Object> received = new AtomicReference<Object>();
+		final AtomicReference<Object> replied = new AtomicReference<Object>();
+		final CountDownLatch done = new CountDownLatch(1);
+		final Transport sender = new TransportBuilder()
+				.withConfig(new LocalTransportConfig("objectSender"))
+				.withHandle(new MyReceiver() {
+					@Override
+					public void receive(final Object msg, final URI senderUrl,
+							final String tag) {
+						replied.set(msg);
+						done.countDown();
+					}
+				}).build();
+		final AtomicReference<Transport> receiver = new AtomicReference<Transport>();
+		receiver.set(new TransportBuilder()
+				.withConfig(new LocalTransportConfig("objectReceiver"))
+				.withHandle(new MyReceiver() {
+					@Override
+					public void receive(final Object msg, final URI senderUrl,
+							final String tag) {
+						received.set(msg);
+						final JSONRequest req = (JSONRequest) msg;
+						// The receiver may change its own params.
+						((ArrayNode) req.getParams().get("values")).add(2);
+						try {
+							receiver.get().send(
+									senderUrl,
+									new MessageWriter(new JSONResponse(req
+											.getId(), req.getParams()),
+											JsonCodec.JSON), null);
+						} catch (final IOException e) {
+							LOG.warning("Failed to reply:" + e);
+						}
+					}
+				}).build());
+		
+		sender.send(URI.create("local:objectReceiver"), new MessageWriter(
+				request, JsonCodec.JSON), null);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		
+		assertTrue(received.get() instanceof JSONRequest);
+		assertNotSame(request, received.get());
+		assertTrue(replied.get() instanceof JSONResponse);
+		final JsonNode result = ((JSONResponse) replied.get()).getResult();
+		assertSame(counted, ((POJONode) result.get("counted")).getPojo());
+		assertEquals(2, result.get("values").size());
+		// The sender's own params are untouched.
+		assertEquals(1, params.get("values").size());
+		assertEquals(0, Counted.SERIALIZED.get());
+	}
+	
+	/**
+	 * A param that counts how often it is serialized.
+	 */
+	private static final class Counted implements JsonSerializable {
+		private static final AtomicInteger	SERIALIZED	= new AtomicInteger(0);
+		
+		@Override
+		public void serialize(final JsonGenerator gen,
+				final SerializerProvider provider) throws IOException {
+			SERIALIZED.incrementAndGet();
+			gen.writeString("counted");
+		}
+		
+		@Override
+		public void serializeWithType(final JsonGenerator gen,
+				final SerializerProvider provider, final TypeSerializer typeSer)
+				throws IOException {
+			serialize(gen, provider);
+		}
+	}
+	
 	/**
 	 * Test Websocket transport.
 	 * 
@@ -130,6 +389,56 @@ public class TestTransports extends TestCase {
 		
 	}
 	
+	/**
+	 * Test outbound batching in the Router.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testBatching() throws IOException, InterruptedException {
+		final List<String> sent = Collections
+				.synchronizedList(new ArrayList<String>());
+		final CountDownLatch flushed = new CountDownLatch(2);
+		final Router router = new Router();
+		router.register(new AbstractTransport(URI.create("test:me"), null,
+				null, null) {
+			@Override
+			public void send(final URI receiverUri, final String message,
+					final String tag) throws IOException {
+				sent.add(message);
+				flushed.countDown();
+			}
+			
+			@Override
+			public void send(final URI receiverUri, final byte[] message,
+					final String tag) throws IOException {}
+			
+			@Override
+			public void connect() throws IOException {}
+			
+			@Override
+			public void disconnect() {}
+			
+			@Override
+			public List<String> getProtocols() {
+				return Arrays.asList("test");
+			}
+		});
+		router.setBatching(100, 5);
+		
+		for (int i = 0; i < 7; i++) {
+			router.send(URI.create("test:other"), (Object) ("{\"id\":" + i + "}"),
+					null);
+		}
+		assertTrue(flushed.await(5, TimeUnit.SECONDS));
+		assertEquals(2, sent.size());
+		assertEquals(5, JOM.getInstance().readTree(sent.get(0)).size());
+		assertEquals(2, JOM.getInstance().readTree(sent.get(1)).size());
+	}
+	
 	/**
 	 * The Class myReceiver.
 	 */
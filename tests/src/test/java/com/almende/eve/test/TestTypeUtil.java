@@ -0,0 +1,85 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.almende.util.TypeUtil;
+import com.almende.util.callback.AsyncCallback;
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * The Class TestTypeUtil.
+ */
+public class TestTypeUtil extends TestCase {
+
+	/**
+	 * Test that type resolution is cached.
+	 */
+	@Test
+	public void testCachedResolution() {
+		assertSame(TypeUtil.constructType(String.class),
+				TypeUtil.constructType(String.class));
+
+		// Each instance of the same subclass shares its resolved type.
+		final JavaType listType = listOfIntegers().getJavaType();
+		assertSame(listType, listOfIntegers().getJavaType());
+		assertEquals(List.class, listType.getRawClass());
+		assertEquals(Integer.class, listType.containedType(0).getRawClass());
+		// Generic types resolve to equal JavaTypes.
+		assertEquals(listType, TypeUtil.constructType(listOfIntegers()
+				.getClass().getGenericSuperclass()).containedType(0));
+
+		final TypeUtil<List<Integer>> resolved = TypeUtil
+				.resolve(callback());
+		assertSame(resolved, TypeUtil.resolve(callback()));
+		assertEquals(listType, resolved.getJavaType());
+		assertEquals(Void.class, TypeUtil.resolve(null).getJavaType()
+				.getRawClass());
+	}
+
+	/**
+	 * Test that readers are reused, also for generic types.
+	 */
+	@Test
+	public void testReaders() {
+		final JavaType stringType = TypeUtil.constructType(String.class);
+		assertSame(TypeUtil.reader(stringType), TypeUtil.reader(stringType));
+
+		final JavaType listType = listOfIntegers().getJavaType();
+		final JavaType sameType = JOM.getTypeFactory().constructCollectionType(
+				List.class, Integer.class);
+		assertNotSame(listType, sameType);
+		assertSame(TypeUtil.reader(listType), TypeUtil.reader(sameType));
+
+		final ArrayNode values = JOM.createArrayNode();
+		values.add(1);
+		values.add(2);
+		assertEquals(Arrays.asList(1, 2), listOfIntegers().inject(values));
+		assertEquals(Arrays.asList(1, 2), listOfIntegers().inject(values));
+	}
+
+	private static TypeUtil<List<Integer>> listOfIntegers() {
+		return new TypeUtil<List<Integer>>() {
+		};
+	}
+
+	private static AsyncCallback<List<Integer>> callback() {
+		return new AsyncCallback<List<Integer>>() {
+			@Override
+			public void onSuccess(final List<Integer> result) {}
+
+			@Override
+			public void onFailure(final Exception exception) {}
+		};
+	}
+}
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -15,11 +17,14 @@ import org.junit.Test;
 
 import com.almende.eve.agent.Agent;
 import com.almende.eve.agent.MyAgent;
+import com.almende.eve.capabilities.wake.PassivationManager;
 import com.almende.eve.capabilities.wake.WakeService;
 import com.almende.eve.capabilities.wake.WakeServiceBuilder;
 import com.almende.eve.capabilities.wake.WakeServiceConfig;
 import com.almende.eve.state.file.FileStateConfig;
 import com.almende.util.callback.AsyncCallback;
+import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * The Class TestWake.
@@ -100,4 +105,60 @@ public class TestWake extends TestCase {
 		assertTrue(called.value);
 	}
 	
+	/**
+	 * Test passivation: only the most recently used agents stay resident.
+	 * 
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testPassivation() throws Exception {
+		final WakeServiceConfig config = new WakeServiceConfig();
+		final FileStateConfig stateconfig = new FileStateConfig();
+		stateconfig.setPath(".wakeservices");
+		stateconfig.setId("testPassivationService");
+		config.setState(stateconfig);
+		final ObjectNode passivation = JOM.createObjectNode();
+		passivation.put("maxResident", 2);
+		config.setPassivation(passivation);
+		
+		final WakeService ws = new WakeServiceBuilder().withConfig(config)
+				.build();
+		
+		final List<Agent> agents = new ArrayList<Agent>();
+		for (int i = 0; i < 3; i++) {
+			agents.add(new MyAgent("passivationAgent" + i, ws));
+		}
+		final PassivationManager manager = ws.getPassivation();
+		assertEquals(2, manager.size());
+		assertEquals(1, manager.getPassivations());
+		
+		final Caller proxy = new Caller("passivationCaller");
+		
+		// Resident agent: a hit
+		assertEquals("Hello World",
+				proxy.hello(URI.create("local:passivationAgent2")));
+		assertTrue(manager.getHits() > 0);
+		assertEquals(0, manager.getMisses());
+		
+		// The first agent got passivated, calling it wakes a new instance
+		assertEquals("Hello World",
+				proxy.hello(URI.create("local:passivationAgent0")));
+		assertEquals(1, manager.getMisses());
+		assertEquals(2, manager.size());
+		assertEquals(2, manager.getPassivations());
+	}
+	
+	/**
+	 * Agent calling helloWorld synchronously.
+	 */
+	private static class Caller extends Agent {
+		Caller(final String id) {
+			super(id, null);
+		}
+		
+		String hello(final URI url) throws IOException {
+			return callSync(url, "helloWorld", null);
+		}
+	}
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transform.rpc;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.almende.eve.transform.rpc.annotation.Cacheable;
+import com.almende.eve.transform.rpc.annotation.Name;
+import com.almende.eve.transform.rpc.annotation.Optional;
+import com.almende.eve.transform.rpc.formats.JSONRPCException;
+import com.almende.eve.transform.rpc.formats.RequestParams;
+import com.almende.util.AnnotationUtil.AnnotatedMethod;
+import com.almende.util.AnnotationUtil.AnnotatedParam;
+import com.almende.util.TypeUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Precompiled binding of JSON-RPC params to the arguments of a method. The
+ * parameter names, required flags, candidate system parameter annotations
+ * and a Jackson reader per parameter type are resolved once per method, so
+ * binding a call doesn't need any annotation lookups.
+ * 
+ * Params can be bound from a tree, or be read one by one straight from a
+ * {@link JsonParser} (see {@link StreamingRequest}) and bound afterwards.
+ */
+final class BindingPlan {
+	private final Slot[]				slots;
+	private final Map<String, Integer>	indices;
+	private final boolean				wholeParams;
+	private final Cacheable				cacheable;
+
+	private BindingPlan(final AnnotatedMethod method) {
+		final List<AnnotatedParam> params = method.getParams();
+		slots = new Slot[params.size()];
+		indices = new HashMap<String, Integer>(params.size() * 2);
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = new Slot(i, params.get(i));
+			if (slots[i].name != null) {
+				indices.put(slots[i].name, i);
+			}
+		}
+		// the method expects one parameter of type ObjectNode: feed the params
+		// object itself to it.
+		wholeParams = params.size() == 1
+				&& params.get(0).getType().equals(ObjectNode.class)
+				&& params.get(0).getAnnotations().size() == 0;
+		cacheable = method.getAnnotation(Cacheable.class);
+	}
+
+	/**
+	 * Gets the binding plan of the method, kept on the method itself. Racing
+	 * callers may both build one, which is harmless.
+	 *
+	 * @param method
+	 *            the method
+	 * @return the binding plan
+	 */
+	static BindingPlan get(final AnnotatedMethod method) {
+		BindingPlan plan = (BindingPlan) method.getBindingPlan();
+		if (plan == null) {
+			plan = new BindingPlan(method);
+			method.setBindingPlan(plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Bind the params to an argument array.
+	 *
+	 * @param realDest
+	 *            the destination, put in front of the arguments if not null.
+	 * @param params
+	 *            the params
+	 * @param requestParams
+	 *            the request params
+	 * @return the arguments
+	 */
+	Object[] bind(final Object realDest, final ObjectNode params,
+			final RequestParams requestParams) {
+		final int offset = realDest != null ? 1 : 0;
+		final Object[] objects = new Object[slots.length + offset];
+		if (realDest != null) {
+			objects[0] = realDest;
+		}
+		if (wholeParams) {
+			objects[offset] = params;
+			return objects;
+		}
+		for (int i = 0; i < slots.length; i++) {
+			objects[i + offset] = slots[i].bind(params, requestParams);
+		}
+		return objects;
+	}
+	
+	/**
+	 * Bind values that have been read through {@link #read(int, JsonParser)}
+	 * to an argument array.
+	 *
+	 * @param realDest
+	 *            the destination, put in front of the arguments if not null.
+	 * @param values
+	 *            the values, by parameter index
+	 * @param present
+	 *            which of the values have been read
+	 * @param requestParams
+	 *            the request params
+	 * @return the arguments
+	 */
+	Object[] bind(final Object realDest, final Object[] values,
+			final boolean[] present, final RequestParams requestParams) {
+		final int offset = realDest != null ? 1 : 0;
+		final Object[] objects = new Object[slots.length + offset];
+		if (realDest != null) {
+			objects[0] = realDest;
+		}
+		for (int i = 0; i < slots.length; i++) {
+			objects[i + offset] = slots[i].bind(present[i], values[i],
+					requestParams);
+		}
+		return objects;
+	}
+	
+	/**
+	 * Checks if the params object itself is the only argument.
+	 *
+	 * @return true, if so
+	 */
+	boolean isWholeParams() {
+		return wholeParams;
+	}
+	
+	/**
+	 * Gets the result caching policy of the method.
+	 *
+	 * @return the policy, or null if the method isn't {@link Cacheable}.
+	 */
+	Cacheable getCacheable() {
+		return cacheable;
+	}
+	
+	/**
+	 * Gets the values of the system parameters (like the sender) the method
+	 * would receive from the given request params.
+	 *
+	 * @param requestParams
+	 *            the request params
+	 * @return the values, in parameter order, or null if there are none.
+	 */
+	List<Object> getSystemValues(final RequestParams requestParams) {
+		List<Object> values = null;
+		for (final Slot slot : slots) {
+			final Class<? extends Annotation> systemType = slot
+					.getSystemType(requestParams);
+			if (systemType != null) {
+				if (values == null) {
+					values = new ArrayList<Object>(1);
+				}
+				values.add(requestParams.get(systemType));
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Gets the number of parameters.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return slots.length;
+	}
+	
+	/**
+	 * Gets the index of the named parameter.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the index, or -1 if there is no such parameter.
+	 */
+	int indexOf(final String name) {
+		final Integer index = indices.get(name);
+		return index != null ? index : -1;
+	}
+	
+	/**
+	 * Read the value of a parameter straight from the parser, which should be
+	 * positioned at the first token of the value.
+	 *
+	 * @param index
+	 *            the parameter index
+	 * @param parser
+	 *            the parser
+	 * @return the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	Object read(final int index, final JsonParser parser) throws IOException {
+		return slots[index].read(parser);
+	}
+
+	/**
+	 * The binding of a single parameter.
+	 */
+	private static final class Slot {
+		private final int								index;
+		private final String							name;
+		private final boolean							required;
+		private final boolean							primitive;
+		private final Class<? extends Annotation>[]		systemTypes;
+		private final JavaType							type;
+		private final ObjectReader						reader;
+
+		@SuppressWarnings({ "deprecation", "unchecked" })
+		Slot(final int index, final AnnotatedParam param) {
+			this.index = index;
+			final Name nameAnnotation = param.getAnnotation(Name.class);
+			name = nameAnnotation != null ? nameAnnotation.value() : null;
+
+			boolean req = true;
+			final com.almende.eve.transform.rpc.annotation.Required requiredAnnotation = param
+					.getAnnotation(com.almende.eve.transform.rpc.annotation.Required.class);
+			if (requiredAnnotation != null) {
+				req = requiredAnnotation.value();
+			}
+			if (param.getAnnotation(Optional.class) != null) {
+				req = false;
+			}
+			required = req;
+			primitive = param.getType().isPrimitive();
+
+			// Any other annotation may mark a system parameter (like @Sender),
+			// depending on the request params of the call.
+			final List<Class<? extends Annotation>> types = new ArrayList<Class<? extends Annotation>>();
+			for (final Annotation annotation : param.getAnnotations()) {
+				if (!(annotation instanceof Name
+						|| annotation instanceof Optional || annotation instanceof com.almende.eve.transform.rpc.annotation.Required)) {
+					types.add(annotation.annotationType());
+				}
+			}
+			systemTypes = types.toArray(new Class[types.size()]);
+
+			type = TypeUtil.constructType(param.getGenericType());
+			if (type.hasRawClass(JsonNode.class)
+					|| type.hasRawClass(Void.class)) {
+				reader = null;
+			} else {
+				reader = TypeUtil.reader(type);
+			}
+		}
+
+		Object bind(final ObjectNode params, final RequestParams requestParams) {
+			final Class<? extends Annotation> systemType = getSystemType(requestParams);
+			if (systemType != null) {
+				return requestParams.get(systemType);
+			}
+			checkName();
+			final JsonNode value = params != null ? params.get(name) : null;
+			if (value == null) {
+				return missing();
+			}
+			return notNull(read(value));
+		}
+		
+		Object bind(final boolean present, final Object value,
+				final RequestParams requestParams) {
+			final Class<? extends Annotation> systemType = getSystemType(requestParams);
+			if (systemType != null) {
+				return requestParams.get(systemType);
+			}
+			checkName();
+			return present ? notNull(value) : missing();
+		}
+		
+		private Class<? extends Annotation> getSystemType(
+				final RequestParams requestParams) {
+			if (requestParams != null) {
+				for (final Class<? extends Annotation> systemType : systemTypes) {
+					if (requestParams.has(systemType)) {
+						return systemType;
+					}
+				}
+			}
+			return null;
+		}
+		
+		private void checkName() {
+			if (name == null) {
+				throw new ClassCastException("Name of parameter " + index
+						+ " not defined");
+			}
+		}
+		
+		private Object notNull(final Object value) {
+			if (value == null && primitive) {
+				throw new JSONRPCException(
+						JSONRPCException.CODE.INVALID_PARAMS, "Parameter '"
+								+ name + "' can't be null, it is a primitive ("
+								+ type.getRawClass().getSimpleName() + ")");
+			}
+			return value;
+		}
+		
+		private Object missing() {
+			if (required) {
+				throw new ClassCastException("Required parameter '" + name
+						+ "' missing.");
+			} else if (primitive) {
+				throw new ClassCastException("Parameter '" + name
+						+ "' cannot be both optional and "
+						+ "a primitive type ("
+						+ type.getRawClass().getSimpleName() + ")");
+			}
+			return null;
+		}
+		
+		private Object read(final JsonParser parser) throws IOException {
+			if (reader == null) {
+				// JsonNode itself, or Void
+				if (type.hasRawClass(Void.class)) {
+					parser.skipChildren();
+					return null;
+				}
+				if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+					return NullNode.getInstance();
+				}
+				return parser.readValueAsTree();
+			}
+			if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+				return null;
+			}
+			try {
+				return reader.readValue(parser);
+			} catch (final IOException e) {
+				final ClassCastException cce = new ClassCastException(
+						"Failed to convert value of '" + name + "' -----> "
+								+ type);
+				cce.initCause(e);
+				throw cce;
+			}
+		}
+
+		private Object read(final JsonNode value) {
+			if (reader == null) {
+				// JsonNode itself, or Void
+				return type.hasRawClass(Void.class) ? null : value;
+			}
+			if (value.isNull()) {
+				return null;
+			}
+			try {
+				return reader.readValue(value);
+			} catch (final Exception e) {
+				final ClassCastException cce = new ClassCastException(
+						"Failed to convert value:" + value + " -----> " + type);
+				cce.initCause(e);
+				throw cce;
+			}
+		}
+	}
+}
@@ -19,6 +19,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +33,7 @@ import com.almende.eve.auth.Authorizor;
 import com.almende.eve.transform.rpc.NamespaceUtil.CallTuple;
 import com.almende.eve.transform.rpc.annotation.Access;
 import com.almende.eve.transform.rpc.annotation.AccessType;
+import com.almende.eve.transform.rpc.annotation.Cacheable;
 import com.almende.eve.transform.rpc.annotation.Name;
 import com.almende.eve.transform.rpc.annotation.Namespace;
 import com.almende.eve.transform.rpc.annotation.Optional;
@@ -38,10 +46,16 @@ import com.almende.util.AnnotationUtil;
 import com.almende.util.AnnotationUtil.AnnotatedClass;
 import com.almende.util.AnnotationUtil.AnnotatedMethod;
 import com.almende.util.AnnotationUtil.AnnotatedParam;
-import com.almende.util.TypeUtil;
+import com.almende.util.callback.AsyncCallback;
 import com.almende.util.jackson.JOM;
-import com.almende.util.uuid.UUID;
+import com.almende.util.metrics.Histogram;
+import com.almende.util.metrics.Metrics;
+import com.almende.util.threads.ThreadPool;
+import com.almende.util.uuid.IdGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.LongNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -86,7 +100,6 @@ final class JSONRPC {
 	private JSONRPC() {
 	}
 	
-	// TODO: implement JSONRPC 2.0 Batch
 	/**
 	 * Invoke a method on an object.
 	 * 
@@ -123,10 +136,28 @@ final class JSONRPC {
 	public static String invoke(final Object destination, final String request,
 			final RequestParams requestParams, final Authorizor auth)
 			throws IOException {
+		final JsonNode tree;
+		try {
+			tree = JOM.getInstance().readTree(request);
+		} catch (final JsonProcessingException e) {
+			return new JSONResponse(new JSONRPCException(
+					JSONRPCException.CODE.PARSE_ERROR, "Parse error: "
+							+ e.getOriginalMessage())).toString();
+		}
+		if (tree != null && tree.isArray()) {
+			final ArrayNode responses = invoke(destination, (ArrayNode) tree,
+					requestParams, auth, false);
+			return responses != null ? responses.toString() : "";
+		}
+		if (tree == null || !tree.isObject()) {
+			return new JSONResponse(new JSONRPCException(
+					JSONRPCException.CODE.INVALID_REQUEST,
+					"Request is no object or batch")).toString();
+		}
 		JSONRequest jsonRequest = null;
 		JSONResponse jsonResponse = null;
 		try {
-			jsonRequest = new JSONRequest(request);
+			jsonRequest = new JSONRequest(tree);
 			jsonResponse = invoke(destination, jsonRequest, requestParams, auth);
 		} catch (final JSONRPCException err) {
 			jsonResponse = new JSONResponse(err);
@@ -167,7 +198,59 @@ final class JSONRPC {
 	public static JSONResponse invoke(final Object destination,
 			final JSONRequest request, final RequestParams requestParams,
 			final Authorizor auth) {
-		final JSONResponse resp = new JSONResponse(request.getId(), null);
+		return invoke(destination, request, requestParams, auth, null);
+	}
+	
+	/**
+	 * Invoke a method on an object, serving the results of {@link Cacheable}
+	 * methods from the given cache. Waits for asynchronous results.
+	 * 
+	 * @param destination
+	 *            the destination
+	 * @param request
+	 *            A request in JSON-RPC format
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param auth
+	 *            the auth
+	 * @param cache
+	 *            the result cache, may be null.
+	 * @return the jSON response
+	 */
+	public static JSONResponse invoke(final Object destination,
+			final JSONRequest request, final RequestParams requestParams,
+			final Authorizor auth, final ResultCache cache) {
+		final Pending<JSONResponse> pending = new Pending<JSONResponse>();
+		invoke(destination, request, requestParams, auth, cache, pending);
+		return pending.await();
+	}
+	
+	/**
+	 * Invoke a method on an object, serving the results of {@link Cacheable}
+	 * methods from the given cache. If the method returns a CompletionStage,
+	 * the callback is called once it completes, without keeping this thread
+	 * waiting.
+	 * 
+	 * @param destination
+	 *            the destination
+	 * @param request
+	 *            A request in JSON-RPC format
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param auth
+	 *            the auth
+	 * @param cache
+	 *            the result cache, may be null.
+	 * @param callback
+	 *            receives the jSON response, errors included
+	 */
+	public static void invoke(final Object destination,
+			final JSONRequest request, final RequestParams requestParams,
+			final Authorizor auth, final ResultCache cache,
+			final AsyncCallback<JSONResponse> callback) {
+		final Completion completion = new Completion(request,
+				request.getId(), request.getMethod(), cache, callback);
+		Object result;
 		try {
 			final CallTuple tuple = NamespaceUtil.get(destination,
 					request.getMethod());
@@ -181,58 +264,428 @@ final class JSONRPC {
 								+ request.getMethod()
 								+ "' not found. The method does not exist or you are not authorized.");
 			}
+			// Only existing methods, to keep the number of histograms bounded.
+			completion.metric = Metrics.histogram("rpc.invoke",
+					request.getMethod());
 			
-			final MethodHandle methodHandle = annotatedMethod.getMethodHandle();
-			final Method method = annotatedMethod.getActualMethod();
-			
-			Object result;
-			if (useMethodHandles) {
-				final Object[] params = castParams(realDest,
-						request.getParams(), annotatedMethod.getParams(),
-						requestParams);
-				result = methodHandle.invokeExact(params);
-			} else {
-				final Object[] params = castParams(request.getParams(),
-						annotatedMethod.getParams(), requestParams);
-				result = method.invoke(realDest, params);
+			final BindingPlan plan = BindingPlan.get(annotatedMethod);
+			final String key = getCacheKey(plan, request.getParams(),
+					requestParams, cache);
+			result = key != null ? cache.get(request.getMethod(), key) : null;
+			if (result == null) {
+				final Object[] params = plan.bind(useMethodHandles ? realDest
+						: null, request.getParams(), requestParams);
+				result = call(annotatedMethod, realDest, params);
+				if (!request.isNotification()) {
+					completion.cacheable = plan.getCacheable();
+					completion.key = key;
+				}
 			}
+		} catch (final Throwable err) {
+			completion.accept(null, err);
+			return;
+		}
+		completion.complete(result, request.isNotification());
+	}
+	
+	/**
+	 * Invoke a request that has been read through the streaming parser. The
+	 * method has already been resolved and checked for availability.
+	 * 
+	 * @param request
+	 *            the request
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param cache
+	 *            the result cache, may be null.
+	 * @param callback
+	 *            receives the jSON response, errors included
+	 */
+	static void invoke(final StreamingRequest request,
+			final RequestParams requestParams, final ResultCache cache,
+			final AsyncCallback<JSONResponse> callback) {
+		final Completion completion = new Completion(request,
+				request.getId(), request.getMethod(), cache, callback);
+		completion.metric = Metrics.histogram("rpc.invoke",
+				request.getMethod());
+		Object result;
+		try {
+			final Object realDest = request.getDestination();
+			final BindingPlan plan = request.getPlan();
+			final String key = getCacheKey(plan, request.getParams(),
+					requestParams, cache);
+			result = key != null ? cache.get(request.getMethod(), key) : null;
 			if (result == null) {
-				result = JOM.createNullNode();
+				final Object[] params = request.bind(
+						useMethodHandles ? realDest : null, requestParams);
+				result = call(request.getAnnotatedMethod(), realDest, params);
+				if (!request.isNotification()) {
+					completion.cacheable = plan.getCacheable();
+					completion.key = key;
+				}
 			}
-			resp.setResult(result);
-		} catch (final JSONRPCException err) {
-			resp.setError(err);
-			// TODO: Can this be reduced to Exception? Which Errors do we want
-			// to catch?
 		} catch (final Throwable err) {
-			final Throwable cause = err.getCause();
-			if (cause instanceof JSONRPCException) {
-				resp.setError((JSONRPCException) cause);
+			completion.accept(null, err);
+			return;
+		}
+		completion.complete(result, request.isNotification());
+	}
+	
+	/**
+	 * Gets the result cache key of a call.
+	 * 
+	 * @return the key, or null if the result shouldn't be cached.
+	 */
+	private static String getCacheKey(final BindingPlan plan,
+			final ObjectNode params, final RequestParams requestParams,
+			final ResultCache cache) {
+		if (cache == null || plan.getCacheable() == null) {
+			return null;
+		}
+		return ResultCache.key(params, plan.getSystemValues(requestParams));
+	}
+	
+	/**
+	 * Call the method with the bound params.
+	 * 
+	 * @return the result, may be a Future.
+	 */
+	private static Object call(final AnnotatedMethod annotatedMethod,
+			final Object realDest, final Object[] params) throws Throwable {
+		if (useMethodHandles) {
+			final MethodHandle methodHandle = annotatedMethod
+					.getMethodHandle();
+			return methodHandle.invokeExact(params);
+		}
+		// Generated invoker, or reflection if that isn't possible.
+		return annotatedMethod.getInvoker().invoke(realDest, params);
+	}
+	
+	/**
+	 * Fills the response of a call once its result is known, and hands it to
+	 * the callback.
+	 */
+	private static final class Completion implements
+			BiConsumer<Object, Throwable> {
+		private final JSONResponse					resp;
+		private final Object						request;
+		private final String						method;
+		private final ResultCache					cache;
+		private final AsyncCallback<JSONResponse>	callback;
+		private final long							start		= System.nanoTime();
+		private Histogram							metric		= null;
+		private Cacheable							cacheable	= null;
+		private String								key			= null;
+		
+		private Completion(final Object request, final JsonNode id,
+				final String method, final ResultCache cache,
+				final AsyncCallback<JSONResponse> callback) {
+			this.resp = new JSONResponse(id, null);
+			this.request = request;
+			this.method = method;
+			this.cache = cache;
+			this.callback = callback;
+		}
+		
+		/**
+		 * Complete with the result of the call. CompletionStages complete the
+		 * response when they are done, other Futures are waited for.
+		 */
+		private void complete(final Object result, final boolean notification) {
+			if (result instanceof CompletionStage) {
+				((CompletionStage<?>) result).whenComplete(this);
+			} else if (result instanceof Future) {
+				// No way to listen for these.
+				try {
+					accept(((Future<?>) result).get(), null);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					accept(null, e);
+				} catch (final ExecutionException e) {
+					accept(null, e);
+				}
 			} else {
-				if (err instanceof InvocationTargetException && cause != null) {
-					LOG.log(Level.WARNING,
-							"Exception raised, returning its cause as JSONRPCException. Request:"
-									+ request, cause);
-					
-					final JSONRPCException jsonError = new JSONRPCException(
-							JSONRPCException.CODE.INTERNAL_ERROR,
-							getMessage(cause), cause);
-					jsonError.setData(cause);
-					resp.setError(jsonError);
-				} else {
-					LOG.log(Level.WARNING,
-							"Exception raised, returning it as JSONRPCException. Request:"
-									+ request, err);
-					
-					final JSONRPCException jsonError = new JSONRPCException(
-							JSONRPCException.CODE.INTERNAL_ERROR,
-							getMessage(err), err);
-					jsonError.setData(err);
-					resp.setError(jsonError);
+				accept(notification ? null : result, null);
+			}
+		}
+		
+		@Override
+		public void accept(final Object result, final Throwable err) {
+			if (err != null) {
+				setError(resp, unwrap(err), request);
+			} else {
+				try {
+					resp.setResult(result != null ? result : JOM
+							.createNullNode());
+					if (key != null) {
+						cache.put(method, cacheable, key, resp.getResult());
+					}
+				} catch (final Throwable e) {
+					setError(resp, e, request);
 				}
 			}
+			if (metric != null) {
+				metric.recordSince(start);
+			}
+			callback.onSuccess(resp);
 		}
-		return resp;
+	}
+	
+	/**
+	 * Get the actual failure out of the wrappers of async results.
+	 */
+	private static Throwable unwrap(Throwable err) {
+		while ((err instanceof ExecutionException || err instanceof CompletionException)
+				&& err.getCause() != null) {
+			err = err.getCause();
+		}
+		return err;
+	}
+	
+	/**
+	 * Callback that lets the synchronous API wait for an invocation.
+	 * 
+	 * @param <T>
+	 *            the result type
+	 */
+	static final class Pending<T> extends CompletableFuture<T> implements
+			AsyncCallback<T> {
+		@Override
+		public void onSuccess(final T result) {
+			complete(result);
+		}
+		
+		@Override
+		public void onFailure(final Exception exception) {
+			completeExceptionally(exception);
+		}
+		
+		/**
+		 * Wait for the result.
+		 * 
+		 * @return the result
+		 */
+		T await() {
+			return join();
+		}
+	}
+	
+	/**
+	 * Set the error of a failed call on the response.
+	 */
+	private static void setError(final JSONResponse resp, final Throwable err,
+			final Object request) {
+		if (err instanceof JSONRPCException) {
+			resp.setError((JSONRPCException) err);
+			return;
+		}
+		final Throwable cause = err.getCause();
+		if (cause instanceof JSONRPCException) {
+			resp.setError((JSONRPCException) cause);
+		} else {
+			if (err instanceof InvocationTargetException && cause != null) {
+				LOG.log(Level.WARNING,
+						"Exception raised, returning its cause as JSONRPCException. Request:"
+								+ request, cause);
+				
+				final JSONRPCException jsonError = new JSONRPCException(
+						JSONRPCException.CODE.INTERNAL_ERROR,
+						getMessage(cause), cause);
+				jsonError.setData(cause);
+				resp.setError(jsonError);
+			} else {
+				LOG.log(Level.WARNING,
+						"Exception raised, returning it as JSONRPCException. Request:"
+								+ request, err);
+				
+				final JSONRPCException jsonError = new JSONRPCException(
+						JSONRPCException.CODE.INTERNAL_ERROR, getMessage(err),
+						err);
+				jsonError.setData(err);
+				resp.setError(jsonError);
+			}
+		}
+	}
+	
+	/**
+	 * Invoke a JSON-RPC 2.0 batch on an object. Independent entries are run in
+	 * parallel on the ThreadPool, unless inOrder is set. The calling thread
+	 * takes part in the execution, so waiting for the batch can't starve the
+	 * pool.
+	 * 
+	 * @param destination
+	 *            the destination
+	 * @param batch
+	 *            the batch of requests and notifications
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param auth
+	 *            the auth
+	 * @param inOrder
+	 *            run the entries one after the other, in batch order
+	 * @return the responses, in batch order, or null if the batch only
+	 *         contained notifications.
+	 */
+	public static ArrayNode invoke(final Object destination,
+			final ArrayNode batch, final RequestParams requestParams,
+			final Authorizor auth, final boolean inOrder) {
+		return invoke(destination, batch, requestParams, auth, inOrder, null);
+	}
+	
+	/**
+	 * Invoke a JSON-RPC 2.0 batch on an object, serving the results of
+	 * {@link Cacheable} methods from the given cache.
+	 * 
+	 * @param destination
+	 *            the destination
+	 * @param batch
+	 *            the batch of requests and notifications
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param auth
+	 *            the auth
+	 * @param inOrder
+	 *            run the entries one after the other, in batch order
+	 * @param cache
+	 *            the result cache, may be null.
+	 * @return the responses, in batch order, or null if the batch only
+	 *         contained notifications.
+	 */
+	public static ArrayNode invoke(final Object destination,
+			final ArrayNode batch, final RequestParams requestParams,
+			final Authorizor auth, final boolean inOrder,
+			final ResultCache cache) {
+		final Pending<ArrayNode> pending = new Pending<ArrayNode>();
+		invoke(destination, batch, requestParams, auth, inOrder, cache,
+				pending);
+		return pending.await();
+	}
+	
+	/**
+	 * Invoke a JSON-RPC 2.0 batch on an object, serving the results of
+	 * {@link Cacheable} methods from the given cache. The callback is called
+	 * once all entries are done, asynchronous results included.
+	 * 
+	 * @param destination
+	 *            the destination
+	 * @param batch
+	 *            the batch of requests and notifications
+	 * @param requestParams
+	 *            Optional request parameters
+	 * @param auth
+	 *            the auth
+	 * @param inOrder
+	 *            start the entries one after the other, in batch order
+	 * @param cache
+	 *            the result cache, may be null.
+	 * @param callback
+	 *            receives the responses, in batch order, or null if the batch
+	 *            only contained notifications.
+	 */
+	public static void invoke(final Object destination, final ArrayNode batch,
+			final RequestParams requestParams, final Authorizor auth,
+			final boolean inOrder, final ResultCache cache,
+			final AsyncCallback<ArrayNode> callback) {
+		final int size = batch.size();
+		if (size == 0) {
+			final ArrayNode result = JOM.createArrayNode();
+			result.add(new JSONResponse(new JSONRPCException(
+					JSONRPCException.CODE.INVALID_REQUEST, "Empty batch"))
+					.getObjectNode());
+			callback.onSuccess(result);
+			return;
+		}
+		final JSONResponse[] responses = new JSONResponse[size];
+		final AtomicInteger remaining = new AtomicInteger(size);
+		final class Entry implements AsyncCallback<JSONResponse> {
+			private final int	index;
+			
+			private Entry(final int index) {
+				this.index = index;
+			}
+			
+			@Override
+			public void onSuccess(final JSONResponse response) {
+				responses[index] = response;
+				if (remaining.decrementAndGet() == 0) {
+					final ArrayNode result = JOM.createArrayNode();
+					for (final JSONResponse resp : responses) {
+						if (resp != null) {
+							result.add(resp.getObjectNode());
+						}
+					}
+					callback.onSuccess(result.size() > 0 ? result : null);
+				}
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				onSuccess(new JSONResponse(new JSONRPCException(
+						JSONRPCException.CODE.INTERNAL_ERROR,
+						getMessage(exception), exception)));
+			}
+		}
+		if (inOrder || size == 1) {
+			for (int i = 0; i < size; i++) {
+				invokeEntry(destination, batch.get(i), requestParams, auth,
+						cache, new Entry(i));
+			}
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger(0);
+		final Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				int i;
+				while ((i = next.getAndIncrement()) < size) {
+					invokeEntry(destination, batch.get(i), requestParams, auth,
+							cache, new Entry(i));
+				}
+			}
+		};
+		final int helpers = Math.min(size - 1, Runtime.getRuntime()
+				.availableProcessors());
+		for (int i = 0; i < helpers; i++) {
+			ThreadPool.getPool().execute(worker);
+		}
+		worker.run();
+	}
+	
+	/**
+	 * Invoke a single batch entry, the callback receives null for
+	 * notifications.
+	 */
+	private static void invokeEntry(final Object destination,
+			final JsonNode entry, final RequestParams requestParams,
+			final Authorizor auth, final ResultCache cache,
+			final AsyncCallback<JSONResponse> callback) {
+		if (!entry.isObject()) {
+			callback.onSuccess(new JSONResponse(new JSONRPCException(
+					JSONRPCException.CODE.INVALID_REQUEST,
+					"Batch entry is not an object")));
+			return;
+		}
+		final JsonNode id = entry.get("id");
+		final boolean notification = id == null || id.isNull();
+		final JSONRequest request;
+		try {
+			request = new JSONRequest(entry);
+		} catch (final JSONRPCException err) {
+			callback.onSuccess(notification ? null : new JSONResponse(id, err));
+			return;
+		}
+		invoke(destination, request, requestParams, auth, cache,
+				new AsyncCallback<JSONResponse>() {
+					@Override
+					public void onSuccess(final JSONResponse response) {
+						callback.onSuccess(notification ? null : response);
+					}
+					
+					@Override
+					public void onFailure(final Exception exception) {
+						callback.onFailure(exception);
+					}
+				});
 	}
 	
 	/**
@@ -428,105 +881,17 @@ final class JSONRPC {
 	}
 	
 	/**
-	 * @param params
-	 * @param annotatedParams
-	 * @param requestParams
-	 * @return the Object[]
-	 */
-	private static Object[] castParams(final ObjectNode params,
-			final List<AnnotatedParam> annotatedParams,
-			final RequestParams requestParams) {
-		return castParams(null, params, annotatedParams, requestParams);
-	}
-	
-	/**
-	 * Cast a JSONArray or JSONObject params to the desired paramTypes.
+	 * Copy JSON trees that outlive the request, e.g. cached results.
 	 * 
-	 * @param params
-	 *            the params
-	 * @param annotatedParams
-	 *            the annotated params
-	 * @param requestParams
-	 *            the request params
-	 * @return the object[]
+	 * @param value
+	 *            the value
+	 * @return the value, or a deep copy if it is a JSON container node
 	 */
-	private static Object[] castParams(final Object realDest,
-			final ObjectNode params,
-			final List<AnnotatedParam> annotatedParams,
-			final RequestParams requestParams) {
-		
-		switch (annotatedParams.size()) {
-			case 0:
-				if (realDest != null) {
-					return new Object[] { realDest };
-				} else {
-					return new Object[0];
-				}
-				/* -- Unreachable, explicit no break --*/
-			case 1:
-				if (annotatedParams.get(0).getType().equals(ObjectNode.class)
-						&& annotatedParams.get(0).getAnnotations().size() == 0) {
-					// the method expects one parameter of type JSONObject
-					// feed the params object itself to it.
-					if (realDest != null) {
-						return new Object[] { realDest, params };
-					} else {
-						return new Object[] { params };
-					}
-				}
-				/* -- Explicit no break -- */
-			default:
-				final ObjectNode paramsObject = (ObjectNode) params;
-				int offset = 0;
-				if (realDest != null) {
-					offset = 1;
-				}
-				final Object[] objects = new Object[annotatedParams.size()
-						+ offset];
-				if (realDest != null) {
-					objects[0] = realDest;
-				}
-				for (int i = 0; i < annotatedParams.size(); i++) {
-					final AnnotatedParam p = annotatedParams.get(i);
-					
-					final Annotation a = getRequestAnnotation(p, requestParams);
-					if (a != null) {
-						// this is a systems parameter
-						objects[i + offset] = requestParams.get(a);
-					} else {
-						final String name = getName(p);
-						if (name != null) {
-							// this is a named parameter
-							if (paramsObject.has(name)) {
-								objects[i + offset] = TypeUtil.inject(
-										paramsObject.get(name),
-										p.getGenericType());
-							} else {
-								if (isRequired(p)) {
-									throw new ClassCastException(
-											"Required parameter '" + name
-													+ "' missing.");
-								} else if (p.getType().isPrimitive()) {
-									// TODO: should this test be moved to
-									// isAvailable()?
-									throw new ClassCastException("Parameter '"
-											+ name
-											+ "' cannot be both optional and "
-											+ "a primitive type ("
-											+ p.getType().getSimpleName() + ")");
-								} else {
-									objects[i + offset] = null;
-								}
-							}
-						} else {
-							// this is a problem
-							throw new ClassCastException("Name of parameter "
-									+ i + " not defined");
-						}
-					}
-				}
-				return objects;
+	static Object copyTree(final Object value) {
+		if (value instanceof JsonNode && ((JsonNode) value).isContainerNode()) {
+			return ((JsonNode) value).deepCopy();
 		}
+		return value;
 	}
 	
 	/**
@@ -572,12 +937,7 @@ final class JSONRPC {
 						+ " in method '" + method.getName() + "' is null.");
 			}
 		}
-		JsonNode id = null;
-		try {
-			id = JOM.getInstance().valueToTree(new UUID().toString());
-		} catch (final Exception e) {
-			LOG.log(Level.SEVERE, "Failed to generate UUID for request", e);
-		}
+		final JsonNode id = LongNode.valueOf(IdGenerator.nextLong());
 		return new JSONRequest(id, method.getName(), params);
 	}
 	
@@ -596,7 +956,7 @@ final class JSONRPC {
 	 *            the auth
 	 * @return available
 	 */
-	private static boolean isAvailable(final AnnotatedMethod method,
+	static boolean isAvailable(final AnnotatedMethod method,
 			final Object destination, final RequestParams requestParams,
 			final Authorizor auth) {
 		
@@ -4,207 +4,204 @@
  */
 package com.almende.eve.transform.rpc;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.almende.eve.transform.rpc.annotation.Namespace;
 import com.almende.util.AnnotationUtil;
 import com.almende.util.AnnotationUtil.AnnotatedClass;
 import com.almende.util.AnnotationUtil.AnnotatedMethod;
-import com.almende.util.jackson.JOM;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.almende.util.MethodInvoker;
 
 /**
- * The Class NamespaceUtil.
+ * Resolves (namespaced) JSON-RPC method paths, like "scheduler.schedule", to
+ * the object and method to call.
+ *
+ * Each class gets an immutable dispatch table, built once: its methods by name
+ * and the invokers of its {@link Namespace} getters. Resolved paths are kept
+ * per root class as routes: the chain of getters to call and the target
+ * method, so a call doesn't need any parsing or reflective lookups. The
+ * tables are ClassValues, so they don't keep unloaded agent classes alive.
  */
 final class NamespaceUtil {
-	
-	private static final Map<String, AnnotatedMethod[]>	CACHE		= new HashMap<String, AnnotatedMethod[]>();
-	private static final NamespaceUtil					INSTANCE	= new NamespaceUtil();
-	private static final Pattern						PATTERN		= Pattern
-																			.compile("\\.[^.]+$");
-	
+	private static final ClassValue<Dispatch>	DISPATCH	= new ClassValue<Dispatch>() {
+		@Override
+		protected Dispatch computeValue(final Class<?> clazz) {
+			return new Dispatch(clazz);
+		}
+	};
+	private static final MethodInvoker[]		NOGETTERS	= new MethodInvoker[0];
+
 	/**
 	 * Instantiates a new namespace util.
 	 */
-	private NamespaceUtil() {
-	};
-	
+	private NamespaceUtil() {};
+
 	/**
-	 * Gets the.
-	 * 
+	 * Gets the destination object and method of the given path.
+	 *
 	 * @param destination
 	 *            the destination
 	 * @param path
 	 *            the path
-	 * @return the call tuple
-	 * @throws IllegalAccessException
-	 *             the illegal access exception
-	 * @throws InvocationTargetException
-	 *             the invocation target exception
-	 * @throws NoSuchMethodException
-	 *             the no such method exception
+	 * @return the call tuple, without destination if a namespace getter
+	 *         returned null, and without method if the method doesn't exist.
+	 * @throws Exception
+	 *             an IllegalStateException if the path contains an unknown
+	 *             namespace, or the exception thrown by a namespace getter.
 	 */
 	public static CallTuple get(final Object destination, final String path)
-			throws IllegalAccessException, InvocationTargetException,
-			NoSuchMethodException {
-		
-		return INSTANCE._get(destination, path);
-	}
-	
-	/**
-	 * Populate cache.
-	 * 
-	 * @param destination
-	 *            the destination
-	 * @param steps
-	 *            the steps
-	 * @param methods
-	 *            the methods
-	 * @throws IllegalAccessException
-	 *             the illegal access exception
-	 * @throws InvocationTargetException
-	 *             the invocation target exception
-	 */
-	private void populateCache(final Object destination, final String steps,
-			final AnnotatedMethod[] methods) throws IllegalAccessException,
-			InvocationTargetException {
-		final AnnotatedClass clazz = AnnotationUtil.get(destination.getClass());
-		for (final AnnotatedMethod method : clazz
-				.getAnnotatedMethods(Namespace.class)) {
-			final String path = steps + "."
-					+ method.getAnnotation(Namespace.class).value();
-			methods[methods.length - 1] = method;
-			CACHE.put(path, Arrays.copyOf(methods, methods.length));
-			
-			final Object newDest = method.getActualMethod().invoke(destination,
-					(Object[]) null);
-			// recurse:
-			if (newDest != null) {
-				populateCache(newDest, path,
-						Arrays.copyOf(methods, methods.length + 1));
+			throws Exception {
+		final Dispatch dispatch = dispatch(destination.getClass());
+		final Route route = dispatch.routes.get(path);
+		if (route == null) {
+			return dispatch.resolve(destination, path);
+		}
+		Object newDestination = destination;
+		for (final MethodInvoker getter : route.getters) {
+			newDestination = getter.invoke(newDestination, null);
+			if (newDestination == null) {
+				return new CallTuple(null, null);
 			}
 		}
+		AnnotatedMethod method = route.method;
+		if (newDestination.getClass() != route.targetClass) {
+			// The namespace getter returned another type this time.
+			method = dispatch(newDestination.getClass()).methods
+					.get(route.name);
+		}
+		return new CallTuple(newDestination, method);
+	}
+
+	private static Dispatch dispatch(final Class<?> clazz) {
+		return DISPATCH.get(clazz);
 	}
-	
+
 	/**
-	 * _get.
-	 * 
-	 * @param destination
-	 *            the destination
-	 * @param path
-	 *            the path
-	 * @return the call tuple
-	 * @throws IllegalAccessException
-	 *             the illegal access exception
-	 * @throws InvocationTargetException
-	 *             the invocation target exception
-	 * @throws NoSuchMethodException
-	 *             the no such method exception
+	 * The dispatch table of a single class.
 	 */
-	private CallTuple _get(final Object destination, final String path)
-			throws IllegalAccessException, InvocationTargetException,
-			NoSuchMethodException {
-		final CallTuple result = new CallTuple();
-		String reducedPath = "";
-		String reducedMethod = path;
-		if (path.indexOf('.') >= 0) {
-			reducedPath = destination.getClass().getName() + "." + path;
-			final Matcher matcher = PATTERN.matcher(reducedPath);
-			reducedPath = matcher.replaceFirst("");
-			reducedMethod = matcher.group().substring(1);
-		}
-		if (!CACHE.containsKey(reducedPath)) {
-			final AnnotatedMethod[] methods = new AnnotatedMethod[1];
-			final String newSteps = destination.getClass().getName();
-			CACHE.put("", new AnnotatedMethod[0]);
-			populateCache(destination, newSteps, methods);
-		}
-		if (!CACHE.containsKey(reducedPath)) {
-			try {
-				throw new IllegalStateException("Non resolveable path given:'"
-						+ path + "' \n checked:"
-						+ JOM.getInstance().writeValueAsString(CACHE));
-			} catch (final JsonProcessingException e) {
-				throw new IllegalStateException("Non resolveable path given:'"
-						+ path + "' \n checked:" + CACHE);
+	private static final class Dispatch {
+		private final Map<String, AnnotatedMethod>		methods		= new HashMap<String, AnnotatedMethod>();
+		private final Map<String, MethodInvoker>		namespaces	= new HashMap<String, MethodInvoker>();
+		private final ConcurrentMap<String, Route>		routes		= new ConcurrentHashMap<String, Route>();
+
+		Dispatch(final Class<?> clazz) {
+			final AnnotatedClass annotatedClass = AnnotationUtil.get(clazz);
+			for (final AnnotatedMethod method : annotatedClass.getMethods()) {
+				// The first one wins, for overloaded methods.
+				if (!methods.containsKey(method.getName())) {
+					methods.put(method.getName(), method);
+				}
 			}
-		}
-		final AnnotatedMethod[] methodPath = CACHE.get(reducedPath);
-		Object newDestination = destination;
-		for (final AnnotatedMethod method : methodPath) {
-			if (method != null) {
-				newDestination = method.getActualMethod().invoke(destination,
-						(Object[]) null);
+			for (final AnnotatedMethod method : annotatedClass
+					.getAnnotatedMethods(Namespace.class)) {
+				namespaces.put(method.getAnnotation(Namespace.class).value(),
+						method.getInvoker());
 			}
 		}
-		if (newDestination == null) {
-			// Oops, namespace getter returned null pointer!
-			return result;
+
+		/**
+		 * Resolve the path, starting at the given instance of this class.
+		 * Routes to existing methods are kept.
+		 */
+		CallTuple resolve(final Object root, final String path)
+				throws Exception {
+			final List<MethodInvoker> getters = new ArrayList<MethodInvoker>(2);
+			Dispatch current = this;
+			Object dest = root;
+			int start = 0;
+			int dot;
+			while ((dot = path.indexOf('.', start)) >= 0) {
+				final MethodInvoker getter = current.namespaces.get(path
+						.substring(start, dot));
+				if (getter == null) {
+					throw new IllegalStateException(
+							"Non resolveable path given:'" + path + "'");
+				}
+				getters.add(getter);
+				dest = getter.invoke(dest, null);
+				if (dest == null) {
+					// Oops, namespace getter returned null pointer!
+					return new CallTuple(null, null);
+				}
+				current = dispatch(dest.getClass());
+				start = dot + 1;
+			}
+			final String name = path.substring(start);
+			final Route route = new Route(getters.isEmpty() ? NOGETTERS
+					: getters.toArray(new MethodInvoker[getters.size()]),
+					dest.getClass(), name, current.methods.get(name));
+			if (route.method != null) {
+				// Unknown methods are not kept, to keep the table bounded.
+				routes.putIfAbsent(path, route);
+			}
+			return new CallTuple(dest, route.method);
 		}
-		result.setDestination(newDestination);
-		final AnnotatedClass newClazz = AnnotationUtil.get(newDestination
-				.getClass());
-		final List<AnnotatedMethod> methods = newClazz
-				.getMethods(reducedMethod);
-		if (!methods.isEmpty()) {
-			result.setMethod(methods.get(0));
+	}
+
+	/**
+	 * A resolved path: the namespace getters to call, in order, and the method
+	 * on the resulting object.
+	 */
+	private static final class Route {
+		private final MethodInvoker[]	getters;
+		private final Class<?>			targetClass;
+		private final String			name;
+		private final AnnotatedMethod	method;
+
+		Route(final MethodInvoker[] getters, final Class<?> targetClass,
+				final String name, final AnnotatedMethod method) {
+			this.getters = getters;
+			this.targetClass = targetClass;
+			this.name = name;
+			this.method = method;
 		}
-		return result;
 	}
-	
+
 	/**
 	 * The Class CallTuple.
 	 */
-	public class CallTuple {
-		
+	public static class CallTuple {
+
 		/** The destination. */
-		private Object			destination;
-		
+		private final Object			destination;
+
 		/** The method name. */
-		private AnnotatedMethod	method;
-		
+		private final AnnotatedMethod	method;
+
+		/**
+		 * Instantiates a new call tuple.
+		 *
+		 * @param destination
+		 *            the destination
+		 * @param method
+		 *            the method
+		 */
+		public CallTuple(final Object destination, final AnnotatedMethod method) {
+			this.destination = destination;
+			this.method = method;
+		}
+
 		/**
 		 * Gets the destination.
-		 * 
+		 *
 		 * @return the destination
 		 */
 		public Object getDestination() {
 			return destination;
 		}
-		
-		/**
-		 * Sets the destination.
-		 * 
-		 * @param destination
-		 *            the new destination
-		 */
-		public void setDestination(final Object destination) {
-			this.destination = destination;
-		}
-		
+
 		/**
 		 * Gets the method name.
-		 * 
+		 *
 		 * @return the method name
 		 */
 		public AnnotatedMethod getMethod() {
 			return method;
 		}
-		
-		/**
-		 * Sets the method name.
-		 * 
-		 * @param method
-		 *            The method
-		 */
-		public void setMethod(final AnnotatedMethod method) {
-			this.method = method;
-		}
 	}
 }
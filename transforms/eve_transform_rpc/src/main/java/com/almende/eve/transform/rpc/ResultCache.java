@@ -0,0 +1,247 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transform.rpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.almende.eve.transform.rpc.annotation.Cacheable;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * The result cache of a single agent (or rather: of its {@link RpcTransform}).
+ * Results of {@link Cacheable} methods are kept per method, keyed by their
+ * canonicalized params, until they expire or are invalidated. The method
+ * descriptions of the agent are kept here as well.
+ *
+ * Agents can invalidate entries when the data behind a method changes:
+ *
+ * <pre>
+ * getRpc().getResultCache().invalidate(&quot;getItems&quot;);
+ * </pre>
+ */
+public class ResultCache {
+	/** The method name under which the method descriptions are kept. */
+	static final String							DESCRIBE	= "#describe";
+	private final ConcurrentMap<String, Region>	regions		= new ConcurrentHashMap<String, Region>();
+
+	/**
+	 * Gets a cached result.
+	 *
+	 * @param method
+	 *            the method
+	 * @param key
+	 *            the key, see {@link #key(ObjectNode, List)}
+	 * @return the result, or null if not cached (anymore).
+	 */
+	Object get(final String method, final String key) {
+		final Region region = regions.get(method);
+		if (region == null) {
+			return null;
+		}
+		return JSONRPC.copyTree(region.get(key));
+	}
+
+	/**
+	 * Put a result in the cache.
+	 *
+	 * @param method
+	 *            the method
+	 * @param policy
+	 *            the caching policy of the method
+	 * @param key
+	 *            the key, see {@link #key(ObjectNode, List)}
+	 * @param result
+	 *            the result
+	 */
+	void put(final String method, final Cacheable policy, final String key,
+			final Object result) {
+		put(method, policy.ttl(), policy.maxSize(), key, result);
+	}
+
+	/**
+	 * Put a result in the cache.
+	 *
+	 * @param method
+	 *            the method
+	 * @param ttl
+	 *            the time to live, in milliseconds
+	 * @param maxSize
+	 *            the max number of results of this method
+	 * @param key
+	 *            the key, see {@link #key(ObjectNode, List)}
+	 * @param result
+	 *            the result
+	 */
+	void put(final String method, final long ttl, final int maxSize,
+			final String key, final Object result) {
+		Region region = regions.get(method);
+		if (region == null) {
+			region = new Region(ttl, maxSize);
+			final Region old = regions.putIfAbsent(method, region);
+			if (old != null) {
+				region = old;
+			}
+		}
+		region.put(key, JSONRPC.copyTree(result));
+	}
+
+	/**
+	 * Invalidate all cached results of the given method.
+	 *
+	 * @param method
+	 *            the method, including its namespace, e.g. "sub.getItems"
+	 */
+	public void invalidate(final String method) {
+		regions.remove(method);
+	}
+
+	/**
+	 * Invalidate the cached result of the given method and params.
+	 *
+	 * @param method
+	 *            the method, including its namespace, e.g. "sub.getItems"
+	 * @param params
+	 *            the params
+	 */
+	public void invalidate(final String method, final ObjectNode params) {
+		final Region region = regions.get(method);
+		if (region != null) {
+			region.removePrefix(key(params, null));
+		}
+	}
+
+	/**
+	 * Invalidate all cached results, and the method descriptions.
+	 */
+	public void invalidateAll() {
+		regions.clear();
+	}
+
+	/**
+	 * Create the key of a call: its params, canonicalized so equal params in
+	 * another field order give the same key, followed by the values of the
+	 * system parameters (like the sender) the method receives.
+	 *
+	 * @param params
+	 *            the params
+	 * @param systemValues
+	 *            the system values, may be null.
+	 * @return the key
+	 */
+	static String key(final ObjectNode params, final List<Object> systemValues) {
+		final StringBuilder sb = new StringBuilder();
+		if (params != null) {
+			canonical(params, sb);
+		} else {
+			sb.append("{}");
+		}
+		if (systemValues != null) {
+			for (final Object value : systemValues) {
+				sb.append('|').append(value);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void canonical(final JsonNode node, final StringBuilder sb) {
+		if (node.isObject()) {
+			final List<String> names = new ArrayList<String>(node.size());
+			final Iterator<String> iter = node.fieldNames();
+			while (iter.hasNext()) {
+				names.add(iter.next());
+			}
+			Collections.sort(names);
+			sb.append('{');
+			for (int i = 0; i < names.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(TextNode.valueOf(names.get(i)).toString()).append(':');
+				canonical(node.get(names.get(i)), sb);
+			}
+			sb.append('}');
+		} else if (node.isArray()) {
+			sb.append('[');
+			for (int i = 0; i < node.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				canonical(node.get(i), sb);
+			}
+			sb.append(']');
+		} else {
+			sb.append(node.toString());
+		}
+	}
+
+	/**
+	 * The cached results of a single method, least recently used first.
+	 */
+	private static final class Region {
+		private final long					ttl;
+		private final Map<String, Entry>	entries;
+
+		Region(final long ttl, final int maxSize) {
+			this.ttl = ttl;
+			entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				private static final long	serialVersionUID	= 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Entry> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized Object get(final String key) {
+			final Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expires < System.currentTimeMillis()) {
+				entries.remove(key);
+				return null;
+			}
+			return entry.value;
+		}
+
+		synchronized void put(final String key, final Object value) {
+			entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+		}
+
+		synchronized void removePrefix(final String prefix) {
+			final Iterator<String> iter = entries.keySet().iterator();
+			while (iter.hasNext()) {
+				final String key = iter.next();
+				if (key.equals(prefix) || key.startsWith(prefix + "|")) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A cached result.
+	 */
+	private static final class Entry {
+		private final Object	value;
+		private final long		expires;
+
+		Entry(final Object value, final long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transform.rpc;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.almende.eve.transform.rpc.formats.JSONMessage;
+import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The kind and id of a JSON-RPC message, read without binding it: for JSON
+ * text and bytes only the top level fields are scanned, params and results are
+ * skipped. This allows queueing the raw message, so it can still be bound
+ * tree-free once it is invoked.
+ */
+public final class RpcHeader {
+	private static final Logger		LOG		= Logger.getLogger(RpcHeader.class
+													.getName());
+	private static final RpcHeader	INVALID	= new RpcHeader(Kind.INVALID, null);
+	private static final RpcHeader	BATCH	= new RpcHeader(Kind.BATCH, null);
+
+	/**
+	 * The kinds of messages.
+	 */
+	public static enum Kind {
+		/** A request, expecting a response. */
+		REQUEST,
+		/** A request without id, no response is sent. */
+		NOTIFICATION,
+		/** A response to an earlier request. */
+		RESPONSE,
+		/** A batch of requests. */
+		BATCH,
+		/** Anything else, left to {@link RpcTransform} to report. */
+		INVALID
+	}
+
+	private final Kind				kind;
+	private final JsonNode			id;
+
+	private RpcHeader(final Kind kind, final JsonNode id) {
+		this.kind = kind;
+		this.id = id;
+	}
+
+	/**
+	 * Gets the kind.
+	 *
+	 * @return the kind
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the id, null for notifications, batches and invalid messages.
+	 *
+	 * @return the id
+	 */
+	public JsonNode getId() {
+		return id;
+	}
+
+	/**
+	 * Read the header of a message: JSON text, bytes in any {@link JsonCodec}
+	 * format, an ObjectNode/ArrayNode or a JSONMessage.
+	 *
+	 * @param msg
+	 *            the msg
+	 * @return the header
+	 */
+	public static RpcHeader peek(final Object msg) {
+		if (msg instanceof JSONMessage) {
+			final JSONMessage message = (JSONMessage) msg;
+			if (!message.isRequest()) {
+				return new RpcHeader(Kind.RESPONSE, message.getId());
+			}
+			return of(true, false, message.getId());
+		}
+		if (msg instanceof ArrayNode) {
+			return BATCH;
+		}
+		if (msg instanceof ObjectNode) {
+			final ObjectNode json = (ObjectNode) msg;
+			return of(JSONRPC.isRequest(json), JSONRPC.isResponse(json),
+					json.get("id"));
+		}
+		if (!(msg instanceof String || msg instanceof byte[])) {
+			return INVALID;
+		}
+		JsonParser parser = null;
+		try {
+			if (msg instanceof byte[]) {
+				parser = JsonCodec.createParser((byte[]) msg);
+			} else {
+				parser = JOM.getInstance().getFactory()
+						.createParser((String) msg);
+			}
+			return read(parser);
+		} catch (final Exception e) {
+			LOG.log(Level.FINEST, "Couldn't read message header", e);
+			return INVALID;
+		} finally {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (final Exception e) {
+					LOG.log(Level.FINEST, "Couldn't close parser", e);
+				}
+			}
+		}
+	}
+
+	private static RpcHeader read(final JsonParser parser) throws Exception {
+		final JsonToken start = parser.nextToken();
+		if (start == JsonToken.START_ARRAY) {
+			return BATCH;
+		}
+		if (start != JsonToken.START_OBJECT) {
+			return INVALID;
+		}
+		boolean request = false;
+		boolean response = false;
+		JsonNode id = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("id".equals(field)) {
+				id = parser.readValueAsTree();
+			} else {
+				request |= "method".equals(field);
+				response |= "result".equals(field) || "error".equals(field);
+				parser.skipChildren();
+			}
+		}
+		return of(request, response, id);
+	}
+
+	private static RpcHeader of(final boolean request, final boolean response,
+			final JsonNode id) {
+		if (response) {
+			return new RpcHeader(Kind.RESPONSE, id);
+		}
+		if (!request) {
+			return INVALID;
+		}
+		if (id == null || id.isNull()) {
+			return new RpcHeader(Kind.NOTIFICATION, null);
+		}
+		return new RpcHeader(Kind.REQUEST, id);
+	}
+}
@@ -6,6 +6,7 @@ package com.almende.eve.transform.rpc;
 
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,8 +25,10 @@ import com.almende.util.TypeUtil;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.callback.AsyncCallbackQueue;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -38,6 +41,9 @@ public class RpcTransform implements Transform {
 	private static final JavaType					OBJECTNODETYPE		= JOM.getTypeFactory()
 																				.constructType(
 																						ObjectNode.class);
+	private static final JavaType					ARRAYNODETYPE		= JOM.getTypeFactory()
+																				.constructType(
+																						ArrayNode.class);
 	static {
 		EVEREQUESTPARAMS.put(Sender.class, null);
 	}
@@ -45,6 +51,9 @@ public class RpcTransform implements Transform {
 	private final AsyncCallbackQueue<JSONResponse>	callbacks			= new AsyncCallbackQueue<JSONResponse>();
 	private final Handler<Object>					destination;
 	private final ObjectNode						myParams;
+	private final boolean							batchInOrder;
+	private final ResultCache						resultCache			= new ResultCache();
+	private final long								describeTtl;
 	
 	/**
 	 * Instantiates a new rpc transform.
@@ -59,6 +68,8 @@ public class RpcTransform implements Transform {
 		myParams = params;
 		final RpcTransformConfig config = new RpcTransformConfig(params);
 		callbacks.setDefTimeout(config.getCallbackTimeout());
+		batchInOrder = config.isBatchInOrder();
+		describeTtl = config.getDescribeTtl();
 	}
 	
 	/**
@@ -80,9 +91,21 @@ public class RpcTransform implements Transform {
 		this.auth = auth;
 	}
 	
+	/**
+	 * Gets the result cache of this agent, through which cached results of
+	 * {@link com.almende.eve.transform.rpc.annotation.Cacheable} methods can be
+	 * invalidated.
+	 * 
+	 * @return the result cache
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+	
 	/**
 	 * Convert incoming message object to JSONMessage if possible. Returns null
-	 * if the message can't be interpreted as a JSONMessage.
+	 * if the message can't be interpreted as a JSONMessage. Messages can be
+	 * JSON text, an ObjectNode, or bytes in any {@link JsonCodec} format.
 	 * 
 	 * @param msg
 	 *            the msg
@@ -109,6 +132,11 @@ public class RpcTransform implements Transform {
 					}
 				} else if (msg instanceof ObjectNode) {
 					json = (ObjectNode) msg;
+				} else if (msg instanceof byte[]) {
+					final JsonNode node = JsonCodec.decode((byte[]) msg);
+					if (node.isObject()) {
+						json = (ObjectNode) node;
+					}
 				} else {
 					LOG.warning("Message unknown type:" + msg.getClass());
 				}
@@ -133,6 +161,58 @@ public class RpcTransform implements Transform {
 		return jsonMsg;
 	}
 	
+	/**
+	 * Convert incoming message object to a JSON-RPC batch array if possible.
+	 * Returns null if the message isn't a batch.
+	 * 
+	 * @param msg
+	 *            the msg
+	 * @return the batch array
+	 */
+	public static ArrayNode batchConvert(final Object msg) {
+		if (msg instanceof ArrayNode) {
+			return (ArrayNode) msg;
+		}
+		if (msg instanceof byte[]) {
+			final byte[] bytes = (byte[]) msg;
+			if (JsonCodec.detect(bytes).isBinary() || startsWith(bytes, '[')) {
+				try {
+					final JsonNode node = JsonCodec.decode(bytes);
+					if (node.isArray()) {
+						return (ArrayNode) node;
+					}
+				} catch (final Exception e) {
+					LOG.log(Level.WARNING,
+							"Message triggered exception in trying to convert it to a JSON-RPC batch.",
+							e);
+				}
+			}
+			return null;
+		}
+		if (msg instanceof String) {
+			final String message = (String) msg;
+			if (message.startsWith("[") || message.trim().startsWith("[")) {
+				try {
+					return JOM.getInstance().readValue(message, ARRAYNODETYPE);
+				} catch (final Exception e) {
+					LOG.log(Level.WARNING,
+							"Message triggered exception in trying to convert it to a JSON-RPC batch.",
+							e);
+				}
+			}
+		}
+		return null;
+	}
+	
+	private static boolean startsWith(final byte[] bytes, final char c) {
+		for (final byte b : bytes) {
+			if (!Character.isWhitespace(b)) {
+				return b == c;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Invoke this RPC msg.
 	 * 
@@ -140,13 +220,58 @@ public class RpcTransform implements Transform {
 	 *            the msg
 	 * @param senderUrl
 	 *            the sender url
-	 * @return the JSON response
+	 * @return the JSON response, or null if there is nothing to reply (e.g.
+	 *         for responses and notifications). Batches get an
+	 *         INVALID_REQUEST error, see {@link #invokeBatch(ArrayNode, URI)}.
 	 */
 	public JSONResponse invoke(final Object msg, final URI senderUrl) {
+		final JSONRPC.Pending<JSONResponse> pending = new JSONRPC.Pending<JSONResponse>();
+		invoke(msg, senderUrl, pending);
+		return pending.await();
+	}
+	
+	/**
+	 * Invoke this RPC msg. Methods returning a CompletionStage call the
+	 * callback once they complete, without keeping this thread waiting.
+	 * 
+	 * @param msg
+	 *            the msg
+	 * @param senderUrl
+	 *            the sender url
+	 * @param callback
+	 *            receives the JSON response, or null if there is nothing to
+	 *            reply (e.g. for responses and notifications). Batches can't
+	 *            be answered with a single response, they get an
+	 *            INVALID_REQUEST error without being executed: use
+	 *            {@link #invokeBatch(ArrayNode, URI, boolean, AsyncCallback)} for these.
+	 */
+	public void invoke(final Object msg, final URI senderUrl,
+			final AsyncCallback<JSONResponse> callback) {
+		if (batchConvert(msg) != null) {
+			LOG.warning("Batch received through invoke(), use invokeBatch():"
+					+ msg);
+			callback.onSuccess(new JSONResponse(new JSONRPCException(
+					JSONRPCException.CODE.INVALID_REQUEST,
+					"Batch requests aren't supported by this receiver")));
+			return;
+		}
+		if (msg instanceof String || msg instanceof byte[]) {
+			// Bind the params straight from the text, if possible.
+			final RequestParams params = new RequestParams();
+			params.put(Sender.class, senderUrl.toASCIIString());
+			final StreamingRequest request = StreamingRequest.parse(
+					destination.get(), msg, params, auth);
+			if (request != null) {
+				JSONRPC.invoke(request, params, resultCache,
+						reply(request.isNotification(), callback));
+				return;
+			}
+		}
 		final JSONMessage jsonMsg = jsonConvert(msg);
 		if (jsonMsg == null) {
 			LOG.log(Level.WARNING, "Received non-JSONRPC message:'" + msg + "'");
-			return null;
+			callback.onSuccess(null);
+			return;
 		}
 		final JsonNode id = jsonMsg.getId();
 		try {
@@ -154,17 +279,20 @@ public class RpcTransform implements Transform {
 				final JSONRequest request = (JSONRequest) jsonMsg;
 				final RequestParams params = new RequestParams();
 				params.put(Sender.class, senderUrl.toASCIIString());
-				return JSONRPC.invoke(destination.get(), request, params, auth);
+				JSONRPC.invoke(destination.get(), request, params, auth,
+						resultCache,
+						reply(request.isNotification(), callback));
+				return;
 			} else if (jsonMsg.isResponse() && callbacks != null && id != null
 					&& !id.isNull()) {
-				final AsyncCallback<JSONResponse> callback = callbacks.pull(id);
-				if (callback != null) {
+				final AsyncCallback<JSONResponse> waiting = callbacks.pull(id);
+				if (waiting != null) {
 					final JSONResponse response = (JSONResponse) jsonMsg;
 					final JSONRPCException error = response.getError();
 					if (error != null) {
-						callback.onFailure(error);
+						waiting.onFailure(error);
 					} else {
-						callback.onSuccess(response);
+						waiting.onSuccess(response);
 					}
 				}
 			}
@@ -174,21 +302,131 @@ public class RpcTransform implements Transform {
 			final JSONRPCException jsonError = new JSONRPCException(
 					JSONRPCException.CODE.INTERNAL_ERROR, e.getMessage(), e);
 			LOG.log(Level.WARNING, "Exception in receiving message", jsonError);
-			
+			if (id == null || id.isNull()) {
+				callback.onSuccess(null);
+				return;
+			}
 			final JSONResponse response = new JSONResponse(jsonError);
 			response.setId(id);
-			return response;
+			callback.onSuccess(response);
+			return;
 		}
-		return null;
+		callback.onSuccess(null);
 	}
 	
 	/**
-	 * Gets the methods.
+	 * Drops the response to notifications.
+	 */
+	private static AsyncCallback<JSONResponse> reply(
+			final boolean notification,
+			final AsyncCallback<JSONResponse> callback) {
+		if (!notification) {
+			return callback;
+		}
+		return new AsyncCallback<JSONResponse>() {
+			@Override
+			public void onSuccess(final JSONResponse response) {
+				callback.onSuccess(null);
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				callback.onSuccess(null);
+			}
+		};
+	}
+	
+	/**
+	 * Invoke a JSON-RPC batch. Responses in the batch are handed to their
+	 * callbacks, the requests are executed, in parallel unless configured
+	 * otherwise.
+	 * 
+	 * @param batch
+	 *            the batch
+	 * @param senderUrl
+	 *            the sender url
+	 * @return the batch of responses, or null if there is nothing to return.
+	 */
+	public ArrayNode invokeBatch(final ArrayNode batch, final URI senderUrl) {
+		return invokeBatch(batch, senderUrl, batchInOrder);
+	}
+	
+	/**
+	 * Invoke a JSON-RPC batch.
+	 * 
+	 * @param batch
+	 *            the batch
+	 * @param senderUrl
+	 *            the sender url
+	 * @param inOrder
+	 *            run the requests one after the other, in batch order
+	 * @return the batch of responses, or null if there is nothing to return.
+	 * @see #invokeBatch(ArrayNode, URI)
+	 */
+	public ArrayNode invokeBatch(final ArrayNode batch, final URI senderUrl,
+			final boolean inOrder) {
+		final JSONRPC.Pending<ArrayNode> pending = new JSONRPC.Pending<ArrayNode>();
+		invokeBatch(batch, senderUrl, inOrder, pending);
+		return pending.await();
+	}
+	
+	/**
+	 * Invoke a JSON-RPC batch, the callback is called once all requests are
+	 * done.
+	 * 
+	 * @param batch
+	 *            the batch
+	 * @param senderUrl
+	 *            the sender url
+	 * @param inOrder
+	 *            start the requests one after the other, in batch order
+	 * @param callback
+	 *            receives the batch of responses, or null if there is nothing
+	 *            to return.
+	 * @see #invokeBatch(ArrayNode, URI)
+	 */
+	public void invokeBatch(final ArrayNode batch, final URI senderUrl,
+			final boolean inOrder, final AsyncCallback<ArrayNode> callback) {
+		final ArrayNode requests = JOM.createArrayNode();
+		for (final JsonNode entry : batch) {
+			if (entry.isObject() && JSONRPC.isResponse((ObjectNode) entry)) {
+				// demultiplex to the separate callbacks.
+				invoke(entry, senderUrl);
+			} else {
+				requests.add(entry);
+			}
+		}
+		if (requests.size() == 0 && batch.size() > 0) {
+			callback.onSuccess(null);
+			return;
+		}
+		final RequestParams params = new RequestParams();
+		params.put(Sender.class, senderUrl.toASCIIString());
+		JSONRPC.invoke(destination.get(), requests, params, auth, inOrder,
+				resultCache, callback);
+	}
+	
+	/**
+	 * Gets the methods. The descriptions are kept in the result cache for the
+	 * configured "describeTtl".
 	 * 
 	 * @return the methods
 	 */
 	public List<Object> getMethods() {
-		return JSONRPC.describe(getHandle().get(), EVEREQUESTPARAMS);
+		@SuppressWarnings("unchecked")
+		List<Object> methods = (List<Object>) resultCache.get(
+				ResultCache.DESCRIBE, "");
+		if (methods == null) {
+			methods = JSONRPC.describe(getHandle().get(), EVEREQUESTPARAMS);
+			if (methods == null) {
+				return null;
+			}
+			if (describeTtl > 0) {
+				resultCache.put(ResultCache.DESCRIBE, describeTtl, 1, "",
+						methods);
+			}
+		}
+		return new ArrayList<Object>(methods);
 	}
 
 	/**
@@ -217,11 +455,14 @@ public class RpcTransform implements Transform {
 	 * @param params
 	 *            the params
 	 * @param callback
-	 *            the callback
+	 *            the callback, or null to build a notification
 	 * @return the JSON request
 	 */
 	public <T> JSONRequest buildMsg(final String method,
 			final ObjectNode params, final AsyncCallback<T> callback) {
+		if (callback == null) {
+			return JSONRequest.createNotification(method, params);
+		}
 		final JSONRequest request = new JSONRequest(method, params);
 		addCallback(request, callback);
 		return request;
@@ -237,12 +478,16 @@ public class RpcTransform implements Transform {
 	 * @param params
 	 *            the params
 	 * @param callback
-	 *            the callback
+	 *            the callback, or null to build a notification
 	 * @return the JSON request
 	 */
 	public <T> JSONRequest buildMsg(final Method method, final Object[] params,
 			final AsyncCallback<T> callback) {
 		final JSONRequest request = JSONRPC.createRequest(method, params);
+		if (callback == null) {
+			return JSONRequest.createNotification(request.getMethod(),
+					request.getParams());
+		}
 		addCallback(request, callback);
 		return request;
 	}
@@ -267,7 +512,8 @@ public class RpcTransform implements Transform {
 				if (type != null
 						&& !type.getJavaType().getRawClass().equals(Void.class)) {
 					try {
-						final T res = type.inject(response.getResult());
+						@SuppressWarnings("unchecked")
+						final T res = (T) type.inject(response.getResult());
 						callback.onSuccess(res);
 					} catch (final ClassCastException cce) {
 						callback.onFailure(new JSONRPCException(
@@ -287,8 +533,8 @@ public class RpcTransform implements Transform {
 		};
 		
 		if (callbacks != null) {
-			callbacks.push(((JSONMessage) request).getId(), request.toString(),
-					responseCallback);
+			callbacks.push(((JSONMessage) request).getId(),
+					"method:" + request.getMethod(), responseCallback);
 		}
 	}
 	
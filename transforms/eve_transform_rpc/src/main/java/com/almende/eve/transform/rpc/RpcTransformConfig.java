@@ -54,4 +54,50 @@ public class RpcTransformConfig extends Config {
 		}
 		return 30;
 	}
+	
+	/**
+	 * Sets whether the entries of incoming JSON-RPC batches are run one after
+	 * the other, in batch order. (default: false, run in parallel)
+	 * 
+	 * @param inOrder
+	 *            the new batch in order
+	 */
+	public void setBatchInOrder(final boolean inOrder) {
+		this.put("batchInOrder", inOrder);
+	}
+	
+	/**
+	 * Checks if batches are run in order.
+	 * 
+	 * @return true, if batches are run in order
+	 */
+	public boolean isBatchInOrder() {
+		if (this.has("batchInOrder")) {
+			return this.get("batchInOrder").asBoolean();
+		}
+		return false;
+	}
+	
+	/**
+	 * Sets how long the method descriptions of the agent are cached. (in
+	 * milliseconds, default: 60000, 0 disables the cache)
+	 * 
+	 * @param ttl
+	 *            the new describe ttl
+	 */
+	public void setDescribeTtl(final long ttl) {
+		this.put("describeTtl", ttl);
+	}
+	
+	/**
+	 * Gets how long the method descriptions of the agent are cached.
+	 * 
+	 * @return the describe ttl, in milliseconds
+	 */
+	public long getDescribeTtl() {
+		if (this.has("describeTtl")) {
+			return this.get("describeTtl").asLong();
+		}
+		return 60000;
+	}
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transform.rpc;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.almende.eve.auth.Authorizor;
+import com.almende.eve.transform.rpc.NamespaceUtil.CallTuple;
+import com.almende.eve.transform.rpc.formats.RequestParams;
+import com.almende.util.AnnotationUtil.AnnotatedMethod;
+import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A JSON-RPC request read straight from its JSON text: the id and method are
+ * read first, after which each param is deserialized directly into the type
+ * of the matching method argument, without building an intermediate tree.
+ *
+ * Only the common, valid case is handled here: if the text is not a request,
+ * has its params before its method, or anything else goes wrong, parsing
+ * gives up and the caller should fall back to the tree based path, which
+ * takes care of the error reporting.
+ */
+final class StreamingRequest {
+	private static final Logger	LOG	= Logger.getLogger(StreamingRequest.class
+											.getName());
+	private JsonNode			id;
+	private String				method;
+	private Object				destination;
+	private AnnotatedMethod		annotatedMethod;
+	private BindingPlan			plan;
+	private Object[]			values;
+	private boolean[]			present;
+	private ObjectNode			tree;
+
+	private StreamingRequest() {}
+
+	/**
+	 * Parse the request.
+	 *
+	 * @param destination
+	 *            the destination of the request, used to resolve the method
+	 * @param json
+	 *            the JSON text, or bytes in any {@link JsonCodec} format
+	 * @param requestParams
+	 *            the request params
+	 * @param auth
+	 *            the auth
+	 * @return the request, or null if the tree based path should be used.
+	 */
+	static StreamingRequest parse(final Object destination, final Object json,
+			final RequestParams requestParams, final Authorizor auth) {
+		final StreamingRequest request = new StreamingRequest();
+		JsonParser parser = null;
+		try {
+			if (json instanceof byte[]) {
+				parser = JsonCodec.createParser((byte[]) json);
+			} else {
+				parser = JOM.getInstance().getFactory()
+						.createParser((String) json);
+			}
+			if (!request.read(parser, destination, requestParams, auth)) {
+				return null;
+			}
+		} catch (final Exception e) {
+			LOG.log(Level.FINEST, "Streaming parse failed, using tree.", e);
+			return null;
+		} finally {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (final Exception e) {
+					LOG.log(Level.FINEST, "Couldn't close parser", e);
+				}
+			}
+		}
+		return request;
+	}
+
+	private boolean read(final JsonParser parser, final Object dest,
+			final RequestParams requestParams, final Authorizor auth)
+			throws Exception {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			return false;
+		}
+		boolean hasParams = false;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			final JsonToken token = parser.nextToken();
+			if ("id".equals(field)) {
+				id = parser.readValueAsTree();
+			} else if ("method".equals(field)) {
+				if (token != JsonToken.VALUE_STRING || method != null) {
+					return false;
+				}
+				method = parser.getText();
+			} else if ("jsonrpc".equals(field)) {
+				if (token == JsonToken.VALUE_STRING
+						&& !"2.0".equals(parser.getText())) {
+					return false;
+				}
+				parser.skipChildren();
+			} else if ("params".equals(field)) {
+				if (token != JsonToken.START_OBJECT || method == null
+						|| hasParams || !resolve(dest, requestParams, auth)) {
+					return false;
+				}
+				hasParams = true;
+				readParams(parser);
+			} else if ("result".equals(field) || "error".equals(field)) {
+				// A response
+				return false;
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (method == null || parser.nextToken() != null) {
+			return false;
+		}
+		if (!hasParams) {
+			if (!resolve(dest, requestParams, auth)) {
+				return false;
+			}
+			tree = JOM.createObjectNode();
+		}
+		return true;
+	}
+
+	private boolean resolve(final Object dest,
+			final RequestParams requestParams, final Authorizor auth)
+			throws Exception {
+		final CallTuple tuple = NamespaceUtil.get(dest, method);
+		destination = tuple.getDestination();
+		annotatedMethod = tuple.getMethod();
+		if (!JSONRPC.isAvailable(annotatedMethod, destination, requestParams,
+				auth)) {
+			return false;
+		}
+		plan = BindingPlan.get(annotatedMethod);
+		values = new Object[plan.size()];
+		present = new boolean[plan.size()];
+		return true;
+	}
+
+	private void readParams(final JsonParser parser) throws Exception {
+		if (plan.isWholeParams() || plan.getCacheable() != null) {
+			// Cacheable methods need the params tree for their cache key.
+			tree = parser.readValueAsTree();
+			return;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final int index = plan.indexOf(parser.getCurrentName());
+			parser.nextToken();
+			if (index < 0) {
+				parser.skipChildren();
+			} else {
+				values[index] = plan.read(index, parser);
+				present[index] = true;
+			}
+		}
+	}
+
+	/**
+	 * Gets the id.
+	 *
+	 * @return the id
+	 */
+	JsonNode getId() {
+		return id;
+	}
+
+	/**
+	 * Checks if this is a notification, i.e. a request without id.
+	 *
+	 * @return true, if is notification
+	 */
+	boolean isNotification() {
+		return id == null || id.isNull();
+	}
+	
+	/**
+	 * Gets the method name.
+	 *
+	 * @return the method
+	 */
+	String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Gets the (resolved) destination of the method.
+	 *
+	 * @return the destination
+	 */
+	Object getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Gets the annotated method.
+	 *
+	 * @return the annotated method
+	 */
+	AnnotatedMethod getAnnotatedMethod() {
+		return annotatedMethod;
+	}
+
+	/**
+	 * Gets the params as tree, which is only available if they have been read
+	 * that way: for cacheable methods, methods taking the params object itself,
+	 * and requests without params.
+	 *
+	 * @return the params, or null
+	 */
+	ObjectNode getParams() {
+		return tree;
+	}
+	
+	/**
+	 * Gets the binding plan of the method.
+	 *
+	 * @return the plan
+	 */
+	BindingPlan getPlan() {
+		return plan;
+	}
+	
+	/**
+	 * Bind the params to an argument array.
+	 *
+	 * @param realDest
+	 *            the destination, put in front of the arguments if not null.
+	 * @param requestParams
+	 *            the request params
+	 * @return the arguments
+	 */
+	Object[] bind(final Object realDest, final RequestParams requestParams) {
+		if (tree != null) {
+			return plan.bind(realDest, tree, requestParams);
+		}
+		return plan.bind(realDest, values, present, requestParams);
+	}
+
+	@Override
+	public String toString() {
+		return "{\"id\":" + id + ",\"method\":\"" + method + "\"}";
+	}
+}
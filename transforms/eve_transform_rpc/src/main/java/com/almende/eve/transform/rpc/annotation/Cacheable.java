@@ -0,0 +1,38 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transform.rpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a JSON-RPC method as cacheable: its result only depends on its
+ * params, so repeated calls with equal params are answered from the agent's
+ * result cache, without invoking the method. Entries can be invalidated
+ * through {@link com.almende.eve.transform.rpc.ResultCache}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD })
+@Documented
+public @interface Cacheable {
+
+	/**
+	 * Time to live of a cached result, in milliseconds.
+	 *
+	 * @return the ttl
+	 */
+	long ttl() default 60000;
+
+	/**
+	 * Maximum number of cached results of this method; the least recently
+	 * used results are evicted first.
+	 *
+	 * @return the max size
+	 */
+	int maxSize() default 100;
+}
@@ -4,14 +4,24 @@
  */
 package com.almende.eve.transform.rpc.formats;
 
+import java.io.IOException;
 import java.io.Serializable;
 
+import com.almende.util.jackson.LocalCopyable;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
- * The Class JSONMessage.
+ * The Class JSONMessage. Jackson serializes messages as their JSON-RPC
+ * object, in any data format (e.g. for the binary codecs). In-process, the
+ * message object itself is delivered, see {@link #localCopy()}.
  */
-public abstract class JSONMessage implements Serializable {
+public abstract class JSONMessage implements Serializable, JsonSerializable,
+		LocalCopyable {
 	private static final long		serialVersionUID	= -3324436908445901707L;
 	protected static final String	JSONRPC				= "jsonrpc";
 	protected static final String	ID					= "id";
@@ -33,6 +43,36 @@ public abstract class JSONMessage implements Serializable {
 	 */
 	public abstract JsonNode getId();
 	
+	/**
+	 * Gets the JSON-RPC object of this message.
+	 * 
+	 * @return the object node
+	 */
+	public abstract ObjectNode getObjectNode();
+	
+	/**
+	 * Copy this message for in-process delivery: a tree copy (no
+	 * serialization) of which only the container nodes, like params and
+	 * results, are new.
+	 * 
+	 * @return the copy
+	 */
+	@Override
+	public abstract JSONMessage localCopy();
+	
+	@Override
+	public void serialize(final JsonGenerator jgen,
+			final SerializerProvider provider) throws IOException {
+		jgen.writeTree(getObjectNode());
+	}
+	
+	@Override
+	public void serializeWithType(final JsonGenerator jgen,
+			final SerializerProvider provider, final TypeSerializer typeSer)
+			throws IOException {
+		serialize(jgen, provider);
+	}
+	
 	/**
 	 * Checks if is request.
 	 * 
@@ -63,7 +63,9 @@ public class JSONRPCException extends RuntimeException {
 		/** The not found. */
 		NOT_FOUND,
 		/** The unauthorized. */
-		UNAUTHORIZED
+		UNAUTHORIZED,
+		/** The server busy. */
+		SERVER_BUSY
 	};
 	
 	/**
@@ -260,6 +262,10 @@ public class JSONRPCException extends RuntimeException {
 				setCode(-32401);
 				setMessage("Unauthorized");
 				break;
+			case SERVER_BUSY:
+				setCode(-32003);
+				setMessage("Server busy");
+				break;
 		}
 		setMessage(message);
 		if (t != null && getCause() == null) {
@@ -9,7 +9,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.almende.util.jackson.JOM;
-import com.almende.util.uuid.UUID;
+import com.almende.util.uuid.IdGenerator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
@@ -56,6 +56,22 @@ public final class JSONRequest extends JSONMessage {
 		init(request);
 	}
 	
+	/**
+	 * Instantiates a copy of a request, see {@link #localCopy()}.
+	 * 
+	 * @param original
+	 *            the original
+	 */
+	private JSONRequest(final JSONRequest original) {
+		req = original.req.deepCopy();
+		setRequest(true);
+	}
+	
+	@Override
+	public JSONRequest localCopy() {
+		return new JSONRequest(this);
+	}
+	
 	/**
 	 * Inits the.
 	 * 
@@ -85,8 +101,40 @@ public final class JSONRequest extends JSONMessage {
 					"Member 'params' is no ObjectNode");
 		}
 		
+		// Without id it is a notification, which shouldn't be answered.
 		init(request.get(ID), request.get(METHOD).asText(),
-				(ObjectNode) request.get(PARAMS));
+				(ObjectNode) request.get(PARAMS), request.get(ID) == null
+						|| request.get(ID).isNull());
+	}
+	
+	/**
+	 * Create a notification: a request without id, which isn't answered by
+	 * the receiver.
+	 * 
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @return the notification
+	 */
+	public static JSONRequest createNotification(final String method,
+			final ObjectNode params) {
+		return new JSONRequest(method, params, true);
+	}
+	
+	/**
+	 * Instantiates a new jSON request, optionally without id.
+	 * 
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @param notification
+	 *            true to leave out the id
+	 */
+	private JSONRequest(final String method, final ObjectNode params,
+			final boolean notification) {
+		init(null, method, params, notification);
 	}
 	
 	/**
@@ -167,9 +215,28 @@ public final class JSONRequest extends JSONMessage {
 	 */
 	private void init(final JsonNode id, final String method,
 			final ObjectNode params) {
+		init(id, method, params, false);
+	}
+	
+	/**
+	 * Inits the.
+	 * 
+	 * @param id
+	 *            the id
+	 * @param method
+	 *            the method
+	 * @param params
+	 *            the params
+	 * @param notification
+	 *            true to leave out the id, instead of generating one
+	 */
+	private void init(final JsonNode id, final String method,
+			final ObjectNode params, final boolean notification) {
 		this.setRequest(true);
 		setVersion();
-		setId(id);
+		if (!notification) {
+			setId(id);
+		}
 		setMethod(method);
 		setParams(params);
 	}
@@ -182,7 +249,7 @@ public final class JSONRequest extends JSONMessage {
 	 */
 	public void setId(final JsonNode id) {
 		if (id == null || id.isNull()) {
-			req.put(ID, new UUID().toString());
+			req.put(ID, IdGenerator.nextLong());
 		} else {
 			req.put(ID, id);
 		}
@@ -198,6 +265,17 @@ public final class JSONRequest extends JSONMessage {
 		return req.get(ID);
 	}
 	
+	/**
+	 * Checks if this is a notification, i.e. a request without id.
+	 * 
+	 * @return true, if is notification
+	 */
+	@JsonIgnore
+	public boolean isNotification() {
+		final JsonNode id = req.get(ID);
+		return id == null || id.isNull();
+	}
+	
 	/**
 	 * Sets the method.
 	 * 
@@ -62,6 +62,21 @@ public final class JSONResponse extends JSONMessage {
 		init(response);
 	}
 	
+	/**
+	 * Instantiates a copy of a response, see {@link #localCopy()}.
+	 * 
+	 * @param original
+	 *            the original
+	 */
+	private JSONResponse(final JSONResponse original) {
+		resp.setAll(original.resp.deepCopy());
+	}
+	
+	@Override
+	public JSONResponse localCopy() {
+		return new JSONResponse(this);
+	}
+	
 	/**
 	 * Instantiates a new jSON response.
 	 * 
@@ -7,7 +7,9 @@ package com.almende.eve.transport;
 import java.net.URI;
 
 import com.almende.eve.capabilities.handler.Handler;
+import com.almende.util.jackson.LocalCopyable;
 import com.almende.util.threads.ThreadPool;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -113,7 +115,9 @@ public abstract class AbstractTransport implements Transport {
 	}
 
 	/**
-	 * Send local.
+	 * Send local. Messages are delivered as objects, without serialization.
+	 * Their mutable JSON trees are copied here, on the sender's thread, so the
+	 * receiver owns its tree and the sender may keep using its own.
 	 * 
 	 * @param receiverUri
 	 *            the receiver uri
@@ -124,16 +128,35 @@ public abstract class AbstractTransport implements Transport {
 	public boolean sendLocal(final URI receiverUri, final Object message) {
 		final Transport local = getService().getLocal(receiverUri);
 		if (local != null) {
+			final Object copy = copy(message);
 			// Do local shortcut.
 			ThreadPool.getPool().execute(new Runnable() {
 				@Override
 				public void run() {
-					local.getHandle().get()
-							.receive(message, getAddress(), null);
+					local.getHandle().get().receive(copy, getAddress(), null);
 				}
 			});
 			return true;
 		}
 		return false;
 	}
+	
+	/**
+	 * Copy a message for in-process delivery. Strings and byte arrays are
+	 * passed as is, JSON nodes get a tree copy and messages like JSONRequest
+	 * copy their mutable parts only, see {@link LocalCopyable}.
+	 * 
+	 * @param message
+	 *            the message
+	 * @return the copy
+	 */
+	private static Object copy(final Object message) {
+		if (message instanceof LocalCopyable) {
+			return ((LocalCopyable) message).localCopy();
+		}
+		if (message instanceof JsonNode) {
+			return ((JsonNode) message).deepCopy();
+		}
+		return message;
+	}
 }
@@ -139,6 +139,38 @@ public class LocalTransportBuilder extends AbstractCapabilityBuilder<Transport>
 			sendLocal(receiverUri, message);
 		}
 		
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see com.almende.eve.transport.AbstractTransport#send(java.net.URI,
+		 * com.almende.eve.transport.MessageWriter, java.lang.String)
+		 */
+		@Override
+		public void send(final URI receiverUri, final MessageWriter message,
+				final String tag) throws IOException {
+			// In-process: no need to serialize the message at all.
+			sendLocal(receiverUri, message.getMessage());
+		}
+		
+		/**
+		 * Send the message object itself, without serialization. JSON
+		 * messages are deep-copied before the handoff, see
+		 * {@link AbstractTransport#sendLocal(URI, Object)}.
+		 * 
+		 * @param receiverUri
+		 *            the receiver uri
+		 * @param message
+		 *            the message
+		 * @param tag
+		 *            the tag
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		public void send(final URI receiverUri, final Object message,
+				final String tag) throws IOException {
+			sendLocal(receiverUri, message);
+		}
+		
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -0,0 +1,206 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.almende.util.jackson.JsonCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A message that is serialized only when, and where, the transport needs it:
+ * straight into the transport's output stream or byte array, without an
+ * intermediate String. Messages like JSON-RPC messages are streamed by
+ * Jackson directly from their tree.
+ */
+public final class MessageWriter {
+	private static final int			POOLSIZE	= 16;
+	private static final int			MAXPOOLED	= 64 * 1024;
+	private static final BlockingQueue<Buffer>	POOL		= new ArrayBlockingQueue<Buffer>(
+															POOLSIZE);
+	private final Object				message;
+	private final JsonCodec				codec;
+
+	/**
+	 * Instantiates a new message writer.
+	 *
+	 * @param message
+	 *            the message: JSON text, encoded bytes, or any object Jackson
+	 *            can serialize.
+	 * @param codec
+	 *            the preferred format of the message
+	 */
+	public MessageWriter(final Object message, final JsonCodec codec) {
+		this.message = message;
+		this.codec = codec != null ? codec : JsonCodec.JSON;
+	}
+
+	/**
+	 * Gets the message itself.
+	 *
+	 * @return the message
+	 */
+	public Object getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the preferred format of the message.
+	 *
+	 * @return the codec
+	 */
+	public JsonCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Write the message to the stream, in the given format. The stream is
+	 * flushed, not closed.
+	 *
+	 * @param out
+	 *            the out
+	 * @param format
+	 *            the format
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeTo(final OutputStream out, final JsonCodec format)
+			throws IOException {
+		if (message instanceof String || message instanceof byte[]) {
+			out.write(format.encode(message));
+			out.flush();
+			return;
+		}
+		final ObjectMapper mapper = format.getMapper();
+		final JsonGenerator gen = mapper.getFactory().createGenerator(out);
+		gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		mapper.writeValue(gen, message);
+		gen.close();
+	}
+
+	/**
+	 * Write the message to the stream, in its preferred format.
+	 *
+	 * @param out
+	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		writeTo(out, codec);
+	}
+
+	/**
+	 * Get the message as bytes in its preferred format. Jackson builds these
+	 * in its recycled buffers, copying them once into the result.
+	 *
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public byte[] toBytes() throws IOException {
+		return codec.encode(message);
+	}
+
+	/**
+	 * Write the message, in its preferred format, into a pooled buffer. The
+	 * caller must {@link Buffer#release()} the buffer once it has been sent.
+	 *
+	 * @return the buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Buffer toBuffer() throws IOException {
+		final Buffer buffer = buffer();
+		try {
+			writeTo(buffer);
+		} catch (final IOException e) {
+			buffer.release();
+			throw e;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Get an empty buffer from the pool, to write (for instance a compressed)
+	 * message into. The caller must {@link Buffer#release()} the buffer once
+	 * it has been sent.
+	 *
+	 * @return the buffer
+	 */
+	public static Buffer buffer() {
+		final Buffer buffer = POOL.poll();
+		return buffer != null ? buffer : new Buffer();
+	}
+
+	/**
+	 * Get the message as JSON text, for text based transports.
+	 *
+	 * @return the JSON text
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public String toText() throws IOException {
+		if (message instanceof String || message instanceof byte[]) {
+			return JsonCodec.toText(message);
+		}
+		return JsonCodec.JSON.getMapper().writeValueAsString(message);
+	}
+
+	/**
+	 * A reusable byte buffer, handed out by {@link MessageWriter#toBuffer()}
+	 * and {@link MessageWriter#buffer()}.
+	 * Only the first {@link #length()} bytes of {@link #array()} are valid.
+	 */
+	public static final class Buffer extends ByteArrayOutputStream {
+
+		private Buffer() {
+			super(1024);
+		}
+
+		/**
+		 * Gets the backing array, without copying it.
+		 *
+		 * @return the array
+		 */
+		public byte[] array() {
+			return buf;
+		}
+
+		/**
+		 * Gets the number of valid bytes.
+		 *
+		 * @return the length
+		 */
+		public int length() {
+			return count;
+		}
+
+		/**
+		 * Return the buffer to the pool. Buffers grown beyond 64kB are left
+		 * to the garbage collector, as is everything over the pool size.
+		 */
+		public void release() {
+			reset();
+			if (buf.length <= MAXPOOLED) {
+				POOL.offer(this);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		try {
+			return toText();
+		} catch (final IOException e) {
+			return String.valueOf(message);
+		}
+	}
+}
@@ -12,23 +12,53 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.almende.eve.capabilities.handler.Handler;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
+import com.almende.util.metrics.Metrics;
 import com.almende.util.threads.ThreadPool;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * The Class Router, outbound transport selection based on protocol scheme.
+ * Optionally, messages to the same remote destination are batched into a
+ * single JSON-RPC batch array.
  * 
  */
 public class Router implements Transport {
 	private static final Logger				LOG			= Logger.getLogger(Router.class
 																.getName());
+	private static ScheduledExecutorService	timer		= null;
 	private final Map<String, Transport>	transports	= new HashMap<String, Transport>();
+	private final Map<Transport, JsonCodec>	codecs		= new HashMap<Transport, JsonCodec>();
+	private final ConcurrentHashMap<URI, Batch>	batches		= new ConcurrentHashMap<URI, Batch>();
+	private int								batchWindow	= 0;
+	private int								batchSize	= 50;
+	
+	/**
+	 * Enable batching of outbound messages: messages to the same destination
+	 * are collected for at most window milliseconds, or until maxSize messages
+	 * are collected, and are then send as one JSON-RPC batch array. The
+	 * receiving side needs to support JSON-RPC batches. Messages over the
+	 * local transport and tagged replies are never batched.
+	 * 
+	 * @param window
+	 *            the batch window in milliseconds, 0 disables batching.
+	 * @param maxSize
+	 *            the maximum number of messages per batch
+	 */
+	public void setBatching(final int window, final int maxSize) {
+		this.batchWindow = window;
+		this.batchSize = maxSize > 0 ? maxSize : 1;
+	}
 	
 	/**
 	 * Register new transport. If a given protocol is already known, this will
@@ -45,6 +75,10 @@ public class Router implements Transport {
 		for (final String protocol : transport.getProtocols()) {
 			transports.put(protocol, transport);
 		}
+		if (transport.getParams() != null) {
+			codecs.put(transport, JsonCodec.fromName(new TransportConfig(
+					transport.getParams()).getCodec()));
+		}
 	}
 	
 	/*
@@ -56,16 +90,55 @@ public class Router implements Transport {
 	@Override
 	public void send(final URI receiverUri, final String message,
 			final String tag) throws IOException {
-		final Transport transport = transports.get(receiverUri.getScheme()
-				.toLowerCase());
+		final String scheme = receiverUri.getScheme().toLowerCase();
+		final Transport transport = transports.get(scheme);
 		if (transport != null) {
+			final long start = System.nanoTime();
 			transport.send(receiverUri, message, tag);
+			Metrics.histogram("router.send", scheme).recordSince(start);
 		} else {
 			throw new IOException("No transport known for scheme:"
 					+ receiverUri.getScheme());
 		}
 	}
 	
+	/**
+	 * Send a message object to an other agent. In-process transports (local:)
+	 * receive the object itself, skipping serialization; other transports get
+	 * a {@link MessageWriter}, to serialize it in their configured codec
+	 * straight into their output. Batched messages are sent as text.
+	 * 
+	 * @param receiverUri
+	 *            the receiver uri
+	 * @param message
+	 *            the message
+	 * @param tag
+	 *            the tag
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void send(final URI receiverUri, final Object message,
+			final String tag) throws IOException {
+		final String scheme = receiverUri.getScheme().toLowerCase();
+		final Transport transport = transports.get(scheme);
+		if (transport == null) {
+			throw new IOException("No transport known for scheme:"
+					+ receiverUri.getScheme());
+		}
+		final long start = System.nanoTime();
+		final JsonCodec codec = codecs.get(transport);
+		if (transport instanceof LocalTransportBuilder.LocalService) {
+			((LocalTransportBuilder.LocalService) transport).send(receiverUri,
+					message, tag);
+		} else if (batchWindow > 0 && tag == null
+				&& (codec == null || !codec.isBinary())) {
+			batch(receiverUri, transport, message.toString());
+		} else {
+			transport.send(receiverUri, new MessageWriter(message, codec), tag);
+		}
+		Metrics.histogram("router.send", scheme).recordSince(start);
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -75,10 +148,33 @@ public class Router implements Transport {
 	@Override
 	public void send(final URI receiverUri, final byte[] message,
 			final String tag) throws IOException {
-		final Transport transport = transports.get(receiverUri.getScheme()
-				.toLowerCase());
+		final String scheme = receiverUri.getScheme().toLowerCase();
+		final Transport transport = transports.get(scheme);
 		if (transport != null) {
+			final long start = System.nanoTime();
 			transport.send(receiverUri, message, tag);
+			Metrics.histogram("router.send", scheme).recordSince(start);
+		} else {
+			throw new IOException("No transport known for scheme:"
+					+ receiverUri.getScheme());
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.almende.eve.transport.Transport#send(java.net.URI,
+	 * com.almende.eve.transport.MessageWriter, java.lang.String)
+	 */
+	@Override
+	public void send(final URI receiverUri, final MessageWriter message,
+			final String tag) throws IOException {
+		final String scheme = receiverUri.getScheme().toLowerCase();
+		final Transport transport = transports.get(scheme);
+		if (transport != null) {
+			final long start = System.nanoTime();
+			transport.send(receiverUri, message, tag);
+			Metrics.histogram("router.send", scheme).recordSince(start);
 		} else {
 			throw new IOException("No transport known for scheme:"
 					+ receiverUri.getScheme());
@@ -211,4 +307,109 @@ public class Router implements Transport {
 		return result;
 	}
 	
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(ThreadPool
+					.getFactory());
+		}
+		return timer;
+	}
+	
+	private void batch(final URI receiverUri, final Transport transport,
+			final String message) {
+		while (true) {
+			Batch batch = batches.get(receiverUri);
+			if (batch == null) {
+				final Batch newBatch = new Batch(receiverUri, transport);
+				batch = batches.putIfAbsent(receiverUri, newBatch);
+				if (batch == null) {
+					batch = newBatch;
+					getTimer().schedule(newBatch, batchWindow,
+							TimeUnit.MILLISECONDS);
+				}
+			}
+			if (batch.add(message)) {
+				return;
+			}
+			// Batch was flushed in the meantime, start a new one.
+		}
+	}
+	
+	/**
+	 * Messages collected for a single destination.
+	 */
+	private class Batch implements Runnable {
+		private final URI			receiverUri;
+		private final Transport		transport;
+		private final List<String>	messages	= new ArrayList<String>();
+		private boolean				closed		= false;
+		
+		Batch(final URI receiverUri, final Transport transport) {
+			this.receiverUri = receiverUri;
+			this.transport = transport;
+		}
+		
+		private synchronized boolean add(final String message) {
+			if (closed) {
+				return false;
+			}
+			messages.add(message);
+			if (messages.size() >= batchSize) {
+				close();
+				ThreadPool.getPool().execute(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				});
+			}
+			return true;
+		}
+		
+		private void close() {
+			closed = true;
+			batches.remove(receiverUri, this);
+		}
+		
+		/**
+		 * Triggered by the timer, at the end of the batch window.
+		 */
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				close();
+			}
+			ThreadPool.getPool().execute(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		}
+		
+		private void flush() {
+			String body;
+			if (messages.size() == 1) {
+				body = messages.get(0);
+			} else {
+				final StringBuilder sb = new StringBuilder("[");
+				for (int i = 0; i < messages.size(); i++) {
+					if (i > 0) {
+						sb.append(',');
+					}
+					sb.append(messages.get(i));
+				}
+				body = sb.append(']').toString();
+			}
+			try {
+				transport.send(receiverUri, body, null);
+			} catch (final IOException e) {
+				LOG.log(Level.WARNING, "Failed to send batch to:"
+						+ receiverUri, e);
+			}
+		}
+	}
 }
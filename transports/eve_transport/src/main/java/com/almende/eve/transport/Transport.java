@@ -57,6 +57,29 @@ public interface Transport extends Capability {
 	void send(final URI receiverUri, final byte[] message, final String tag)
 			throws IOException;
 	
+	/**
+	 * Send a message to an other agent, letting the transport serialize it
+	 * straight into its output (stream, buffer or byte array). By default,
+	 * binary codecs are sent as bytes and all others as JSON text.
+	 * 
+	 * @param receiverUri
+	 *            the receiver url
+	 * @param message
+	 *            the message
+	 * @param tag
+	 *            the tag
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	default void send(final URI receiverUri, final MessageWriter message,
+			final String tag) throws IOException {
+		if (message.getCodec().isBinary()) {
+			send(receiverUri, message.toBytes(), tag);
+		} else {
+			send(receiverUri, message.toText(), tag);
+		}
+	}
+	
 	/**
 	 * (re)Connect this url (if applicable for this transport type).
 	 * 
@@ -5,6 +5,7 @@
 package com.almende.eve.transport;
 
 import com.almende.eve.capabilities.Config;
+import com.almende.util.jackson.JsonCodec;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -65,4 +66,122 @@ public class TransportConfig extends Config {
 		}
 		return true;
 	}
+	
+	/**
+	 * Sets the codec of outbound messages: "json" (default) or "smile". The
+	 * binary codec is only used by transports that can carry bytes; incoming
+	 * messages are recognized in any format.
+	 * 
+	 * @param codec
+	 *            the new codec
+	 */
+	public void setCodec(final String codec) {
+		this.put("codec", codec);
+	}
+	
+	/**
+	 * Gets the codec.
+	 * 
+	 * @return the codec
+	 */
+	public String getCodec() {
+		if (this.has("codec")) {
+			return this.get("codec").asText();
+		}
+		return JsonCodec.JSON.getName();
+	}
+	
+	/**
+	 * Sets the signing key: a secret, shared with the receivers, to sign the
+	 * sender tokens with. Receivers which know the key verify these tokens
+	 * locally, without calling back the sender. (Optional, by default tokens
+	 * aren't signed)
+	 * 
+	 * @param signingKey
+	 *            the new signing key
+	 */
+	public void setSigningKey(final String signingKey) {
+		this.put("signingKey", signingKey);
+	}
+	
+	/**
+	 * Gets the signing key.
+	 * 
+	 * @return the signing key, null if not set.
+	 */
+	public String getSigningKey() {
+		if (this.has("signingKey")) {
+			return this.get("signingKey").asText();
+		}
+		return null;
+	}
+	
+	/**
+	 * Sets the id of the signing key, which tells receivers which key to
+	 * verify with. (Optional, default is "shared")
+	 * 
+	 * @param signingKeyId
+	 *            the new signing key id
+	 */
+	public void setSigningKeyId(final String signingKeyId) {
+		this.put("signingKeyId", signingKeyId);
+	}
+	
+	/**
+	 * Gets the signing key id.
+	 * 
+	 * @return the signing key id
+	 */
+	public String getSigningKeyId() {
+		if (this.has("signingKeyId")) {
+			return this.get("signingKeyId").asText();
+		}
+		return "shared";
+	}
+	
+	/**
+	 * Sets the keys of other nodes, by key id, to verify their tokens with.
+	 * (Optional, by default only the signing key is trusted)
+	 * 
+	 * @param trustedKeys
+	 *            the new trusted keys
+	 */
+	public void setTrustedKeys(final ObjectNode trustedKeys) {
+		this.set("trustedKeys", trustedKeys);
+	}
+	
+	/**
+	 * Gets the trusted keys.
+	 * 
+	 * @return the trusted keys, null if not set.
+	 */
+	public ObjectNode getTrustedKeys() {
+		if (this.has("trustedKeys") && this.get("trustedKeys").isObject()) {
+			return (ObjectNode) this.get("trustedKeys");
+		}
+		return null;
+	}
+	
+	/**
+	 * Sets the lifetime of signed tokens, in seconds. (Optional, default is
+	 * 3600)
+	 * 
+	 * @param tokenTtl
+	 *            the new token ttl
+	 */
+	public void setTokenTtl(final int tokenTtl) {
+		this.put("tokenTtl", tokenTtl);
+	}
+	
+	/**
+	 * Gets the token ttl.
+	 * 
+	 * @return the token ttl
+	 */
+	public int getTokenTtl() {
+		if (this.has("tokenTtl")) {
+			return this.get("tokenTtl").asInt();
+		}
+		return 3600;
+	}
 }
@@ -10,15 +10,18 @@ import java.util.logging.Logger;
 import org.joda.time.DateTime;
 
 import com.almende.util.jackson.JOM;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 /**
  * The Class TokenRet.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TokenRet {
-	private static final Logger	LOG		= Logger.getLogger(TokenRet.class
-												.getCanonicalName());
-	private String				token	= null;
-	private String				time	= null;
+	private static final Logger	LOG			= Logger.getLogger(TokenRet.class
+													.getCanonicalName());
+	private String				token		= null;
+	private String				time		= null;
+	private String				signature	= null;
 	
 	/**
 	 * Instantiates a new token ret.
@@ -91,4 +94,23 @@ public class TokenRet {
 	public void setTime(final String time) {
 		this.time = time;
 	}
+	
+	/**
+	 * Gets the signature, see {@link TokenSigner}.
+	 * 
+	 * @return the signature, null if not signed.
+	 */
+	public String getSignature() {
+		return signature;
+	}
+	
+	/**
+	 * Sets the signature.
+	 * 
+	 * @param signature
+	 *            the new signature
+	 */
+	public void setSignature(final String signature) {
+		this.signature = signature;
+	}
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transport.tokens;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.almende.eve.transport.TransportConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Stateless sender tokens: the sender signs its own address and an expiry
+ * time with a (shared or per-node) secret key, and the receiver checks the
+ * signature locally, instead of calling back the sender to verify its token
+ * as the {@link TokenStore} handshake does.
+ *
+ * Signatures look like "keyId.expiry.hmac", where the key id tells the
+ * receiver which of its trusted keys to check with. Verified signatures are
+ * kept in a JVM wide cache until they expire, so a known peer costs a map
+ * lookup per message. When the cache is full, the expired signatures are
+ * dropped, and if needed the oldest ones, down to three quarters.
+ */
+public final class TokenSigner {
+	private static final Logger					LOG			= Logger.getLogger(TokenSigner.class
+																	.getCanonicalName());
+	private static final Charset				UTF8		= Charset
+																	.forName("UTF-8");
+	private static final String					ALGORITHM	= "HmacSHA256";
+	private static final int					MAX_PEERS	= 10000;
+	private static final ConcurrentMap<String, Peer>	VERIFIED	= new ConcurrentHashMap<String, Peer>();
+	private static final ThreadLocal<Mac>		MACS		= new ThreadLocal<Mac>() {
+																@Override
+																protected Mac initialValue() {
+																	try {
+																		return Mac.getInstance(ALGORITHM);
+																	} catch (final NoSuchAlgorithmException e) {
+																		LOG.log(Level.SEVERE,
+																				"No " + ALGORITHM, e);
+																		throw new IllegalStateException(e);
+																	}
+																}
+															};
+	private final String						keyId;
+	private final byte[]						key;
+	private final Map<String, byte[]>			trusted		= new HashMap<String, byte[]>();
+	private final long							ttl;
+	private volatile String						signature	= null;
+	private volatile long						renewal		= 0;
+
+	/**
+	 * Instantiates a new token signer.
+	 *
+	 * @param config
+	 *            the config, which must have a signing key.
+	 */
+	public TokenSigner(final TransportConfig config) {
+		keyId = config.getSigningKeyId();
+		key = config.getSigningKey().getBytes(UTF8);
+		ttl = config.getTokenTtl() * 1000L;
+		trusted.put(keyId, key);
+		final ObjectNode keys = config.getTrustedKeys();
+		if (keys != null) {
+			final Iterator<Map.Entry<String, JsonNode>> iter = keys.fields();
+			while (iter.hasNext()) {
+				final Map.Entry<String, JsonNode> entry = iter.next();
+				trusted.put(entry.getKey(),
+						entry.getValue().asText().getBytes(UTF8));
+			}
+		}
+	}
+
+	/**
+	 * Creates a signer for the config, if it has a signing key.
+	 *
+	 * @param config
+	 *            the config
+	 * @return the token signer, or null if no signing key is configured.
+	 */
+	public static TokenSigner create(final TransportConfig config) {
+		if (config.getSigningKey() == null) {
+			return null;
+		}
+		return new TokenSigner(config);
+	}
+
+	/**
+	 * Sign the sender address. The signature is reused until half of its
+	 * lifetime has passed.
+	 *
+	 * @param senderUrl
+	 *            the sender url, the same for each call.
+	 * @return the signature
+	 */
+	public String sign(final String senderUrl) {
+		final long now = System.currentTimeMillis();
+		String result = signature;
+		if (result == null || now >= renewal) {
+			final String prefix = keyId + "." + Long.toString(now + ttl, 36);
+			result = prefix + "." + hmac(key, prefix + "." + senderUrl);
+			signature = result;
+			renewal = now + ttl / 2;
+		}
+		return result;
+	}
+
+	/**
+	 * Sign the token of the sender, if a signer is given.
+	 *
+	 * @param signer
+	 *            the signer, may be null.
+	 * @param token
+	 *            the token
+	 * @param senderUrl
+	 *            the sender url
+	 * @return the token
+	 */
+	public static TokenRet sign(final TokenSigner signer,
+			final TokenRet token, final String senderUrl) {
+		if (signer != null) {
+			token.setSignature(signer.sign(senderUrl));
+		}
+		return token;
+	}
+
+	/**
+	 * Verify a signature of the sender: it must be made with one of the
+	 * trusted keys, and not be expired.
+	 *
+	 * @param senderUrl
+	 *            the sender url
+	 * @param sig
+	 *            the signature, may be null.
+	 * @return true, if valid
+	 */
+	public boolean verify(final String senderUrl, final String sig) {
+		if (sig == null || senderUrl == null) {
+			return false;
+		}
+		final long now = System.currentTimeMillis();
+		final String cacheKey = senderUrl + " " + sig;
+		final Peer peer = VERIFIED.get(cacheKey);
+		if (peer != null && peer.expires > now) {
+			return Arrays.equals(peer.key, trusted.get(peer.keyId));
+		}
+
+		final int end = sig.lastIndexOf('.');
+		final int start = sig.lastIndexOf('.', end - 1);
+		if (start <= 0) {
+			return false;
+		}
+		final String id = sig.substring(0, start);
+		final byte[] secret = trusted.get(id);
+		if (secret == null) {
+			return false;
+		}
+		final long expires;
+		try {
+			expires = Long.parseLong(sig.substring(start + 1, end), 36);
+		} catch (final NumberFormatException e) {
+			return false;
+		}
+		if (expires <= now) {
+			return false;
+		}
+		final String expected = hmac(secret, sig.substring(0, end) + "."
+				+ senderUrl);
+		if (!MessageDigest.isEqual(expected.getBytes(UTF8),
+				sig.substring(end + 1).getBytes(UTF8))) {
+			return false;
+		}
+		if (VERIFIED.size() >= MAX_PEERS) {
+			evict(now);
+		}
+		VERIFIED.put(cacheKey, new Peer(id, secret, expires));
+		return true;
+	}
+
+	private static void evict(final long now) {
+		synchronized (VERIFIED) {
+			if (VERIFIED.size() < MAX_PEERS) {
+				// Another thread just evicted.
+				return;
+			}
+			final List<Peer> peers = new ArrayList<Peer>(VERIFIED.size());
+			final Iterator<Peer> iter = VERIFIED.values().iterator();
+			while (iter.hasNext()) {
+				final Peer peer = iter.next();
+				if (peer.expires <= now) {
+					iter.remove();
+				} else {
+					peers.add(peer);
+				}
+			}
+			final int excess = VERIFIED.size() - MAX_PEERS * 3 / 4;
+			if (excess <= 0) {
+				return;
+			}
+			// With the same lifetime for all, the first to expire are oldest.
+			final long[] expiries = new long[peers.size()];
+			for (int i = 0; i < expiries.length; i++) {
+				expiries[i] = peers.get(i).expires;
+			}
+			Arrays.sort(expiries);
+			final long cutoff = expiries[Math.min(excess, expiries.length) - 1];
+			final Iterator<Peer> oldest = VERIFIED.values().iterator();
+			while (oldest.hasNext()) {
+				if (oldest.next().expires <= cutoff) {
+					oldest.remove();
+				}
+			}
+		}
+	}
+
+
+	private static String hmac(final byte[] secret, final String data) {
+		try {
+			final Mac mac = MACS.get();
+			mac.init(new SecretKeySpec(secret, ALGORITHM));
+			final byte[] digest = mac.doFinal(data.getBytes(UTF8));
+			final StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (final GeneralSecurityException e) {
+			LOG.log(Level.SEVERE, "Couldn't sign token", e);
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A verified signature: valid until it expires, as long as the key it was
+	 * verified with is still trusted.
+	 */
+	private static final class Peer {
+		private final String	keyId;
+		private final byte[]	key;
+		private final long		expires;
+
+		Peer(final String keyId, final byte[] key, final long expires) {
+			this.keyId = keyId;
+			this.key = key;
+			this.expires = expires;
+		}
+	}
+}
@@ -11,7 +11,7 @@ import java.util.logging.Logger;
 
 import org.joda.time.DateTime;
 
-import com.almende.util.uuid.UUID;
+import com.almende.util.uuid.IdGenerator;
 
 /**
  * Simple token system: Each outbound call gets a token, which is newly
@@ -63,7 +63,7 @@ public final class TokenStore {
 		if (tokens.size() == 0 || tokens.get(last.toString()) == null
 				|| last.plus(3600000).isBeforeNow()) {
 			final DateTime now = DateTime.now();
-			final String token = new UUID().toString();
+			final String token = IdGenerator.nextToken();
 			result = new TokenRet(token, now);
 			tokens.put(now.toString(), token);
 			last = now;
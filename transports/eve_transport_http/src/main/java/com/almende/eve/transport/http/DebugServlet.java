@@ -6,6 +6,7 @@ package com.almende.eve.transport.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.logging.Level;
@@ -20,10 +21,12 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 
+import com.almende.eve.transport.MessageWriter;
 import com.almende.util.ApacheHttpClient;
 import com.almende.util.StreamingUtil;
 import com.almende.util.StringUtil;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -141,6 +144,12 @@ public class DebugServlet extends HttpServlet {
 			if (senderUrl != null && !senderUrl.equals("")) {
 				final ObjectNode tokenObj = (ObjectNode) JOM.getInstance()
 						.readTree(tokenTupple);
+				// A signed token is verified here, without a call back.
+				if (tokenObj.hasNonNull("signature")
+						&& HttpService.verify(myUrl, senderUrl,
+								tokenObj.get("signature").textValue())) {
+					return Handshake.OK;
+				}
 				final HttpGet httpGet = new HttpGet(senderUrl);
 				httpGet.setHeader("X-Eve-requestToken", tokenObj.get("time")
 						.textValue());
@@ -282,12 +291,20 @@ public class DebugServlet extends HttpServlet {
 		final HttpTransport transport = HttpService.get(myUrl, id);
 		if (transport != null) {
 			try {
-				final String response = transport.receive(body, senderUrl);
-				// TODO: It doesn't need to be json, should we handle mime-types
-				// better?
-				resp.addHeader("Content-Type", "application/json");
-				resp.getWriter().println(response);
-				resp.getWriter().close();
+				final Object response = transport.receive(body, senderUrl);
+				if (response == null || "".equals(response)) {
+					// A notification: there is nothing to reply.
+					resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+				} else {
+					// TODO: It doesn't need to be json, should we handle
+					// mime-types better?
+					resp.addHeader("Content-Type", "application/json");
+					final MessageWriter writer = response instanceof MessageWriter ? (MessageWriter) response
+							: new MessageWriter(response, JsonCodec.JSON);
+					final OutputStream out = resp.getOutputStream();
+					writer.writeTo(out, JsonCodec.JSON);
+					out.close();
+				}
 			} catch (final IOException e) {
 				resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
 						"Receiver raised exception:" + e.getMessage());
@@ -5,11 +5,20 @@
 package com.almende.eve.transport.http;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -19,9 +28,12 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 
+import com.almende.eve.transport.MessageWriter;
 import com.almende.util.ApacheHttpClient;
 import com.almende.util.StringUtil;
+import com.almende.util.callback.AsyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -142,6 +154,12 @@ public class EveServlet extends HttpServlet {
 			if (senderUrl != null && !senderUrl.equals("")) {
 				final ObjectNode tokenObj = (ObjectNode) JOM.getInstance()
 						.readTree(tokenTupple);
+				// A signed token is verified here, without a call back.
+				if (tokenObj.hasNonNull("signature")
+						&& HttpService.verify(myUrl, senderUrl,
+								tokenObj.get("signature").textValue())) {
+					return Handshake.OK;
+				}
 				final HttpGet httpGet = new HttpGet(senderUrl);
 				httpGet.setHeader("X-Eve-requestToken", tokenObj.get("time")
 						.textValue());
@@ -251,7 +269,15 @@ public class EveServlet extends HttpServlet {
 		}
 		
 		// retrieve the url and the request body
-		final String body = StringUtil.streamToString(req.getInputStream());
+		final JsonCodec codec = JsonCodec.fromContentType(req.getContentType());
+		final InputStream in = Compression.decode(req.getInputStream(),
+				req.getHeader("Content-Encoding"));
+		final Object body;
+		if (codec != null && codec.isBinary()) {
+			body = JsonCodec.readBytes(in);
+		} else {
+			body = StringUtil.streamToString(in);
+		}
 		final String url = req.getRequestURI();
 		final String id = getId(url);
 		if (id == null || id.equals("") || id.equals(myUrl.toASCIIString())) {
@@ -272,23 +298,124 @@ public class EveServlet extends HttpServlet {
 			LOG.log(Level.WARNING, "Couldn't parse senderUrl:" + sender, e);
 		}
 		final HttpTransport transport = HttpService.get(myUrl, id);
-		if (transport != null) {
+		if (transport == null) {
+			resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+					"Couldn't load transport");
+			resp.flushBuffer();
+			return;
+		}
+		// Reply in the accepted format, by default in the format of the
+		// request.
+		final JsonCodec replyCodec = JsonCodec.negotiate(
+				req.getHeader("Accept"),
+				body instanceof byte[] ? JsonCodec.detect((byte[]) body)
+						: JsonCodec.JSON);
+		final String encoding = Compression.choose(req
+				.getHeader("Accept-Encoding"));
+		final int threshold = transport.getCompressionThreshold();
+		if (!req.isAsyncSupported()) {
 			try {
-				final String response = transport.receive(body, senderUrl);
-				// TODO: It doesn't need to be json, should we handle mime-types
-				// better?
-				resp.addHeader("Content-Type", "application/json");
-				resp.getWriter().println(response);
-				resp.getWriter().close();
+				reply(resp, transport.receive(body, senderUrl), replyCodec,
+						encoding, threshold);
 			} catch (final IOException e) {
 				resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
 						"Receiver raised exception:" + e.getMessage());
 			}
-		} else {
-			resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-					"Couldn't load transport");
+			resp.flushBuffer();
+			return;
 		}
-		resp.flushBuffer();
+		
+		// Suspend the request, the agent's reply completes it. The container
+		// timeout is a fallback of the callback timeout of the transport.
+		final AsyncContext async = req.startAsync();
+		async.setTimeout(TimeUnit.SECONDS.toMillis(transport
+				.getCallbackTimeout() + 5));
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicLong callbackId = new AtomicLong(0);
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(final AsyncEvent event) throws IOException {
+				// Stop waiting for the agent, its late reply is dropped.
+				transport.cancel(callbackId.get());
+				if (done.compareAndSet(false, true)) {
+					resp.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT,
+							"Receiver didn't reply in time");
+					async.complete();
+				}
+			}
+			
+			@Override
+			public void onError(final AsyncEvent event) throws IOException {
+				done.set(true);
+			}
+			
+			@Override
+			public void onComplete(final AsyncEvent event) throws IOException {}
+			
+			@Override
+			public void onStartAsync(final AsyncEvent event) throws IOException {}
+		});
+		callbackId.set(transport.receive(body, senderUrl, new AsyncCallback<Object>() {
+			@Override
+			public void onSuccess(final Object response) {
+				if (!done.compareAndSet(false, true)) {
+					return;
+				}
+				try {
+					reply(resp, response, replyCodec, encoding, threshold);
+				} catch (final IOException e) {
+					LOG.log(Level.WARNING, "Failed to write reply", e);
+				} finally {
+					async.complete();
+				}
+			}
+			
+			@Override
+			public void onFailure(final Exception exception) {
+				if (!done.compareAndSet(false, true)) {
+					return;
+				}
+				try {
+					if (exception instanceof TimeoutException) {
+						resp.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT,
+								"Receiver didn't reply in time");
+					} else {
+						resp.sendError(
+								HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+								"Receiver raised exception:"
+										+ exception.getMessage());
+					}
+				} catch (final IOException e) {
+					LOG.log(Level.WARNING, "Failed to write error", e);
+				} finally {
+					async.complete();
+				}
+			}
+		}));
+	}
+	
+	/**
+	 * Write the reply, serialized straight into the response, and compressed
+	 * on the fly if it is large enough and the sender accepts that.
+	 */
+	private static void reply(final HttpServletResponse resp,
+			final Object response, final JsonCodec replyCodec,
+			final String encoding, final int threshold) throws IOException {
+		if (threshold >= 0) {
+			// Tell the sender it may compress its requests as well.
+			resp.setHeader("Accept-Encoding", Compression.ACCEPT_ENCODING);
+		}
+		if (response == null || "".equals(response)) {
+			// A notification: there is nothing to reply.
+			resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+			return;
+		}
+		final MessageWriter writer = response instanceof MessageWriter ? (MessageWriter) response
+				: new MessageWriter(response, replyCodec);
+		resp.setContentType(replyCodec.getContentType());
+		final OutputStream out = Compression.stream(resp, encoding, threshold);
+		writer.writeTo(out, replyCodec);
+		out.close();
 	}
 	
 	@Override
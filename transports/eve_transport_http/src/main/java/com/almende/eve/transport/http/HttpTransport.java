@@ -4,45 +4,75 @@
  */
 package com.almende.eve.transport.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 
 import com.almende.eve.capabilities.handler.Handler;
 import com.almende.eve.transport.AbstractTransport;
+import com.almende.eve.transport.MessageWriter;
 import com.almende.eve.transport.Receiver;
 import com.almende.eve.transport.TransportService;
+import com.almende.eve.transport.tokens.TokenSigner;
 import com.almende.eve.transport.tokens.TokenStore;
 import com.almende.util.ApacheHttpClient;
+import com.almende.util.AsyncHttpClient;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.callback.AsyncCallbackQueue;
 import com.almende.util.callback.SyncCallback;
+import com.almende.util.jackson.JsonCodec;
 import com.almende.util.threads.ThreadPool;
-import com.almende.util.uuid.UUID;
+import com.almende.util.uuid.IdGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * The Class HttpTransport.
+ * 
+ * Outbound messages are posted through the non-blocking
+ * {@link AsyncHttpClient} when its engine is available (the
+ * eve-transport-http-async module, on Java 11 and up), through the blocking
+ * {@link ApacheHttpClient} otherwise.
  */
 public class HttpTransport extends AbstractTransport {
 	private static final Logger					LOG			= Logger.getLogger(HttpTransport.class
 																	.getName());
-	private final AsyncCallbackQueue<String>	callbacks	= new AsyncCallbackQueue<String>();
+	private static final Charset				UTF8		= Charset
+																	.forName("UTF-8");
+	private final AsyncCallbackQueue<Object>	callbacks	= new AsyncCallbackQueue<Object>();
 	private final TokenStore					tokenstore	=	new TokenStore();
 	private final List<String>					protocols	= Arrays.asList(
 																	"http",
 																	"https",
 																	"web");
+	private final AsyncHttpClient				client;
+	/** The encodings the hosts accept in requests, as they told this client. */
+	private final ConcurrentMap<String, String>	encodings	= new ConcurrentHashMap<String, String>();
+	private final int							compressionThreshold;
+	private final TokenSigner					signer;
 	
 	/**
 	 * Instantiates a new http transport.
@@ -59,6 +89,11 @@ public class HttpTransport extends AbstractTransport {
 	public HttpTransport(final URI address, final Handler<Receiver> handle,
 			final TransportService service, final ObjectNode params) {
 		super(address, handle, service, params);
+		final HttpTransportConfig config = new HttpTransportConfig(params);
+		client = AsyncHttpClient.create(config.getMaxConnectionsPerHost());
+		callbacks.setDefTimeout(config.getCallbackTimeout());
+		compressionThreshold = config.getCompressionThreshold();
+		signer = TokenSigner.create(config);
 	}
 	
 	/*
@@ -71,24 +106,51 @@ public class HttpTransport extends AbstractTransport {
 	public void send(final URI receiverUri, final String message,
 			final String tag) throws IOException {
 		if (tag != null) {
-			if (callbacks != null) {
-				final AsyncCallback<String> callback = callbacks.pull(tag);
-				if (callback != null) {
-					callback.onSuccess(message);
-					return;
-				} else {
-					LOG.warning("Tag set, but no callback found! " + callback);
-				}
-			} else {
-				LOG.warning("Tag set, but no callbacks found!");
-			}
-			// Chicken out
+			reply(tag, message);
 			return;
 		}
 		// Check and deliver local shortcut.
 		if (sendLocal(receiverUri, message)) {
 			return;
 		}
+		post(receiverUri, message, JsonCodec.JSON);
+	}
+	
+	/**
+	 * Hand a reply to the waiting servlet request; its tag is the id of its
+	 * callback.
+	 */
+	private void reply(final String tag, final Object message) {
+		if (callbacks != null) {
+			AsyncCallback<Object> callback = null;
+			try {
+				callback = callbacks.pull(Long.parseLong(tag));
+			} catch (final NumberFormatException e) {
+				LOG.log(Level.WARNING, "Invalid tag:" + tag, e);
+			}
+			if (callback != null) {
+				callback.onSuccess(message);
+			} else {
+				LOG.warning("Tag set, but no callback found! " + callback);
+			}
+		} else {
+			LOG.warning("Tag set, but no callbacks found!");
+		}
+	}
+	
+	/**
+	 * Post the message, the response is handed to the receiver.
+	 * 
+	 * @param message
+	 *            the message: JSON text, bytes encoded by the codec, or a
+	 *            MessageWriter.
+	 */
+	private void post(final URI receiverUri, final Object message,
+			final JsonCodec codec) throws IOException {
+		if (client != null) {
+			postAsync(receiverUri, message, codec);
+			return;
+		}
 		final String senderUrl = super.getAddress().toASCIIString();
 		final Handler<Receiver> handle = super.getHandle();
 		ThreadPool.getPool().execute(new Runnable() {
@@ -98,21 +160,35 @@ public class HttpTransport extends AbstractTransport {
 				try {
 					httpPost = new HttpPost(receiverUri);
 					// invoke via Apache HttpClient request:
-					httpPost.setEntity(new StringEntity(message));
+					httpPost.setEntity(createEntity(message, codec));
+					if (codec.isBinary()) {
+						httpPost.addHeader("Accept", codec.getContentType()
+								+ ", " + JsonCodec.JSON.getContentType());
+					}
 					
 //					// Add token for HTTP handshake
-					httpPost.addHeader("X-Eve-Token", tokenstore.create()
-							.toString());
+					httpPost.addHeader("X-Eve-Token", createToken());
 					httpPost.addHeader("X-Eve-SenderUrl", senderUrl);
 					final HttpResponse webResp = ApacheHttpClient.get()
 							.execute(httpPost);
-					final String result = EntityUtils.toString(webResp
-							.getEntity());
+					if (webResp.getStatusLine().getStatusCode() == HttpStatus.SC_NO_CONTENT) {
+						// Delivered a notification, there is no response.
+						return;
+					}
+					final Header type = webResp.getEntity().getContentType();
+					final JsonCodec resultCodec = type != null ? JsonCodec
+							.fromContentType(type.getValue()) : null;
+					final Object result;
+					if (resultCodec != null && resultCodec.isBinary()) {
+						result = EntityUtils.toByteArray(webResp.getEntity());
+					} else {
+						result = EntityUtils.toString(webResp.getEntity());
+					}
 					if (webResp.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
 						LOG.warning("Received HTTP Error Status:"
 								+ webResp.getStatusLine().getStatusCode() + ":"
 								+ webResp.getStatusLine().getReasonPhrase());
-						LOG.warning(result);
+						LOG.warning(JsonCodec.toText(result));
 					} else {
 						handle.get().receive(result, receiverUri, null);
 					}
@@ -128,6 +204,119 @@ public class HttpTransport extends AbstractTransport {
 		});
 	}
 	
+	/**
+	 * Post the message through the non-blocking client: no thread waits for
+	 * the response, which is handed to the receiver on arrival.
+	 */
+	private void postAsync(final URI receiverUri, final Object message,
+			final JsonCodec codec) throws IOException {
+		final Map<String, String> headers = new HashMap<String, String>(8);
+		headers.put("Content-Type", codec.getContentType());
+		if (codec.isBinary()) {
+			headers.put("Accept", codec.getContentType() + ", "
+					+ JsonCodec.JSON.getContentType());
+		}
+		headers.put("X-Eve-Token", createToken());
+		headers.put("X-Eve-SenderUrl", super.getAddress().toASCIIString());
+		
+		// Serialize the message into a pooled buffer, compressing it on the
+		// fly if the receiver has told it accepts that.
+		final String host = receiverUri.getScheme() + "://"
+				+ receiverUri.getAuthority();
+		final String encoding = encodings.get(host);
+		final MessageWriter writer = message instanceof MessageWriter ? (MessageWriter) message
+				: new MessageWriter(message, codec);
+		final MessageWriter.Buffer body = MessageWriter.buffer();
+		try {
+			final Compression.ThresholdStream out = Compression.stream(body,
+					encoding, compressionThreshold);
+			writer.writeTo(out, codec);
+			out.close();
+			if (out.isEncoded()) {
+				headers.put("Content-Encoding", encoding);
+			}
+		} catch (final IOException e) {
+			body.release();
+			throw e;
+		}
+		if (compressionThreshold >= 0) {
+			headers.put("Accept-Encoding", Compression.ACCEPT_ENCODING);
+		}
+		final Handler<Receiver> handle = super.getHandle();
+		client.post(receiverUri, headers, body.array(), body.length(),
+				new AsyncCallback<AsyncHttpClient.Response>() {
+					@Override
+					public void onSuccess(final AsyncHttpClient.Response res) {
+						body.release();
+						final String accepted = Compression.choose(res
+								.getHeader("Accept-Encoding"));
+						if (accepted != null) {
+							encodings.put(host, accepted);
+						}
+						if (res.getStatus() == HttpStatus.SC_NO_CONTENT) {
+							// Delivered a notification, there is no response.
+							return;
+						}
+						try {
+							final byte[] bytes = JsonCodec.readBytes(Compression
+									.decode(new ByteArrayInputStream(res
+											.getBody()), res
+											.getHeader("Content-Encoding")));
+							final JsonCodec resultCodec = JsonCodec
+									.fromContentType(res.getContentType());
+							final Object result;
+							if (resultCodec != null && resultCodec.isBinary()) {
+								result = bytes;
+							} else {
+								result = new String(bytes, UTF8);
+							}
+							if (res.getStatus() != HttpStatus.SC_OK) {
+								LOG.warning("Received HTTP Error Status:"
+										+ res.getStatus() + ":" + result);
+								return;
+							}
+							handle.get().receive(result, receiverUri, null);
+						} catch (final Exception e) {
+							LOG.log(Level.WARNING,
+									"Failed to handle HTTP response", e);
+						}
+					}
+					
+					@Override
+					public void onFailure(final Exception exception) {
+						body.release();
+						LOG.log(Level.WARNING,
+								"HTTP roundtrip resulted in exception!",
+								exception);
+					}
+				});
+	}
+	
+	/**
+	 * Create the request entity. Messages given as {@link MessageWriter} are
+	 * serialized straight into the connection.
+	 */
+	private static HttpEntity createEntity(final Object message,
+			final JsonCodec codec) throws IOException {
+		final AbstractHttpEntity entity;
+		if (message instanceof MessageWriter) {
+			final MessageWriter writer = (MessageWriter) message;
+			entity = new EntityTemplate(new ContentProducer() {
+				@Override
+				public void writeTo(final OutputStream out) throws IOException {
+					writer.writeTo(out, codec);
+				}
+			});
+			entity.setContentType(codec.getContentType());
+		} else if (codec.isBinary()) {
+			entity = new ByteArrayEntity((byte[]) message);
+			entity.setContentType(codec.getContentType());
+		} else {
+			entity = new StringEntity((String) message);
+		}
+		return entity;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -137,28 +326,59 @@ public class HttpTransport extends AbstractTransport {
 	@Override
 	public void send(final URI receiverUri, final byte[] message,
 			final String tag) throws IOException {
-		send(receiverUri, Base64.encodeBase64String(message), tag);
+		final JsonCodec codec = JsonCodec.detect(message);
+		if (!codec.isBinary()) {
+			// Not a binary JSON-RPC message.
+			send(receiverUri, Base64.encodeBase64String(message), tag);
+			return;
+		}
+		if (tag != null) {
+			reply(tag, message);
+			return;
+		}
+		if (sendLocal(receiverUri, message)) {
+			return;
+		}
+		post(receiverUri, message, codec);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.almende.eve.transport.AbstractTransport#send(java.net.URI,
+	 * com.almende.eve.transport.MessageWriter, java.lang.String)
+	 */
+	@Override
+	public void send(final URI receiverUri, final MessageWriter message,
+			final String tag) throws IOException {
+		if (tag != null) {
+			// The servlet writes it straight into the HTTP response.
+			reply(tag, message);
+			return;
+		}
+		if (sendLocal(receiverUri, message.getMessage())) {
+			return;
+		}
+		post(receiverUri, message, message.getCodec());
 	}
 	
 	/**
-	 * Receive.
+	 * Receive, waiting for the response.
 	 * 
 	 * @param body
-	 *            the body
+	 *            the body, JSON text or bytes in a binary codec
 	 * @param senderUrl
 	 *            the sender url
-	 * @return the response string
+	 * @return the response: JSON text, bytes in a binary codec, a
+	 *         MessageWriter, or an empty String if there is none.
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public String receive(final String body, final URI senderUrl)
+	public Object receive(final Object body, final URI senderUrl)
 			throws IOException {
-		final String tag = new UUID().toString();
-		final SyncCallback<String> callback = new SyncCallback<String>() {
+		final SyncCallback<Object> callback = new SyncCallback<Object>() {
 		};
-		callbacks.push(tag, "", callback);
-		
-		super.getHandle().get().receive(body, senderUrl, tag);
+		receive(body, senderUrl, callback);
 		try {
 			return callback.get();
 		} catch (final Exception e) {
@@ -167,6 +387,81 @@ public class HttpTransport extends AbstractTransport {
 		}
 	}
 	
+	/**
+	 * Receive, without waiting: the message is handed to the receiver on the
+	 * ThreadPool, so the calling (container) thread returns at once. The
+	 * response is handed to the callback, or a TimeoutException if the
+	 * receiver doesn't reply within the {@link #getCallbackTimeout() callback
+	 * timeout}.
+	 * 
+	 * @param body
+	 *            the body, JSON text or bytes in a binary codec
+	 * @param senderUrl
+	 *            the sender url
+	 * @param callback
+	 *            the callback, receiving JSON text, bytes in a binary codec,
+	 *            a MessageWriter, or an empty String if there is no response.
+	 * @return the id of the callback, to {@link #cancel(long)} it.
+	 */
+	public long receive(final Object body, final URI senderUrl,
+			final AsyncCallback<Object> callback) {
+		final long id = IdGenerator.nextLong();
+		final Handler<Receiver> handle = super.getHandle();
+		callbacks.push(id, "", callback);
+		try {
+			ThreadPool.getPool().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						handle.get().receive(body, senderUrl, Long.toString(id));
+					} catch (final RuntimeException e) {
+						fail(id, e);
+					}
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			fail(id, e);
+		}
+		return id;
+	}
+	
+	private void fail(final long id, final Exception e) {
+		final AsyncCallback<Object> callback = callbacks.pull(id);
+		if (callback != null) {
+			callback.onFailure(e);
+		}
+	}
+	
+	/**
+	 * Cancel waiting for the response to a received message, e.g. when the
+	 * request timed out.
+	 * 
+	 * @param id
+	 *            the id of the callback
+	 * @return true, if the response was still awaited.
+	 */
+	public boolean cancel(final long id) {
+		return callbacks.pull(id) != null;
+	}
+	
+	/**
+	 * Gets the time a received message may take to be answered.
+	 * 
+	 * @return the callback timeout, in seconds
+	 */
+	public int getCallbackTimeout() {
+		return callbacks.getDefTimeout();
+	}
+	
+	/**
+	 * Gets the compression threshold of HTTP bodies.
+	 * 
+	 * @return the compression threshold, in bytes, negative if disabled.
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+	
 	/**
 	 * Gets the tokenstore of this transport
 	 * 
@@ -175,6 +470,17 @@ public class HttpTransport extends AbstractTransport {
 	public TokenStore getTokenstore() {
 		return tokenstore;
 	}
+	
+	/**
+	 * Create the token of an outbound call, signed if a signing key is
+	 * configured.
+	 * 
+	 * @return the token, as JSON
+	 */
+	private String createToken() {
+		return TokenSigner.sign(signer, tokenstore.create(),
+				super.getAddress().toASCIIString()).toString();
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -125,6 +125,78 @@ public class HttpTransportConfig extends TransportConfig {
 		return EveServlet.class.getName();
 	}
 	
+	/**
+	 * Sets the max number of concurrent outbound requests per host. Requests
+	 * beyond this limit wait, without occupying a thread, until earlier
+	 * requests of this transport to that host complete. (Optional, default
+	 * 50)
+	 * 
+	 * @param maxConnectionsPerHost
+	 *            the new max connections per host
+	 */
+	public void setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+		this.put("maxConnectionsPerHost", maxConnectionsPerHost);
+	}
+	
+	/**
+	 * Gets the max number of concurrent outbound requests per host.
+	 * 
+	 * @return the max connections per host
+	 */
+	public int getMaxConnectionsPerHost() {
+		if (this.has("maxConnectionsPerHost")) {
+			return this.get("maxConnectionsPerHost").asInt();
+		}
+		return 50;
+	}
+	
+	/**
+	 * Sets the compression threshold: HTTP bodies of at least this many bytes
+	 * are compressed, if the peer accepts that. A negative threshold disables
+	 * compression. (Optional, default 1024)
+	 * 
+	 * @param compressionThreshold
+	 *            the new compression threshold
+	 */
+	public void setCompressionThreshold(final int compressionThreshold) {
+		this.put("compressionThreshold", compressionThreshold);
+	}
+	
+	/**
+	 * Gets the compression threshold.
+	 * 
+	 * @return the compression threshold, in bytes
+	 */
+	public int getCompressionThreshold() {
+		if (this.has("compressionThreshold")) {
+			return this.get("compressionThreshold").asInt();
+		}
+		return Compression.DEFAULT_THRESHOLD;
+	}
+	
+	/**
+	 * Sets the time a received message may take to be answered. The servlet
+	 * replies 504 (Gateway Timeout) after that. (Optional, default 30)
+	 * 
+	 * @param callbackTimeout
+	 *            the new callback timeout, in seconds
+	 */
+	public void setCallbackTimeout(final int callbackTimeout) {
+		this.put("callbackTimeout", callbackTimeout);
+	}
+	
+	/**
+	 * Gets the callback timeout.
+	 * 
+	 * @return the callback timeout, in seconds
+	 */
+	public int getCallbackTimeout() {
+		if (this.has("callbackTimeout")) {
+			return this.get("callbackTimeout").asInt();
+		}
+		return 30;
+	}
+	
 	/**
 	 * Gets the do authentication. (Overriden to change the default to false)
 	 * 
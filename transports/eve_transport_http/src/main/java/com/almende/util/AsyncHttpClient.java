@@ -0,0 +1,292 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.util;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.almende.util.callback.AsyncCallback;
+
+/**
+ * A non-blocking HTTP client: requests are sent and their responses read
+ * without occupying a thread while waiting.
+ *
+ * The number of concurrent requests per host is limited per client; further
+ * requests to that host are queued (not blocked) until a running request of
+ * this client completes.
+ *
+ * The engine lives in the eve-transport-http-async module, as it is built on
+ * java.net.http (Java 11 and up). Without that module, or on older runtimes,
+ * {@link #create(int)} returns null and the blocking {@link ApacheHttpClient}
+ * is used instead.
+ */
+public abstract class AsyncHttpClient {
+	private static final Logger					LOG		= Logger.getLogger(AsyncHttpClient.class
+															.getCanonicalName());
+	/** The class name of the engine. */
+	public static final String					ENGINE	= "com.almende.eve.transport.http.async.JdkHttpClient";
+	private static final Class<?>				ENGINECLASS	= findEngine();
+	private final ConcurrentMap<String, Host>	hosts	= new ConcurrentHashMap<String, Host>();
+	private final int							maxPerHost;
+
+	/**
+	 * Instantiates a new async http client.
+	 *
+	 * @param maxPerHost
+	 *            the max number of concurrent requests per host, unlimited if
+	 *            not positive.
+	 */
+	protected AsyncHttpClient(final int maxPerHost) {
+		this.maxPerHost = maxPerHost > 0 ? maxPerHost : Integer.MAX_VALUE;
+	}
+
+	private static Class<?> findEngine() {
+		try {
+			return Class.forName(ENGINE);
+		} catch (final ClassNotFoundException e) {
+			LOG.info("No eve-transport-http-async, using the blocking HTTP client.");
+		} catch (final LinkageError e) {
+			LOG.info("No java.net.http, using the blocking HTTP client.");
+		}
+		return null;
+	}
+
+	/**
+	 * Create a client, if the engine is available.
+	 *
+	 * @param maxPerHost
+	 *            the max number of concurrent requests per host
+	 * @return the client, or null if the engine isn't available.
+	 */
+	public static AsyncHttpClient create(final int maxPerHost) {
+		if (ENGINECLASS == null) {
+			return null;
+		}
+		try {
+			return (AsyncHttpClient) ENGINECLASS.getConstructor(int.class)
+					.newInstance(maxPerHost);
+		} catch (final Exception e) {
+			LOG.log(Level.WARNING, "Couldn't create the non-blocking client", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the max number of concurrent requests per host.
+	 *
+	 * @return the max per host
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * Post a request. The callback receives the response, or the failure.
+	 *
+	 * @param uri
+	 *            the uri
+	 * @param headers
+	 *            the request headers
+	 * @param body
+	 *            the body
+	 * @param callback
+	 *            the callback
+	 */
+	public void post(final URI uri, final Map<String, String> headers,
+			final byte[] body, final AsyncCallback<Response> callback) {
+		post(uri, headers, body, body.length, callback);
+	}
+
+	/**
+	 * Post a request, with the body in the first length bytes of the array.
+	 * The array must be left untouched until the callback is called.
+	 *
+	 * @param uri
+	 *            the uri
+	 * @param headers
+	 *            the request headers
+	 * @param body
+	 *            the body
+	 * @param length
+	 *            the length of the body
+	 * @param callback
+	 *            the callback
+	 */
+	public void post(final URI uri, final Map<String, String> headers,
+			final byte[] body, final int length,
+			final AsyncCallback<Response> callback) {
+		final Host host = getHost(uri);
+		host.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					send(uri, headers, body, length, new AsyncCallback<Response>() {
+						@Override
+						public void onSuccess(final Response result) {
+							host.done();
+							callback.onSuccess(result);
+						}
+
+						@Override
+						public void onFailure(final Exception exception) {
+							host.done();
+							callback.onFailure(exception);
+						}
+					});
+				} catch (final RuntimeException e) {
+					host.done();
+					callback.onFailure(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Send a request, within the limit of the host. The callback must be
+	 * called exactly once.
+	 *
+	 * @param uri
+	 *            the uri
+	 * @param headers
+	 *            the request headers
+	 * @param body
+	 *            the body
+	 * @param length
+	 *            the length of the body
+	 * @param callback
+	 *            the callback
+	 */
+	protected abstract void send(final URI uri,
+			final Map<String, String> headers, final byte[] body,
+			final int length, final AsyncCallback<Response> callback);
+
+	private Host getHost(final URI uri) {
+		final String key = uri.getScheme() + "://" + uri.getAuthority();
+		Host host = hosts.get(key);
+		if (host == null) {
+			host = new Host(maxPerHost);
+			final Host old = hosts.putIfAbsent(key, host);
+			if (old != null) {
+				host = old;
+			}
+		}
+		return host;
+	}
+
+	/**
+	 * The requests to a single host: at most limit are running, the others
+	 * wait in the queue.
+	 */
+	private static final class Host {
+		private final AtomicInteger		active	= new AtomicInteger(0);
+		private final Queue<Runnable>	pending	= new ConcurrentLinkedQueue<Runnable>();
+		private final int				limit;
+
+		Host(final int limit) {
+			this.limit = limit;
+		}
+
+		void submit(final Runnable task) {
+			pending.add(task);
+			drain();
+		}
+
+		void done() {
+			active.decrementAndGet();
+			drain();
+		}
+
+		private void drain() {
+			while (!pending.isEmpty()) {
+				final int count = active.get();
+				if (count >= limit) {
+					return;
+				}
+				if (!active.compareAndSet(count, count + 1)) {
+					continue;
+				}
+				final Runnable task = pending.poll();
+				if (task == null) {
+					active.decrementAndGet();
+				} else {
+					task.run();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A received response.
+	 */
+	public static final class Response {
+		private final int						status;
+		private final Map<String, List<String>>	headers;
+		private final byte[]					body;
+
+		/**
+		 * Instantiates a new response.
+		 *
+		 * @param status
+		 *            the status
+		 * @param headers
+		 *            the headers, with case insensitive names
+		 * @param body
+		 *            the body
+		 */
+		public Response(final int status,
+				final Map<String, List<String>> headers, final byte[] body) {
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		/**
+		 * Gets the HTTP status code.
+		 *
+		 * @return the status
+		 */
+		public int getStatus() {
+			return status;
+		}
+
+		/**
+		 * Gets the content type.
+		 *
+		 * @return the content type, null if not given.
+		 */
+		public String getContentType() {
+			return getHeader("Content-Type");
+		}
+
+		/**
+		 * Gets the (first) value of a header.
+		 *
+		 * @param name
+		 *            the name, case insensitive
+		 * @return the value, null if not given.
+		 */
+		public String getHeader(final String name) {
+			final List<String> values = headers.get(name);
+			return values == null || values.isEmpty() ? null : values.get(0);
+		}
+
+		/**
+		 * Gets the body.
+		 *
+		 * @return the body
+		 */
+		public byte[] getBody() {
+			return body;
+		}
+	}
+}
@@ -6,8 +6,8 @@ package com.almende.eve.transport.http;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,18 +18,27 @@ import com.almende.eve.capabilities.handler.Handler;
 import com.almende.eve.transport.Receiver;
 import com.almende.eve.transport.Transport;
 import com.almende.eve.transport.TransportService;
+import com.almende.eve.transport.tokens.TokenSigner;
 import com.almende.util.ClassUtil;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * The Class HttpService.
+ * 
+ * The transports of a service are indexed by agent id, for the dispatch of
+ * servlet requests. The transports of all services in this JVM that have the
+ * shortcut enabled are indexed by address as well, so messages to those local
+ * agents, on any servlet path, take the local shortcut instead of a loopback
+ * HTTP request.
  */
 public class HttpService implements TransportService {
-	private static final Logger				LOG			= Logger.getLogger(HttpService.class
-																.getName());
-	private URI								myUrl		= null;
-	private final Map<URI, HttpTransport>	transports	= new HashMap<URI, HttpTransport>();
-	private HttpTransportConfig				myParams	= null;
+	private static final Logger								LOG			= Logger.getLogger(HttpService.class
+																				.getName());
+	private static final ConcurrentMap<String, HttpTransport>	ADDRESSES	= new ConcurrentHashMap<String, HttpTransport>();
+	private URI												myUrl		= null;
+	private final ConcurrentMap<String, HttpTransport>		transports	= new ConcurrentHashMap<String, HttpTransport>();
+	private HttpTransportConfig								myParams	= null;
+	private TokenSigner										signer		= null;
 	
 	/**
 	 * Instantiates a new http service.
@@ -42,6 +51,7 @@ public class HttpService implements TransportService {
 	public HttpService(final URI servletUrl, final ObjectNode params) {
 		myUrl = servletUrl;
 		myParams = new HttpTransportConfig(params);
+		signer = TokenSigner.create(myParams);
 		
 		String servletLauncher = myParams.getServletLauncher();
 		if (servletLauncher != null) {
@@ -102,14 +112,20 @@ public class HttpService implements TransportService {
 		final String id = config.getId();
 		if (id != null) {
 			try {
-				final URI fullUrl = new URI(myUrl.toASCIIString() + id);
-				if (transports.containsKey(fullUrl)) {
-					result = transports.get(fullUrl);
-					result.getHandle().update(newHandle);
-				} else {
+				result = transports.get(id);
+				if (result == null) {
+					final URI fullUrl = new URI(myUrl.toASCIIString() + id);
 					result = new HttpTransport(fullUrl, newHandle, this, params);
-					transports.put(fullUrl, result);
+					final HttpTransport old = transports.putIfAbsent(id, result);
+					if (old == null) {
+						if (myParams.getDoShortcut()) {
+							ADDRESSES.put(fullUrl.toString(), result);
+						}
+						return result;
+					}
+					result = old;
 				}
+				result.getHandle().update(newHandle);
 			} catch (final URISyntaxException e) {
 				LOG.log(Level.WARNING, "Couldn't parse full Url:" + myUrl
 						+ params.get("id").asText(), e);
@@ -130,7 +146,13 @@ public class HttpService implements TransportService {
 	 */
 	@Override
 	public void delete(final Transport instance) {
-		transports.remove(instance.getAddress());
+		final String address = instance.getAddress().toString();
+		if (address.startsWith(myUrl.toString())) {
+			final String id = address.substring(myUrl.toString().length());
+			if (transports.remove(id, instance)) {
+				ADDRESSES.remove(address, instance);
+			}
+		}
 	}
 	
 	/**
@@ -141,13 +163,7 @@ public class HttpService implements TransportService {
 	 * @return the http transport
 	 */
 	private HttpTransport get(final String id) {
-		try {
-			final URI fullUrl = new URI(myUrl + id);
-			return transports.get(fullUrl);
-		} catch (final URISyntaxException e) {
-			LOG.log(Level.WARNING, "Couldn't parse full Url:" + myUrl + id, e);
-		}
-		return null;
+		return transports.get(id);
 	}
 	
 	/**
@@ -185,6 +201,27 @@ public class HttpService implements TransportService {
 		return false;
 	}
 	
+	/**
+	 * Verify the signed token of a sender locally, see {@link TokenSigner}.
+	 * 
+	 * @param servletUrl
+	 *            the servlet url
+	 * @param senderUrl
+	 *            the sender url
+	 * @param signature
+	 *            the signature of the token, may be null.
+	 * @return true, if the token is signed with a trusted key.
+	 */
+	public static boolean verify(final URI servletUrl, final String senderUrl,
+			final String signature) {
+		final HttpService service = HttpTransportBuilder.getServices().get(
+				servletUrl);
+		if (service != null && service.signer != null) {
+			return service.signer.verify(senderUrl, signature);
+		}
+		return false;
+	}
+	
 	/**
 	 * Should the Servlet handle authentication?
 	 * 
@@ -205,11 +242,6 @@ public class HttpService implements TransportService {
 		if (!myParams.getDoShortcut()) {
 			return null;
 		}
-		if (transports.containsKey(address)) {
-			return transports.get(address);
-		} else {
-			// TODO: check for other HttpServices with this address?
-		}
-		return null;
+		return ADDRESSES.get(address.toString());
 	}
 }
\ No newline at end of file
@@ -6,8 +6,8 @@ package com.almende.eve.transport.http;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,7 +20,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 public class HttpTransportBuilder extends AbstractCapabilityBuilder<HttpTransport> {
 	private static final Logger				LOG			= Logger.getLogger(HttpTransportBuilder.class
 																.getName());
-	private static Map<URI, HttpService>	services	= new HashMap<URI, HttpService>();
+	private static Map<URI, HttpService>	services	= new ConcurrentHashMap<URI, HttpService>();
 	
 	@Override
 	public HttpTransport build() {
@@ -47,12 +47,18 @@ public class HttpTransportBuilder extends AbstractCapabilityBuilder<HttpTranspor
 		if (servletUrl != null) {
 			try {
 				final URI servletUri = new URI(servletUrl);
-				if (services.containsKey(servletUri)) {
+				service = services.get(servletUri);
+				if (service != null) {
 					// Shortcut, it already exists and is launched.
-					return services.get(servletUri);
+					return service;
+				}
+				synchronized (services) {
+					service = services.get(servletUri);
+					if (service == null) {
+						service = new HttpService(servletUri, params);
+						services.put(servletUri, service);
+					}
 				}
-				service = new HttpService(servletUri, params);
-				services.put(servletUri, service);
 				
 			} catch (final URISyntaxException e) {
 				LOG.log(Level.WARNING, "Couldn't parse 'servletUrl'", e);
@@ -120,4 +120,28 @@ public class HttpTransportConfig extends TransportConfig {
 		}
 		return EveServlet.class.getName();
 	}
+	
+	/**
+	 * Sets the compression threshold: HTTP bodies of at least this many bytes
+	 * are compressed, if the peer accepts that. A negative threshold disables
+	 * compression. (Optional, default 1024)
+	 * 
+	 * @param compressionThreshold
+	 *            the new compression threshold
+	 */
+	public void setCompressionThreshold(final int compressionThreshold) {
+		this.put("compressionThreshold", compressionThreshold);
+	}
+	
+	/**
+	 * Gets the compression threshold.
+	 * 
+	 * @return the compression threshold, in bytes
+	 */
+	public int getCompressionThreshold() {
+		if (this.has("compressionThreshold")) {
+			return this.get("compressionThreshold").asInt();
+		}
+		return Compression.DEFAULT_THRESHOLD;
+	}
 }
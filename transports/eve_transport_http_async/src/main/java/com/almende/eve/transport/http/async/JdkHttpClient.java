@@ -0,0 +1,182 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transport.http.async;
+
+import java.net.CookieManager;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.almende.util.ApacheHttpClient;
+import com.almende.util.AsyncHttpClient;
+import com.almende.util.callback.AsyncCallback;
+import com.almende.util.threads.ThreadPool;
+
+/**
+ * The engine of the {@link AsyncHttpClient}, on the HTTP client of the JDK
+ * (Java 11 and up): requests are sent and their responses read by its NIO
+ * selector, over HTTP/2 where the peer supports it. Completion callbacks run
+ * on the {@link ThreadPool}.
+ *
+ * All clients share one JDK client, and so its connections; each keeps its
+ * own limit of concurrent requests per host.
+ */
+public final class JdkHttpClient extends AsyncHttpClient {
+	private static final Logger		LOG		= Logger.getLogger(JdkHttpClient.class
+													.getCanonicalName());
+	private static final HttpClient	CLIENT	= createClient();
+
+	/**
+	 * Instantiates a new JDK http client.
+	 *
+	 * @param maxPerHost
+	 *            the max number of concurrent requests per host
+	 */
+	public JdkHttpClient(final int maxPerHost) {
+		super(maxPerHost);
+	}
+
+	private static HttpClient createClient() {
+		final HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(Duration.ofSeconds(20))
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.cookieHandler(new CookieManager()).executor(new Executor() {
+					@Override
+					public void execute(final Runnable command) {
+						ThreadPool.getPool().execute(command);
+					}
+				});
+		// Allow self-signed SSL certificates:
+		try {
+			final SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, new TrustManager[] { new SelfSignedTrust() },
+					null);
+			builder.sslContext(context);
+		} catch (final Exception e) {
+			LOG.log(Level.WARNING, "Couldn't init SSL strategy", e);
+		}
+		return builder.build();
+	}
+
+	@Override
+	protected void send(final URI uri, final Map<String, String> headers,
+			final byte[] body, final int length,
+			final AsyncCallback<Response> callback) {
+		final HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+				.timeout(Duration.ofSeconds(60))
+				.POST(HttpRequest.BodyPublishers.ofByteArray(body, 0, length));
+		for (final Map.Entry<String, String> header : headers.entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+		CLIENT.sendAsync(builder.build(),
+				HttpResponse.BodyHandlers.ofByteArray()).whenComplete(
+				new BiConsumer<HttpResponse<byte[]>, Throwable>() {
+					@Override
+					public void accept(final HttpResponse<byte[]> res,
+							final Throwable error) {
+						if (error != null) {
+							callback.onFailure(error instanceof Exception ? (Exception) error
+									: new Exception(error));
+							return;
+						}
+						callback.onSuccess(new Response(res.statusCode(), res
+								.headers().map(), res.body()));
+					}
+				});
+	}
+
+	/**
+	 * Trusts certificates trusted by the JVM, and self-signed certificates,
+	 * like the TrustSelfSignedStrategy of the {@link ApacheHttpClient}.
+	 */
+	private static final class SelfSignedTrust extends X509ExtendedTrustManager {
+		private final X509TrustManager	trust;
+
+		SelfSignedTrust() throws Exception {
+			final TrustManagerFactory factory = TrustManagerFactory
+					.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			factory.init((KeyStore) null);
+			X509TrustManager found = null;
+			for (final TrustManager manager : factory.getTrustManagers()) {
+				if (manager instanceof X509TrustManager) {
+					found = (X509TrustManager) manager;
+				}
+			}
+			trust = found;
+		}
+
+		private void check(final X509Certificate[] chain, final String authType)
+				throws CertificateException {
+			if (chain != null && chain.length == 1) {
+				return;
+			}
+			trust.checkServerTrusted(chain, authType);
+		}
+
+		@Override
+		public void checkClientTrusted(final X509Certificate[] chain,
+				final String authType) throws CertificateException {
+			trust.checkClientTrusted(chain, authType);
+		}
+
+		@Override
+		public void checkServerTrusted(final X509Certificate[] chain,
+				final String authType) throws CertificateException {
+			check(chain, authType);
+		}
+
+		@Override
+		public void checkClientTrusted(final X509Certificate[] chain,
+				final String authType, final Socket socket)
+				throws CertificateException {
+			trust.checkClientTrusted(chain, authType);
+		}
+
+		@Override
+		public void checkServerTrusted(final X509Certificate[] chain,
+				final String authType, final Socket socket)
+				throws CertificateException {
+			check(chain, authType);
+		}
+
+		@Override
+		public void checkClientTrusted(final X509Certificate[] chain,
+				final String authType, final SSLEngine engine)
+				throws CertificateException {
+			trust.checkClientTrusted(chain, authType);
+		}
+
+		@Override
+		public void checkServerTrusted(final X509Certificate[] chain,
+				final String authType, final SSLEngine engine)
+				throws CertificateException {
+			check(chain, authType);
+		}
+
+		@Override
+		public X509Certificate[] getAcceptedIssuers() {
+			return trust.getAcceptedIssuers();
+		}
+	}
+}
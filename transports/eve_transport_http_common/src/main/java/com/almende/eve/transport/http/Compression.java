@@ -0,0 +1,272 @@
+/*
+ * Copyright: Almende B.V. (2014), Rotterdam, The Netherlands
+ * License: The Apache Software License, Version 2.0
+ */
+package com.almende.eve.transport.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compression of HTTP bodies, negotiated through the Accept-Encoding and
+ * Content-Encoding headers. Bodies smaller than a threshold are sent as they
+ * are, as compressing them costs more time than it saves.
+ */
+public final class Compression {
+	/** The Accept-Encoding header value of Eve clients. */
+	public static final String	ACCEPT_ENCODING		= "gzip, deflate";
+	/** The default threshold, in bytes. */
+	public static final int		DEFAULT_THRESHOLD	= 1024;
+	private static final String	GZIP				= "gzip";
+	private static final String	DEFLATE				= "deflate";
+
+	private Compression() {}
+
+	/**
+	 * Choose the encoding of a body, from an Accept-Encoding header.
+	 *
+	 * @param acceptEncoding
+	 *            the Accept-Encoding header, may be null.
+	 * @return "gzip", "deflate", or null if neither is accepted.
+	 */
+	public static String choose(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		String result = null;
+		for (final String part : acceptEncoding.split(",")) {
+			final String[] params = part.split(";");
+			final String coding = params[0].trim().toLowerCase();
+			if (params.length > 1 && params[1].trim().matches("q=0(\\.0*)?")) {
+				continue;
+			}
+			if (GZIP.equals(coding)) {
+				return GZIP;
+			}
+			if (DEFLATE.equals(coding)) {
+				result = DEFLATE;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Wrap a stream, to decode a body with the given Content-Encoding.
+	 *
+	 * @param in
+	 *            the in
+	 * @param contentEncoding
+	 *            the Content-Encoding header, may be null.
+	 * @return the decoding stream, or the stream itself if not encoded.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static InputStream decode(final InputStream in,
+			final String contentEncoding) throws IOException {
+		if (contentEncoding == null) {
+			return in;
+		}
+		final String coding = contentEncoding.trim().toLowerCase();
+		if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+			return new GZIPInputStream(in);
+		}
+		if (DEFLATE.equals(coding)) {
+			return new InflaterInputStream(in);
+		}
+		return in;
+	}
+
+	/**
+	 * Encode a body, if it reaches the threshold.
+	 *
+	 * @param body
+	 *            the body
+	 * @param encoding
+	 *            "gzip" or "deflate"
+	 * @param threshold
+	 *            the threshold, negative to never encode
+	 * @return the encoded body, or null if it is to be sent as it is.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static byte[] encode(final byte[] body, final String encoding,
+			final int threshold) throws IOException {
+		if (encoding == null || threshold < 0 || body.length < threshold) {
+			return null;
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(
+				body.length / 4);
+		final OutputStream encoder = encoder(out, encoding);
+		encoder.write(body);
+		encoder.close();
+		return out.toByteArray();
+	}
+
+	private static OutputStream encoder(final OutputStream out,
+			final String encoding) throws IOException {
+		if (GZIP.equals(encoding)) {
+			return new GZIPOutputStream(out, 8192);
+		}
+		return new DeflaterOutputStream(out);
+	}
+
+	/**
+	 * Get a stream to write a body to, which is compressed on the fly into the
+	 * given stream once it reaches the threshold; a smaller body is written
+	 * as it is, when the stream is closed. The stream must be closed, after
+	 * which {@link ThresholdStream#isEncoded()} tells if the body got the
+	 * encoding.
+	 *
+	 * @param out
+	 *            the stream to write the (encoded) body to
+	 * @param encoding
+	 *            "gzip", "deflate", or null to not compress
+	 * @param threshold
+	 *            the threshold, negative to never compress
+	 * @return the output stream
+	 */
+	public static ThresholdStream stream(final OutputStream out,
+			final String encoding, final int threshold) {
+		return new ThresholdStream(out, encoding, threshold);
+	}
+
+	/**
+	 * Get a stream to write a response body to, which is compressed on the
+	 * fly once it reaches the threshold. Until then, the body is held back, so
+	 * the Content-Encoding header can still be set; a smaller body is written
+	 * as it is, when the stream is closed. The stream must be closed.
+	 *
+	 * @param resp
+	 *            the response
+	 * @param encoding
+	 *            "gzip", "deflate", or null to not compress
+	 * @param threshold
+	 *            the threshold, negative to never compress
+	 * @return the output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static OutputStream stream(final HttpServletResponse resp,
+			final String encoding, final int threshold) throws IOException {
+		if (encoding == null || threshold < 0) {
+			return resp.getOutputStream();
+		}
+		resp.addHeader("Vary", "Accept-Encoding");
+		return new ThresholdStream(null, encoding, threshold) {
+			@Override
+			protected OutputStream open(final boolean encoded, final int length)
+					throws IOException {
+				if (encoded) {
+					resp.setHeader("Content-Encoding", encoding);
+				} else {
+					resp.setContentLength(length);
+				}
+				return resp.getOutputStream();
+			}
+		};
+	}
+
+	/**
+	 * Holds back the first bytes of a body, up to the threshold, and then
+	 * compresses it on the fly.
+	 */
+	public static class ThresholdStream extends OutputStream {
+		private final OutputStream	target;
+		private final String		encoding;
+		private final byte[]		head;
+		private int					count	= 0;
+		private OutputStream		out		= null;
+		private boolean				encoded	= false;
+
+		/**
+		 * Instantiates a new threshold stream.
+		 *
+		 * @param target
+		 *            the stream to write the (encoded) body to
+		 * @param encoding
+		 *            "gzip", "deflate", or null to not compress
+		 * @param threshold
+		 *            the threshold, negative to never compress
+		 */
+		ThresholdStream(final OutputStream target, final String encoding,
+				final int threshold) {
+			this.target = target;
+			this.encoding = encoding;
+			this.head = new byte[encoding != null && threshold > 0 ? threshold
+					: 0];
+			if (encoding == null || threshold < 0) {
+				out = target;
+			}
+		}
+
+		/**
+		 * Open the stream to write the body to, once it is known whether it
+		 * gets encoded.
+		 *
+		 * @param encoded
+		 *            true, if the body is encoded
+		 * @param length
+		 *            the length of an unencoded body
+		 * @return the stream
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		protected OutputStream open(final boolean encoded, final int length)
+				throws IOException {
+			return target;
+		}
+
+		/**
+		 * Checks if the body is encoded, which is known once it reached the
+		 * threshold, or the stream is closed.
+		 *
+		 * @return true, if encoded
+		 */
+		public boolean isEncoded() {
+			return encoded;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (out == null && count + len < head.length) {
+				System.arraycopy(b, off, head, count, len);
+				count += len;
+				return;
+			}
+			if (out == null) {
+				encoded = true;
+				out = encoder(open(true, -1), encoding);
+				out.write(head, 0, count);
+			}
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// Flushing early would defeat the threshold, and compression.
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (out == null) {
+				out = open(false, count);
+				out.write(head, 0, count);
+			}
+			out.close();
+		}
+	}
+}
@@ -5,6 +5,8 @@
 package com.almende.eve.transport.http.embed;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,44 +21,73 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainerInitializer;
 
 import com.almende.eve.transport.http.ServletLauncher;
-import com.almende.util.jackson.JOM;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * The Class JettyLauncher.
+ * 
+ * One embedded server is started per configured port, shared by all servlets
+ * and websocket endpoints on that port.
  */
 public class JettyLauncher implements ServletLauncher {
-	private static final Logger				LOG			= Logger.getLogger(JettyLauncher.class
-																.getName());
-	private static Server					server		= null;
-	private static ServletContextHandler	context		= null;
-	private static ServerContainer			wscontainer	= null;
+	private static final Logger								LOG				= Logger.getLogger(JettyLauncher.class
+																					.getName());
+	private static final Map<Integer, ServletContextHandler>	CONTEXTS		= new HashMap<Integer, ServletContextHandler>();
+	private static final Map<Integer, ServerContainer>		WSCONTAINERS	= new HashMap<Integer, ServerContainer>();
 	
 	/**
-	 * Inits the server.
+	 * Inits the server, unless it is running already.
 	 * 
 	 * @param params
-	 *            the params
+	 *            the params, with the port (default 8080)
 	 */
 	public void initServer(final ObjectNode params) {
-		int port = 8080;
+		getContext(getPort(params));
+	}
+	
+	private static int getPort(final ObjectNode params) {
 		if (params != null && params.has("port")) {
-			port = params.get("port").asInt();
+			return params.get("port").asInt();
 		}
-		server = new Server(port);
-		context = new ServletContextHandler(ServletContextHandler.SESSIONS
-				| ServletContextHandler.NO_SECURITY);
-		
-		context.setContextPath("/");
-		server.setHandler(context);
-		wscontainer = WebSocketServerContainerInitializer
-				.configureContext(context);
-		
-		try {
-			server.start();
-		} catch (final Exception e) {
-			LOG.log(Level.SEVERE, "Couldn't start embedded Jetty server!", e);
+		return 8080;
+	}
+	
+	/**
+	 * Gets the port from the "jetty" params of a servlet config.
+	 */
+	private static int getServerPort(final ObjectNode config) {
+		return getPort(config != null ? (ObjectNode) config.get("jetty") : null);
+	}
+	
+	/**
+	 * Gets the context of the server on the port, starting it if needed.
+	 */
+	private static synchronized ServletContextHandler getContext(
+			final int port) {
+		ServletContextHandler context = CONTEXTS.get(port);
+		if (context == null) {
+			final Server server = new Server(port);
+			context = new ServletContextHandler(ServletContextHandler.SESSIONS
+					| ServletContextHandler.NO_SECURITY);
+			
+			context.setContextPath("/");
+			server.setHandler(context);
+			WSCONTAINERS.put(port,
+					WebSocketServerContainerInitializer.configureContext(context));
+			
+			try {
+				server.start();
+			} catch (final Exception e) {
+				LOG.log(Level.SEVERE, "Couldn't start embedded Jetty server!", e);
+			}
+			CONTEXTS.put(port, context);
 		}
+		return context;
+	}
+	
+	private static synchronized ServerContainer getWsContainer(final int port) {
+		getContext(port);
+		return WSCONTAINERS.get(port);
 	}
 	
 	/*
@@ -70,16 +101,11 @@ public class JettyLauncher implements ServletLauncher {
 	public void add(final Servlet servlet, final URI servletPath,
 			final ObjectNode config) {
 		// TODO: config hierarchy...
-		if (server == null) {
-			if (config != null) {
-				initServer((ObjectNode) config.get("jetty"));
-			} else {
-				initServer(JOM.createObjectNode());
-			}
-		}
+		final ServletContextHandler context = getContext(getServerPort(config));
 		LOG.info("Registering servlet:" + servletPath.getPath());
-		context.addServlet(new ServletHolder(servlet), servletPath.getPath()
-				+ "*");
+		final ServletHolder holder = new ServletHolder(servlet);
+		holder.setAsyncSupported(true);
+		context.addServlet(holder, servletPath.getPath() + "*");
 	}
 	
 	/*
@@ -93,13 +119,7 @@ public class JettyLauncher implements ServletLauncher {
 	public void add(final ServerEndpointConfig serverConfig,
 			final ObjectNode config) {
 		// TODO: config hierarchy...
-		if (server == null) {
-			if (config != null) {
-				initServer((ObjectNode) config.get("jetty"));
-			} else {
-				initServer(JOM.createObjectNode());
-			}
-		}
+		final ServerContainer wscontainer = getWsContainer(getServerPort(config));
 		LOG.info("Registering websocket server endpoint:"
 				+ serverConfig.getPath());
 		try {
@@ -8,6 +8,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -21,6 +22,8 @@ import javax.websocket.MessageHandler;
 import javax.websocket.RemoteEndpoint;
 import javax.websocket.Session;
 
+import com.almende.util.threads.ThreadPool;
+
 /**
  * The Class WebsocketEndpoint.
  */
@@ -65,7 +68,7 @@ public class WebsocketEndpoint extends Endpoint {
 			@Override
 			public void onMessage(final String text) {
 				
-				new Thread(new Runnable() {
+				ThreadPool.getPool().execute(new Runnable() {
 					
 					@Override
 					public void run() {
@@ -76,7 +79,27 @@ public class WebsocketEndpoint extends Endpoint {
 									e);
 						}
 					}
-				}).start();
+				});
+			}
+			
+		});
+		session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+			@Override
+			public void onMessage(final ByteBuffer buffer) {
+				final byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				ThreadPool.getPool().execute(new Runnable() {
+					
+					@Override
+					public void run() {
+						try {
+							transport.receive(bytes, id);
+						} catch (final IOException e) {
+							LOG.log(Level.WARNING, "Failed to receive message",
+									e);
+						}
+					}
+				});
 			}
 			
 		});
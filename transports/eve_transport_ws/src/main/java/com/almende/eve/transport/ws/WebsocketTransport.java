@@ -60,6 +60,19 @@ public abstract class WebsocketTransport extends AbstractTransport {
 	public abstract void receive(final String body, final String id)
 			throws IOException;
 	
+	/**
+	 * Receive a binary message.
+	 * 
+	 * @param body
+	 *            the body
+	 * @param id
+	 *            the id
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public abstract void receive(final byte[] body, final String id)
+			throws IOException;
+	
 	/**
 	 * On close.
 	 * 
@@ -93,6 +93,18 @@ public class WsClientTransport extends WebsocketTransport {
 		super.getHandle().get().receive(body, serverUrl, null);
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.almende.eve.transport.ws.WebsocketTransport#receive(byte[],
+	 * java.lang.String)
+	 */
+	@Override
+	public void receive(final byte[] body, final String id) throws IOException {
+		super.getHandle().get().receive(body, serverUrl, null);
+	}
+	
 	/**
 	 * Send.
 	 * 
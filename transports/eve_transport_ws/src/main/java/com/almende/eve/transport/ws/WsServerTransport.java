@@ -98,6 +98,19 @@ public class WsServerTransport extends WebsocketTransport {
 		super.getHandle().get().receive(body, senderUrl, null);
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.almende.eve.transport.ws.WebsocketTransport#receive(byte[],
+	 * java.lang.String)
+	 */
+	@Override
+	public void receive(final byte[] body, final String id) throws IOException {
+		final URI senderUrl = URI.create("wsclient:" + id);
+		super.getHandle().get().receive(body, senderUrl, null);
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * 
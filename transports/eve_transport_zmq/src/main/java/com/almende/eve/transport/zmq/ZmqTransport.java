@@ -18,15 +18,18 @@ import org.zeromq.ZMQ.Socket;
 
 import com.almende.eve.capabilities.handler.Handler;
 import com.almende.eve.transport.AbstractTransport;
+import com.almende.eve.transport.MessageWriter;
 import com.almende.eve.transport.Receiver;
 import com.almende.eve.transport.TransportService;
 import com.almende.eve.transport.tokens.TokenRet;
+import com.almende.eve.transport.tokens.TokenSigner;
 import com.almende.eve.transport.tokens.TokenStore;
 import com.almende.util.ObjectCache;
 import com.almende.util.callback.AsyncCallback;
 import com.almende.util.callback.AsyncCallbackQueue;
 import com.almende.util.callback.SyncCallback;
 import com.almende.util.jackson.JOM;
+import com.almende.util.jackson.JsonCodec;
 import com.almende.util.threads.ThreadPool;
 
 /**
@@ -40,7 +43,8 @@ public class ZmqTransport extends AbstractTransport {
 	private boolean									doesAuthentication	= false;
 	private boolean									doDisconnect		= false;
 	private static final AsyncCallbackQueue<String>	CALLBACKS			= new AsyncCallbackQueue<String>();
-	private final TokenStore tokenstore = new TokenStore();
+	private final TokenStore						tokenstore			= new TokenStore();
+	private final TokenSigner						signer;
 	private final List<String>						protocols			= Arrays.asList("zmq");
 
 	
@@ -59,6 +63,18 @@ public class ZmqTransport extends AbstractTransport {
 		super(config.getAddress(), handle, service, config);
 		zmqUrl = super.getAddress().toString().replaceFirst("^zmq:/?/?", "");
 		doesAuthentication = config.getDoAuthentication();
+		signer = TokenSigner.create(config);
+	}
+	
+	/**
+	 * Create the token of an outbound message, signed if a signing key is
+	 * configured.
+	 * 
+	 * @return the token, as JSON
+	 */
+	private String createToken() {
+		return TokenSigner.sign(signer, tokenstore.create(),
+				super.getAddress().toString()).toString();
 	}
 	
 	/**
@@ -77,6 +93,32 @@ public class ZmqTransport extends AbstractTransport {
 	 */
 	public void sendAsync(final byte[] zmqType, final String token,
 			final URI receiverUrl, final byte[] message, final String tag) {
+		sendAsync(zmqType, token, receiverUrl, message, message.length, null,
+				tag);
+	}
+	
+	/**
+	 * Send async, the first length bytes of the message. A pooled buffer is
+	 * released once the message has been sent.
+	 * 
+	 * @param zmqType
+	 *            the zmq type
+	 * @param token
+	 *            the token
+	 * @param receiverUrl
+	 *            the receiver url
+	 * @param message
+	 *            the message
+	 * @param length
+	 *            the length of the message
+	 * @param buffer
+	 *            the pooled buffer holding the message, or null
+	 * @param tag
+	 *            the tag
+	 */
+	private void sendAsync(final byte[] zmqType, final String token,
+			final URI receiverUrl, final byte[] message, final int length,
+			final MessageWriter.Buffer buffer, final String tag) {
 		final String senderUrl = super.getAddress().toString();
 		ThreadPool.getPool().execute(new Runnable() {
 			@Override
@@ -89,10 +131,14 @@ public class ZmqTransport extends AbstractTransport {
 					socket.send(zmqType, org.zeromq.ZMQ.SNDMORE);
 					socket.send(senderUrl, org.zeromq.ZMQ.SNDMORE);
 					socket.send(token, org.zeromq.ZMQ.SNDMORE);
-					socket.send(message, 0);
+					socket.send(message, 0, length, 0);
 					
 				} catch (final Exception e) {
 					LOG.log(Level.WARNING, "Failed to send JSON through ZMQ", e);
+				} finally {
+					if (buffer != null) {
+						buffer.release();
+					}
 				}
 				socket.setTCPKeepAlive(-1);
 				socket.setLinger(-1);
@@ -114,7 +160,7 @@ public class ZmqTransport extends AbstractTransport {
 		if (sendLocal(receiverUri, message)) {
 			return;
 		}
-		sendAsync(ZMQ.NORMAL, tokenstore.create().toString(), receiverUri,
+		sendAsync(ZMQ.NORMAL, createToken(), receiverUri,
 				message.getBytes(), tag);
 	}
 	
@@ -130,10 +176,28 @@ public class ZmqTransport extends AbstractTransport {
 		if (sendLocal(receiverUri, message)) {
 			return;
 		}
-		sendAsync(ZMQ.NORMAL, tokenstore.create().toString(), receiverUri,
+		sendAsync(ZMQ.NORMAL, createToken(), receiverUri,
 				message, tag);
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.almende.eve.transport.Transport#send(java.net.URI,
+	 * com.almende.eve.transport.MessageWriter, java.lang.String)
+	 */
+	@Override
+	public void send(final URI receiverUri, final MessageWriter message,
+			final String tag) throws IOException {
+		if (sendLocal(receiverUri, message.getMessage())) {
+			return;
+		}
+		// Serialized into a pooled buffer, released after sending the frame.
+		final MessageWriter.Buffer buffer = message.toBuffer();
+		sendAsync(ZMQ.NORMAL, createToken(), receiverUri, buffer.array(),
+				buffer.length(), buffer, tag);
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -275,7 +339,10 @@ public class ZmqTransport extends AbstractTransport {
 			return;
 		} else {
 			final ObjectCache sessionCache = ObjectCache.get("ZMQSessions");
-			if (!sessionCache.containsKey(key) && doesAuthentication) {
+			// A signed token is verified here, without a handshake.
+			if (doesAuthentication && !sessionCache.containsKey(key)
+					&& (signer == null || !signer.verify(senderUrl.toString(),
+							token.getSignature()))) {
 				final SyncCallback<String> callback = new SyncCallback<String>(){};
 				CALLBACKS.push(key, "", callback);
 				sendAsync(ZMQ.HANDSHAKE, token.toString(), senderUrl, token
@@ -296,7 +363,12 @@ public class ZmqTransport extends AbstractTransport {
 		}
 		
 		if (body != null) {
-			super.getHandle().get().receive(body, senderUrl, null);
+			final byte[] bytes = msg[3].array();
+			if (JsonCodec.detect(bytes).isBinary()) {
+				super.getHandle().get().receive(bytes, senderUrl, null);
+			} else {
+				super.getHandle().get().receive(body, senderUrl, null);
+			}
 		}
 	}
 	